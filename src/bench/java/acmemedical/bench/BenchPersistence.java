@@ -0,0 +1,75 @@
+/********************************************************************************************************
+ * File:  BenchPersistence.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Boots the application's persistence unit on an in-memory H2 database for the JMH benchmarks.
+ */
+package acmemedical.bench;
+
+import static acmemedical.utility.MyConstants.PU_NAME;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+
+/**
+ * The benchmarks run outside Payara: the persistence unit of <code>META-INF/persistence.xml</code> is used as is
+ * (same entities, second-level cache, batching and id generator settings) but switched to RESOURCE_LOCAL
+ * transactions on an H2 database in MySQL mode, with the schema generated from the mappings
+ * (the create/data scripts are MySQL only).
+ */
+public final class BenchPersistence {
+
+    public static final String BENCH_JDBC_URL = "jdbc:h2:mem:acmemedical;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private BenchPersistence() {
+    }
+
+    /**
+     * @param name - makes the in-memory database unique to one benchmark fork/trial
+     */
+    public static EntityManagerFactory createEntityManagerFactory(String name) {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("jakarta.persistence.transactionType", "RESOURCE_LOCAL");
+        overrides.put("jakarta.persistence.jdbc.driver", "org.h2.Driver");
+        overrides.put("jakarta.persistence.jdbc.url", BENCH_JDBC_URL.replace("acmemedical", name));
+        overrides.put("jakarta.persistence.jdbc.user", "sa");
+        overrides.put("jakarta.persistence.jdbc.password", "");
+        overrides.put("hibernate.transaction.coordinator_class", "jdbc");
+        // no JTA data source to meter: plain DriverManager connections
+        overrides.put("hibernate.connection.provider_class", "org.hibernate.engine.jdbc.connections.internal.DriverManagerConnectionProviderImpl");
+        overrides.put("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        overrides.put("hibernate.connection.autocommit", "false");
+        overrides.put("hibernate.format_sql", "false");
+        overrides.put("hibernate.use_sql_comments", "false");
+        overrides.put("jakarta.persistence.schema-generation.database.action", "drop-and-create");
+        overrides.put("jakarta.persistence.schema-generation.create-source", "metadata");
+        overrides.put("jakarta.persistence.schema-generation.drop-source", "metadata");
+        overrides.put("jakarta.persistence.sql-load-script-source", "META-INF/sql/acmemedical-bench-data.sql");
+        return Persistence.createEntityManagerFactory(PU_NAME, overrides);
+    }
+
+    /**
+     * Run <code>work</code> in its own RESOURCE_LOCAL transaction
+     */
+    public static void inTransaction(EntityManager em, Runnable work) {
+        em.getTransaction().begin();
+        try {
+            work.run();
+            em.getTransaction().commit();
+        }
+        finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        }
+    }
+}
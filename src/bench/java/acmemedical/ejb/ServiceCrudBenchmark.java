@@ -0,0 +1,202 @@
+/********************************************************************************************************
+ * File:  ServiceCrudBenchmark.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: JMH benchmarks of the ACMEMedicalService CRUD methods on an in-memory database.
+ */
+package acmemedical.ejb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.glassfish.soteria.identitystores.hash.Pbkdf2PasswordHashImpl;
+
+import acmemedical.bench.BenchPersistence;
+import acmemedical.entity.Medicine;
+import acmemedical.entity.Patient;
+import acmemedical.entity.Physician;
+import acmemedical.entity.Prescription;
+import acmemedical.utility.BatchItemResult;
+import acmemedical.utility.KeysetPage;
+
+/**
+ * Service methods called the way ServiceTest calls them: the bean without its container,
+ * one EntityManager per trial and one RESOURCE_LOCAL transaction per write.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ServiceCrudBenchmark {
+
+    @Param({ "1000" })
+    public int rows;
+
+    @Param({ "100" })
+    public int batchSize;
+
+    private EntityManagerFactory emf;
+    private EntityManager em;
+    private ACMEMedicalService service;
+    private int lastPatientId;
+    // usernames are unique: user_Onboarded.<n>
+    private int onboarded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        emf = BenchPersistence.createEntityManagerFactory("service_crud");
+        em = emf.createEntityManager();
+        service = new ACMEMedicalService();
+        service.em = em;
+        service.pbAndjPasswordHash = new Pbkdf2PasswordHashImpl();
+        service.initPasswordHash();
+        List<Patient> patients = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            patients.add(newPatient(i));
+        }
+        BenchPersistence.inTransaction(em, () -> service.persistPatients(patients));
+        lastPatientId = patients.get(rows - 1).getId();
+        BenchPersistence.inTransaction(em, () -> {
+            Physician physician = new Physician();
+            physician.setFullName("Bench", "Physician");
+            service.persistPhysician(physician);
+            Medicine medicine = new Medicine();
+            medicine.setDrugName("Benchamol");
+            medicine.setManufacturerName("Bench Pharma");
+            medicine.setDosageInformation("once per iteration");
+            service.persistMedicine(medicine);
+            for (int i = 0; i < Math.min(rows, 200); i++) {
+                Prescription prescription = new Prescription();
+                prescription.setPhysician(physician);
+                prescription.setPatient(em.find(Patient.class, patients.get(i).getId()));
+                prescription.setMedicine(medicine);
+                prescription.setNumberOfRefills(i % 5);
+                prescription.setPrescriptionInformation("bench");
+                service.persistPrescription(prescription);
+            }
+        });
+        em.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        emf.close();
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearPersistenceContext() {
+        // keep the first-level cache from growing (and from answering reads) across iterations
+        em.clear();
+    }
+
+    private static Patient newPatient(int i) {
+        Patient patient = new Patient();
+        patient.setFirstName("Bench" + i);
+        patient.setLastName("Patient");
+        patient.setYear(1950 + i % 70);
+        patient.setAddress(i + " Benchmark Road");
+        patient.setHeight(150 + i % 50);
+        patient.setWeight(50 + i % 60);
+        patient.setSmoker((byte) (i % 2));
+        return patient;
+    }
+
+    private int randomPatientId() {
+        return ThreadLocalRandom.current().nextInt(1, lastPatientId + 1);
+    }
+
+    @Benchmark
+    public Patient getPatientById() {
+        Patient patient = service.getPatientById(randomPatientId());
+        em.clear();
+        return patient;
+    }
+
+    @Benchmark
+    public KeysetPage<Patient> getPatientPage() {
+        KeysetPage<Patient> page = service.getPage(Patient.class, 0, 100);
+        em.clear();
+        return page;
+    }
+
+    @Benchmark
+    public KeysetPage<Prescription> getPrescriptionPage() {
+        KeysetPage<Prescription> page = service.getPrescriptionPage(0, 0, 100);
+        em.clear();
+        return page;
+    }
+
+    @Benchmark
+    public Patient persistPatient() {
+        Patient patient = newPatient(0);
+        BenchPersistence.inTransaction(em, () -> service.persistPatient(patient));
+        em.clear();
+        return patient;
+    }
+
+    @Benchmark
+    public List<BatchItemResult> persistPatientsBatch() {
+        List<Patient> patients = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            patients.add(newPatient(i));
+        }
+        List<BatchItemResult> results = new ArrayList<>(batchSize);
+        BenchPersistence.inTransaction(em, () -> results.addAll(service.persistPatients(patients)));
+        return results;
+    }
+
+    @Benchmark
+    public Patient updatePatient() {
+        Patient updates = newPatient(ThreadLocalRandom.current().nextInt(1000));
+        Patient[] updated = new Patient[1];
+        BenchPersistence.inTransaction(em, () -> updated[0] = service.updatePatient(randomPatientId(), updates));
+        em.clear();
+        return updated[0];
+    }
+
+    @Benchmark
+    public Patient updatePatientIfMatch() {
+        Patient updates = newPatient(ThreadLocalRandom.current().nextInt(1000));
+        Patient[] updated = new Patient[1];
+        // unconditional, so that every call updates one row like updatePatient
+        BenchPersistence.inTransaction(em, () -> updated[0] = service.updatePatientIfMatch(randomPatientId(), null, updates));
+        em.clear();
+        return updated[0];
+    }
+
+    @Benchmark
+    public Physician onboardPhysician() {
+        Physician physician = new Physician();
+        physician.setFullName("Onboarded", Integer.toString(onboarded++));
+        BenchPersistence.inTransaction(em, () -> service.onboardPhysician(physician));
+        em.clear();
+        return physician;
+    }
+}
@@ -0,0 +1,131 @@
+/********************************************************************************************************
+ * File:  SerializationBenchmark.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: JMH benchmarks of JSON serialization through ConfigureJacksonObjectMapper.
+ */
+package acmemedical.rest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import acmemedical.entity.DurationAndStatus;
+import acmemedical.entity.MedicalSchool;
+import acmemedical.entity.MedicalTraining;
+import acmemedical.entity.Medicine;
+import acmemedical.entity.Patient;
+import acmemedical.entity.Physician;
+import acmemedical.entity.Prescription;
+import acmemedical.entity.PublicSchool;
+
+/**
+ * Serializes the response shapes of the REST layer, built in memory (no database, no lazy loading),
+ * with the ObjectMapper the application registers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    // size of the collections: prescriptions per physician, trainings per school, items per list response
+    @Param({ "1", "100" })
+    public int size;
+
+    private ObjectWriter writer;
+    private Physician physician;
+    private List<Prescription> prescriptions;
+    private MedicalSchool medicalSchool;
+
+    @Setup
+    public void setUp() {
+        writer = new ConfigureJacksonObjectMapper().getContext(Object.class).writer();
+        LocalDateTime now = LocalDateTime.now();
+
+        physician = new Physician();
+        physician.setId(1);
+        physician.setFullName("Bench", "Physician");
+        Medicine medicine = new Medicine();
+        medicine.setId(1);
+        medicine.setDrugName("Benchamol");
+        medicine.setManufacturerName("Bench Pharma");
+        medicine.setDosageInformation("once per iteration");
+        prescriptions = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            Patient patient = new Patient();
+            patient.setId(i);
+            patient.setFirstName("Bench" + i);
+            patient.setLastName("Patient");
+            patient.setYear(1980);
+            patient.setAddress(i + " Benchmark Road");
+            patient.setCreated(now);
+            patient.setUpdated(now);
+            Prescription prescription = new Prescription();
+            prescription.setPhysician(physician);
+            prescription.setPatient(patient);
+            prescription.setMedicine(medicine);
+            prescription.setNumberOfRefills(i % 5);
+            prescription.setPrescriptionInformation("bench");
+            prescription.getId().setPhysicianId(physician.getId());
+            prescription.getId().setPatientId(i);
+            prescriptions.add(prescription);
+        }
+        physician.setPrescriptions(new HashSet<>(prescriptions));
+
+        medicalSchool = new PublicSchool();
+        medicalSchool.setId(1);
+        medicalSchool.setName("Bench University");
+        Set<MedicalTraining> trainings = new HashSet<>();
+        for (int i = 1; i <= size; i++) {
+            MedicalTraining training = new MedicalTraining();
+            training.setId(i);
+            training.setMedicalSchool(medicalSchool);
+            DurationAndStatus durationAndStatus = new DurationAndStatus();
+            durationAndStatus.setDurationAndStatus(now.minusYears(1), now, "+");
+            training.setDurationAndStatus(durationAndStatus);
+            trainings.add(training);
+        }
+        medicalSchool.setMedicalTrainings(trainings);
+    }
+
+    @Benchmark
+    public String physician() throws JsonProcessingException {
+        return writer.writeValueAsString(physician);
+    }
+
+    @Benchmark
+    public String prescriptions() throws JsonProcessingException {
+        return writer.writeValueAsString(prescriptions);
+    }
+
+    @Benchmark
+    public String medicalSchool() throws JsonProcessingException {
+        return writer.writeValueAsString(medicalSchool);
+    }
+}
@@ -0,0 +1,70 @@
+/********************************************************************************************************
+ * File:  AuthHeaderBenchmark.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: JMH benchmarks of Authorization header handling in CustomAuthenticationMechanism.
+ */
+package acmemedical.security;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.security.enterprise.credential.UsernamePasswordCredential;
+import jakarta.security.enterprise.identitystore.CredentialValidationResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import acmemedical.entity.SecurityUser;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthHeaderBenchmark {
+
+    private String basicHeader;
+    private String bearerToken;
+    private BearerTokenService tokenService;
+
+    @Setup
+    public void setUp() {
+        basicHeader = "Basic " + Base64.getEncoder().encodeToString("admin:admin".getBytes(StandardCharsets.UTF_8));
+        tokenService = new BearerTokenService();
+        tokenService.configuredSigningKey = Optional.empty();
+        tokenService.ttlSeconds = TimeUnit.HOURS.toSeconds(1);
+        tokenService.init();
+        SecurityUser user = new SecurityUser();
+        user.setId(1);
+        user.setUsername("admin");
+        bearerToken = tokenService.issue(user, Set.of("ADMIN_ROLE"));
+    }
+
+    @Benchmark
+    public UsernamePasswordCredential parseBasic() {
+        return CustomAuthenticationMechanism.parseBasicCredentials(basicHeader);
+    }
+
+    @Benchmark
+    public CredentialValidationResult verifyBearer() {
+        return tokenService.verify(bearerToken);
+    }
+}
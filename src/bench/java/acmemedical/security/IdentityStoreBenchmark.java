@@ -0,0 +1,125 @@
+/********************************************************************************************************
+ * File:  IdentityStoreBenchmark.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: JMH benchmarks of CustomIdentityStore.validate, with and without the credential cache.
+ */
+package acmemedical.security;
+
+import static acmemedical.utility.MyConstants.DEFAULT_KEY_SIZE;
+import static acmemedical.utility.MyConstants.DEFAULT_PROPERTY_ALGORITHM;
+import static acmemedical.utility.MyConstants.DEFAULT_PROPERTY_ITERATIONS;
+import static acmemedical.utility.MyConstants.DEFAULT_SALT_SIZE;
+import static acmemedical.utility.MyConstants.PROPERTY_ALGORITHM;
+import static acmemedical.utility.MyConstants.PROPERTY_ITERATIONS;
+import static acmemedical.utility.MyConstants.PROPERTY_KEY_SIZE;
+import static acmemedical.utility.MyConstants.PROPERTY_SALT_SIZE;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.security.enterprise.credential.UsernamePasswordCredential;
+import jakarta.security.enterprise.identitystore.CredentialValidationResult;
+
+import org.glassfish.soteria.identitystores.hash.Pbkdf2PasswordHashImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import acmemedical.bench.BenchPersistence;
+import acmemedical.entity.SecurityRole;
+import acmemedical.entity.SecurityUser;
+
+/**
+ * <code>uncached</code> is the cost of a Basic-auth request without the credential cache (user lookup,
+ * PBKDF2 verification with the production parameters, role lookup); <code>cached</code> is a repeated request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IdentityStoreBenchmark {
+
+    private static final String USERNAME = "bench";
+    private static final String PASSWORD = "bench-password";
+
+    private EntityManagerFactory emf;
+    private EntityManager em;
+    private CustomIdentityStore identityStore;
+    private UsernamePasswordCredential credential;
+
+    @Setup
+    public void setUp() {
+        emf = BenchPersistence.createEntityManagerFactory("identity_store");
+        em = emf.createEntityManager();
+
+        // same parameters as ACMEMedicalService.initPasswordHash
+        Pbkdf2PasswordHashImpl passwordHash = new Pbkdf2PasswordHashImpl();
+        Map<String, String> hashParameters = new HashMap<>();
+        hashParameters.put(PROPERTY_ITERATIONS, DEFAULT_PROPERTY_ITERATIONS);
+        hashParameters.put(PROPERTY_ALGORITHM, DEFAULT_PROPERTY_ALGORITHM);
+        hashParameters.put(PROPERTY_SALT_SIZE, DEFAULT_SALT_SIZE);
+        hashParameters.put(PROPERTY_KEY_SIZE, DEFAULT_KEY_SIZE);
+        passwordHash.initialize(hashParameters);
+
+        BenchPersistence.inTransaction(em, () -> {
+            SecurityUser user = new SecurityUser();
+            user.setUsername(USERNAME);
+            user.setPwHash(passwordHash.generate(PASSWORD.toCharArray()));
+            user.setRoles(Set.of(em.find(SecurityRole.class, 2)));
+            em.persist(user);
+        });
+        em.clear();
+
+        CustomIdentityStoreJPAHelper jpaHelper = new CustomIdentityStoreJPAHelper();
+        jpaHelper.em = em;
+        CredentialCache credentialCache = new CredentialCache();
+        credentialCache.maxSize = 1024;
+        credentialCache.ttlSeconds = TimeUnit.HOURS.toSeconds(1);
+        credentialCache.init();
+
+        identityStore = new CustomIdentityStore();
+        identityStore.jpaHelper = jpaHelper;
+        identityStore.pbAndjPasswordHash = passwordHash;
+        identityStore.credentialCache = credentialCache;
+        credential = new UsernamePasswordCredential(USERNAME, PASSWORD);
+    }
+
+    @TearDown
+    public void tearDown() {
+        em.close();
+        emf.close();
+    }
+
+    @Benchmark
+    public CredentialValidationResult uncached() {
+        identityStore.credentialCache.invalidateAll();
+        CredentialValidationResult result = identityStore.validate(credential);
+        em.clear();
+        return result;
+    }
+
+    @Benchmark
+    public CredentialValidationResult cached() {
+        return identityStore.validate(credential);
+    }
+}
@@ -0,0 +1,2 @@
+-- Rows used by the benchmarks are created by their @Setup methods, see src/bench/java
+INSERT INTO security_role (role_id, name) VALUES (1, 'ADMIN_ROLE'), (2, 'USER_ROLE');
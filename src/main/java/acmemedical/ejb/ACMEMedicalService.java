@@ -17,6 +17,7 @@ import static acmemedical.utility.MyConstants.DEFAULT_PROPERTY_ITERATIONS;
 import static acmemedical.utility.MyConstants.DEFAULT_SALT_SIZE;
 import static acmemedical.utility.MyConstants.DEFAULT_USER_PASSWORD;
 import static acmemedical.utility.MyConstants.DEFAULT_USER_PREFIX;
+import static acmemedical.utility.MyConstants.FULLTEXT_MIN_TOKEN_LENGTH;
 import static acmemedical.utility.MyConstants.PARAM1;
 import static acmemedical.utility.MyConstants.PROPERTY_ALGORITHM;
 import static acmemedical.utility.MyConstants.PROPERTY_ITERATIONS;
@@ -30,31 +31,79 @@ import static acmemedical.entity.MedicalSchool.IS_DUPLICATE_QUERY_NAME;
 import static acmemedical.entity.MedicalSchool.SPECIFIC_MEDICAL_SCHOOL_QUERY_NAME;
 
 import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.SessionContext;
 import jakarta.ejb.Singleton;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
 import jakarta.inject.Inject;
+import jakarta.interceptor.Interceptors;
+import jakarta.persistence.AttributeNode;
+import jakarta.persistence.EntityGraph;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.OneToOne;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.PersistenceException;
+import jakarta.persistence.PersistenceUnitUtil;
+import jakarta.persistence.Tuple;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.SingularAttribute;
 import jakarta.security.enterprise.identitystore.Pbkdf2PasswordHash;
 import jakarta.transaction.Transactional;
-import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.ClientErrorException;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.jpa.QueryHints;
 
 import acmemedical.entity.MedicalTraining;
 import acmemedical.entity.Patient;
@@ -62,12 +111,20 @@ import acmemedical.entity.DurationAndStatus;
 import acmemedical.entity.MedicalCertificate;
 import acmemedical.entity.Medicine;
 import acmemedical.entity.Prescription;
+import acmemedical.entity.PojoBase;
 import acmemedical.entity.PrescriptionPK;
 import acmemedical.entity.SecurityRole;
 import acmemedical.entity.SecurityUser;
 import acmemedical.rest.resource.HttpErrorResponse;
+import acmemedical.security.CredentialCache;
+import acmemedical.utility.BatchItemResult;
+import acmemedical.utility.BulkDeleteResult;
+import acmemedical.utility.ConstraintViolationUtil;
 import acmemedical.utility.EntityOperationResponse;
 import acmemedical.utility.EntityValidationUtil;
+import acmemedical.utility.KeysetPage;
+import acmemedical.utility.PaginationUtil;
+import acmemedical.utility.VersionStamp;
 import acmemedical.entity.Physician;
 import acmemedical.entity.MedicalSchool;
 
@@ -75,12 +132,42 @@ import acmemedical.entity.MedicalSchool;
 
 /**
  * Stateless Singleton EJB Bean - ACMEMedicalService
+ * <p>
+ * Concurrency is bean-managed: reads run in parallel, and methods marked with {@link WriteLock}
+ * only block other writers of the same row (see {@link EntityLockInterceptor}).
+ * Every method is timed by {@link ServiceMetricsInterceptor}.
  */
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@Interceptors({ServiceMetricsInterceptor.class, EntityLockInterceptor.class})
 public class ACMEMedicalService implements Serializable {
     private static final long serialVersionUID = 1L;
     
     private static final Logger LOG = LogManager.getLogger();
+
+    public static final String CONDITIONAL_UPDATES_COUNTER_NAME = "acmemedical.service.update.conditional";
+    public static final String UPDATE_CONFLICTS_COUNTER_NAME = "acmemedical.service.update.conflicts";
+    public static final String ENTITY_TAG = "entity";
+    // query cache region of the getCollectionStamp aggregates (META-INF/ehcache.xml)
+    public static final String COLLECTION_STAMP_CACHE_REGION = "acmemedical.collection_stamp";
+
+    // rows written by the stream* methods between two clears of the persistence context
+    private static final int STREAM_CLEAR_INTERVAL = 500;
+
+    // see responseGraphHint
+    private static final String RESPONSE_GRAPH_SUFFIX = ".response";
+
+    // rows inserted per transaction by the bulk persist* methods (a multiple of hibernate.jdbc.batch_size)
+    private static final int BATCH_CHUNK_SIZE = 500;
+
+    // unique index on security_user.username, see onboardPhysician
+    private static final String USERNAME_UNIQUE_KEY = "username_UNIQUE";
+
+    // escape character of the LIKE patterns built by likePrefix
+    private static final char LIKE_ESCAPE = '\\';
+    // PojoBase / PojoBaseCompositeKey attributes read by the version stamps
+    private static final String VERSION_ATTRIBUTE = "version";
+    private static final String UPDATED_ATTRIBUTE = "updated";
     
     @PersistenceContext(name = PU_NAME)
     protected EntityManager em;
@@ -88,16 +175,29 @@ public class ACMEMedicalService implements Serializable {
     @Inject
     protected Pbkdf2PasswordHash pbAndjPasswordHash;
 
+    @Inject
+    protected MedicineTypeAheadIndex medicineTypeAhead;
+    @Inject
+    protected MetricRegistry metricRegistry;
+    @Inject
+    protected CredentialCache credentialCache;
+
+    @Resource
+    protected SessionContext sessionContext;
+
+    // see userRole(); roles are reference data, never renamed or deleted at runtime
+    private volatile Integer userRoleId;
+
     // NOTE: This comment line added by Ryan to indicate CRUD service for Physician entity.
     public List<Physician> getAllPhysicians() {
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<Physician> cq = cb.createQuery(Physician.class);
         cq.select(cq.from(Physician.class));
-        return em.createQuery(cq).getResultList();
+        return em.createQuery(cq).setHint(QueryHints.JAKARTA_HINT_LOADGRAPH, em.getEntityGraph(Physician.RESPONSE_GRAPH)).getResultList();
     }
 
     public Physician getPhysicianById(int id) {
-        return em.find(Physician.class, id);
+        return em.find(Physician.class, id, responseGraphHint(Physician.class));
     }
 
     @Transactional
@@ -106,75 +206,125 @@ public class ACMEMedicalService implements Serializable {
         return newPhysician;
     }
 
+    /**
+     * Creates the physician and its security user (<code>user_&lt;first&gt;.&lt;last&gt;</code>, default password,
+     * USER_ROLE) in one transaction.  A taken username is reported by the unique index on
+     * <code>security_user.username</code>, not checked beforehand, and rolls back the physician too.
+     *
+     * @param newPhysician - physician to create
+     * @return the physician, with its id and timestamps
+     * @throws ClientErrorException 409 if the username already exists
+     */
     @Transactional
-    public void buildUserForNewPhysician(Physician newPhysician) {
-    	// attach Physician，added by Ryan
-        Physician managedPhysician = em.find(Physician.class, newPhysician.getId());
-        // generate the Username
-        String generatedUsername = DEFAULT_USER_PREFIX + "_" 
-                + newPhysician.getFirstName() + "." 
-                + newPhysician.getLastName();
-        // check if username is duplicated
-        TypedQuery<SecurityUser> dupCheckQuery = em.createQuery(
-                "SELECT su FROM SecurityUser su WHERE su.username = :uname", SecurityUser.class);
-        dupCheckQuery.setParameter("uname", generatedUsername);
-        List<SecurityUser> existingUsers = dupCheckQuery.getResultList();
-        if (!existingUsers.isEmpty()) {
-            throw new WebApplicationException(
-                Response.status(Response.Status.CONFLICT)
-                .entity(new HttpErrorResponse(409, "Username already exists: " + generatedUsername))
+    public Physician onboardPhysician(Physician newPhysician) {
+        em.persist(newPhysician);
+        // the user's IDENTITY insert would flush the physician anyway: flushed here, a physician that violates a
+        // constraint of its own fails as itself instead of as a taken username
+        em.flush();
+        SecurityUser user = newUserFor(newPhysician);
+        try {
+            // IDENTITY key: inserted right away, so a duplicate username fails here
+            em.persist(user);
+        }
+        catch (PersistenceException e) {
+            if (!ConstraintViolationUtil.isDuplicateKey(e, USERNAME_UNIQUE_KEY)) {
+                throw e;
+            }
+            throw new ClientErrorException(Response.status(Response.Status.CONFLICT)
+                .entity(new HttpErrorResponse(409, "Username already exists: " + user.getUsername()))
                 .type(MediaType.APPLICATION_JSON)
-                .build()
-            );
+                .build());
+        }
+        return newPhysician;
+    }
+
+    /**
+     * Onboard many physicians, see {@link #onboardPhysician(Physician)}: a chunk of physicians and their users is
+     * created in one transaction, and a taken username only fails its own element.
+     * See {@link #persistInChunks(List, Function)}
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public List<BatchItemResult> onboardPhysicians(List<Physician> newPhysicians) {
+        return persistInChunks(newPhysicians, physician -> {
+            em.persist(physician);
+            em.persist(newUserFor(physician));
+            return physician;
+        });
+    }
+
+    /**
+     * Pbkdf2PasswordHash is @Dependent: this bean has its own, initialized once rather than for every new user
+     */
+    @PostConstruct
+    public void initPasswordHash() {
+        if (pbAndjPasswordHash == null) {
+            return;
         }
-        
-        // Create SecurityUser
-        SecurityUser userForNewPhysician = new SecurityUser();
-        userForNewPhysician.setUsername(generatedUsername);
         Map<String, String> pbAndjProperties = new HashMap<>();
         pbAndjProperties.put(PROPERTY_ALGORITHM, DEFAULT_PROPERTY_ALGORITHM);
         pbAndjProperties.put(PROPERTY_ITERATIONS, DEFAULT_PROPERTY_ITERATIONS);
         pbAndjProperties.put(PROPERTY_SALT_SIZE, DEFAULT_SALT_SIZE);
         pbAndjProperties.put(PROPERTY_KEY_SIZE, DEFAULT_KEY_SIZE);
         pbAndjPasswordHash.initialize(pbAndjProperties);
-        String pwHash = pbAndjPasswordHash.generate(DEFAULT_USER_PASSWORD.toCharArray());
-        userForNewPhysician.setPwHash(pwHash);
-//        userForNewPhysician.setPhysician(newPhysician);
-        userForNewPhysician.setPhysician(managedPhysician);
-        
-        //Added by Ryan
-        TypedQuery<SecurityRole> query = em.createNamedQuery(SecurityRole.FIND_BY_NAME, SecurityRole.class);
-    	query.setParameter("param1", "USER_ROLE");
-        SecurityRole userRole = query.getSingleResult(); /* TODO ACMECS01 - Use NamedQuery on SecurityRole to find USER_ROLE */
-        userForNewPhysician.getRoles().add(userRole);
-        userRole.getUsers().add(userForNewPhysician);
-        
-        em.persist(userForNewPhysician);
     }
 
+    /**
+     * @return a new, not yet persisted, user for a new physician
+     */
+    protected SecurityUser newUserFor(Physician newPhysician) {
+        SecurityUser userForNewPhysician = new SecurityUser();
+        userForNewPhysician.setUsername(DEFAULT_USER_PREFIX + "_" + newPhysician.getFirstName() + "." + newPhysician.getLastName());
+        userForNewPhysician.setPwHash(pbAndjPasswordHash.generate(DEFAULT_USER_PASSWORD.toCharArray()));
+        userForNewPhysician.setPhysician(newPhysician);
+        // only the owning side: adding the user to SecurityRole.users would load every user of the role
+        userForNewPhysician.getRoles().add(userRole());
+        return userForNewPhysician;
+    }
+
+    /**
+     * @return USER_ROLE as a reference; the id is looked up once, the row itself comes from the second-level cache
+     */
+    protected SecurityRole userRole() {
+        Integer id = userRoleId;
+        if (id == null) {
+            TypedQuery<SecurityRole> query = em.createNamedQuery(SecurityRole.FIND_BY_NAME, SecurityRole.class);
+            query.setParameter("param1", USER_ROLE);
+            id = query.getSingleResult().getId();
+            userRoleId = id;
+        }
+        return em.getReference(SecurityRole.class, id);
+    }
+
+    /**
+     * Sets the medicine of the physician's prescription for the patient.  The prescription is read by its primary key
+     * together with its medicine, which is then updated in place: a constant number of statements, however many
+     * prescriptions the physician has.
+     * <p>
+     * The medicine is shared by every prescription of it, so the update goes through {@link #updateMedicine(int, Medicine)}
+     * on the business object: it holds the same (Medicine, id) write lock as the other medicine writers, rather than a
+     * Prescription lock that none of them take.
+     *
+     * @param physicianId - id of the physician
+     * @param patientId - id of the patient
+     * @param newMedicine - drug name, manufacturer and dosage to set
+     * @return the prescription's medicine, <code>newMedicine</code> if the physician has no prescription for the
+     *         patient, null if the physician does not exist
+     */
     @Transactional
     public Medicine setMedicineForPhysicianPatient(int physicianId, int patientId, Medicine newMedicine) {
-        Physician physicianToBeUpdated = em.find(Physician.class, physicianId);
-        if (physicianToBeUpdated != null) { // Physician exists
-            Set<Prescription> prescriptions = physicianToBeUpdated.getPrescriptions();
-            prescriptions.forEach(p -> {
-                if (p.getPatient().getId() == patientId) {
-                    if (p.getMedicine() != null) { // Medicine exists
-                        Medicine medicine = em.find(Medicine.class, p.getMedicine().getId());
-                        medicine.setMedicine(newMedicine.getDrugName(),
-                        				  newMedicine.getManufacturerName(),
-                        				  newMedicine.getDosageInformation());
-                        em.merge(medicine);
-                    }
-                    else { // Medicine does not exist
-                        p.setMedicine(newMedicine);
-                        em.merge(physicianToBeUpdated);
-                    }
-                }
-            });
-            return newMedicine;
+        TypedQuery<Prescription> query = em.createQuery("SELECT p FROM Prescription p JOIN FETCH p.medicine"
+            + " WHERE p.id.physicianId = :physicianId AND p.id.patientId = :patientId", Prescription.class);
+        query.setParameter("physicianId", physicianId);
+        query.setParameter("patientId", patientId);
+        List<Prescription> found = query.getResultList();
+        if (found.isEmpty()) {
+            // nothing to change, only tell a missing physician apart
+            return getVersionStamp(Physician.class, physicianId) == null ? null : newMedicine;
         }
-        else return null;  // Physician doesn't exists
+        // Prescription.medicine is mandatory: there is always one to update, and it is already managed, so
+        // updateMedicine finds it without another statement
+        ACMEMedicalService self = sessionContext == null ? this : sessionContext.getBusinessObject(ACMEMedicalService.class);
+        return self.updateMedicine(found.get(0).getMedicine().getId(), newMedicine);
     }
 
     /**
@@ -185,6 +335,7 @@ public class ACMEMedicalService implements Serializable {
      * @return Entity with updated information
      */
     @Transactional
+    @WriteLock(Physician.class)
     public Physician updatePhysicianById(int id, Physician physicianWithUpdates) {
     	Physician physicianToBeUpdated = getPhysicianById(id);
         if (physicianToBeUpdated != null) {
@@ -204,33 +355,117 @@ public class ACMEMedicalService implements Serializable {
     }
 
     /**
-     * To delete a physician by id
+     * Update a physician's names (those not null) in one conditional UPDATE, see {@link #updateIfMatch(Class, Object, Set, BiConsumer)}
+     *
+     * @param id - id of entity to update
+     * @param versions - versions the row may have, null to update whatever its version
+     * @param physicianWithUpdates - entity with updated information
+     * @return the updated entity, null if there is no such physician
+     * @throws ClientErrorException 412 if the physician has another version
+     */
+    @Transactional
+    @WriteLock(Physician.class)
+    public Physician updatePhysicianIfMatch(int id, Set<Long> versions, Physician physicianWithUpdates) {
+        boolean found = updateIfMatch(Physician.class, id, versions, (update, root) -> {
+            if (physicianWithUpdates.getFirstName() != null) {
+                update.set(root.get("firstName"), physicianWithUpdates.getFirstName());
+            }
+            if (physicianWithUpdates.getLastName() != null) {
+                update.set(root.get("lastName"), physicianWithUpdates.getLastName());
+            }
+        });
+        return found ? getPhysicianById(id) : null;
+    }
+
+    /**
+     * To delete a physician by id, with the same statements as {@link #deletePhysicians(Collection)}.  Whether the
+     * physician exists is not looked up first: a missing one simply deletes no physician row.
      * 
      * @param id - physician id to delete
+     * @return the id as deleted or not found, rows affected per table
      */
     @Transactional
-    public void deletePhysicianById(int id) {
-        Physician physician = getPhysicianById(id);
-        em.refresh(physician);
+    @WriteLock(Physician.class)
+    public BulkDeleteResult deletePhysicianById(int id) {
+        BulkDeleteResult result = new BulkDeleteResult();
+        List<Integer> ids = List.of(id);
+        if (removePhysicians(ids, result) == 0) {
+            LOG.warn("No physician found for id: {}", id);
+            result.notFound(id);
+        } else {
+            result.deleted(ids);
+        }
+        return result;
+    }
 
-        /* TODO ACMECS02 - Use NamedQuery on SecurityRole to find this related Student
-        so that when we remove it, the relationship from SECURITY_USER table
-        is not dangling
-    	 */
-        TypedQuery<SecurityUser> findUser = em.createNamedQuery("SecurityUser.findByPhysicianId", SecurityUser.class);
-        findUser.setParameter("physicianId", id);
+    /**
+     * Deletes physicians with one statement per table, however many prescriptions and certificates they have:
+     * their security users are unlinked (not deleted, and dropped from the credential cache), then their
+     * prescriptions, certificates and the physicians themselves are deleted.  Concurrent writes to the same rows are ordered by the database's row locks.
+     *
+     * @param ids - ids of the physicians
+     * @return ids deleted and not found, rows affected per table
+     */
+    @Transactional
+    public BulkDeleteResult deletePhysicians(Collection<Integer> ids) {
+        BulkDeleteResult result = new BulkDeleteResult();
+        List<Integer> existing = existingIds(Physician.class, ids, result);
+        if (!existing.isEmpty()) {
+            removePhysicians(existing, result);
+            result.deleted(existing);
+        }
+        return result;
+    }
 
-        try {
-            SecurityUser sUser = findUser.getSingleResult();
+    /**
+     * @return physician rows deleted
+     */
+    private int removePhysicians(List<Integer> ids, BulkDeleteResult result) {
+        em.flush();
+        int unlinked = bulk("UPDATE SecurityUser su SET su.physician = NULL WHERE su.physician.id IN :ids", ids);
+        result.rows("security_user", unlinked);
+        result.rows("prescription", bulk("DELETE FROM Prescription p WHERE p.id.physicianId IN :ids", ids));
+        result.rows("medical_certificate", bulk("DELETE FROM MedicalCertificate mc WHERE mc.owner.id IN :ids", ids));
+        int deleted = bulk("DELETE FROM Physician p WHERE p.id IN :ids", ids);
+        result.rows("physician", deleted);
+        // the bulk statements bypassed the persistence context: drop what it still holds of the deleted rows
+        em.clear();
+        // and CredentialCacheListener: cached logins of the unlinked users would still carry their physician.  Selecting
+        // their usernames would cost a statement per call; deleting a physician with a login is rare enough to start over
+        if (unlinked > 0 && credentialCache != null) {
+            credentialCache.invalidateAll();
+        }
+        return deleted;
+    }
 
-            // Instead of deleting the user, just nullify the physician relationship
-            sUser.setPhysician(null);
-            em.merge(sUser);
-        } catch (NoResultException e) {
-            LOG.warn("No SecurityUser found for physician id: {}", id);
+    /**
+     * @return the requested ids that exist, in request order; the others are added to <code>result</code> as not found
+     */
+    protected <T> List<Integer> existingIds(Class<T> entity, Collection<Integer> ids, BulkDeleteResult result) {
+        Set<Integer> requested = new LinkedHashSet<>();
+        ids.stream().filter(Objects::nonNull).forEach(requested::add);
+        if (requested.isEmpty()) {
+            return List.of();
+        }
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Integer> cq = cb.createQuery(Integer.class);
+        Root<T> root = cq.from(entity);
+        Path<Integer> id = root.get(idAttribute(root.getModel()).getName());
+        Set<Integer> found = new HashSet<>(em.createQuery(cq.select(id).where(id.in(requested))).getResultList());
+        List<Integer> existing = new ArrayList<>();
+        for (Integer candidate : requested) {
+            if (found.contains(candidate)) {
+                existing.add(candidate);
+            }
+            else {
+                result.notFound(candidate);
+            }
         }
+        return existing;
+    }
 
-        em.remove(physician);
+    private int bulk(String statement, List<Integer> ids) {
+        return em.createQuery(statement).setParameter("ids", ids).executeUpdate();
     }
 
     
@@ -261,32 +496,588 @@ public class ACMEMedicalService implements Serializable {
         return allQuery.getResultList();
     }
     
+    /**
+     * Keyset pagination: read at most <code>limit</code> rows whose id is greater than <code>afterId</code>, in id order.
+     * Unlike OFFSET paging, the cost of a page does not grow with its position in the table.
+     *
+     * @param entity - entity type
+     * @param afterId - id of the last row of the previous page, 0 for the first page
+     * @param limit - page size
+     * @return the page and the cursor of the next one
+     */
+    public <T extends PojoBase> KeysetPage<T> getPage(Class<T> entity, int afterId, int limit) {
+        return getPage(entity, afterId, limit, null);
+    }
+
+    /**
+     * Keyset pagination reading only some fields, see {@link #select(Class, Set, BiConsumer, int)}
+     *
+     * @param fields - fields to read, null for whole entities
+     */
+    public <T extends PojoBase> KeysetPage<T> getPage(Class<T> entity, int afterId, int limit, Set<String> fields) {
+        return getPage(entity, afterId, limit, fields, (cb, root) -> Collections.emptyList());
+    }
+
+    /**
+     * Read one row with only some fields set, see {@link #select(Class, Set, BiConsumer, int)}
+     *
+     * @param entity - entity type
+     * @param id - primary key (a PrescriptionPK for Prescription)
+     * @param fields - fields to read
+     * @return unmanaged instance, null if there is no such row
+     */
+    public <T> T getProjectedById(Class<T> entity, Object id, Set<String> fields) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        List<T> rows = select(entity, fields, (cq, root) -> cq.where(cb.equal(root.get(idAttribute(root.getModel())), id)), 1);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Validators of one row for a conditional GET, read without loading the entity: a single tuple query of the
+     * version and updated columns of the row and of each entity its response embeds (see {@link #embeddedAttributes(EntityType)}),
+     * so the stamp changes whenever the response would.  A row already in the second-level cache costs no SQL at all.
+     *
+     * @param entity - entity type
+     * @param id - primary key (a PrescriptionPK for Prescription)
+     * @return the stamp, null if there is no such row
+     */
+    public <T> VersionStamp getVersionStamp(Class<T> entity, Object id) {
+        EntityType<T> model = em.getMetamodel().entity(entity);
+        List<SingularAttribute<? super T, ?>> embedded = embeddedAttributes(model);
+        if (embedded.isEmpty() && em.getEntityManagerFactory().getCache().contains(entity, id)) {
+            return versionStampOf(em.find(entity, id));
+        }
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+        Root<T> root = cq.from(entity);
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(root.get(VERSION_ATTRIBUTE));
+        selections.add(root.get(UPDATED_ATTRIBUTE));
+        for (SingularAttribute<? super T, ?> attribute : embedded) {
+            Join<T, ?> join = root.join(attribute.getName(), JoinType.LEFT);
+            selections.add(join.get(VERSION_ATTRIBUTE));
+            selections.add(join.get(UPDATED_ATTRIBUTE));
+        }
+        cq.multiselect(selections).where(cb.equal(root.get(idAttribute(model)), id));
+        List<Tuple> rows = em.createQuery(cq).setMaxResults(1).getResultList();
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Tuple row = rows.get(0);
+        List<Object> versions = new ArrayList<>();
+        LocalDateTime updated = null;
+        for (int column = 0; column < selections.size(); column += 2) {
+            versions.add(row.get(column));
+            updated = VersionStamp.latest(updated, (LocalDateTime) row.get(column + 1));
+        }
+        return VersionStamp.of(stampKey(id), versions, updated);
+    }
+
+    /**
+     * The stamp {@link #getVersionStamp(Class, Object)} would read, taken from an entity already loaded with its
+     * response graph.  Falls back to that query when an embedded entity was not loaded (or a projection left it out).
+     *
+     * @param entity - a whole entity as returned by the get*ById methods
+     * @return the stamp
+     */
+    @SuppressWarnings("unchecked")
+    public <T> VersionStamp versionStampOf(T entity) {
+        Class<T> type = (Class<T>) Hibernate.getClass(entity);
+        EntityType<T> model = em.getMetamodel().entity(type);
+        Object id = readField(entity, idAttribute(model));
+        List<Object> versions = new ArrayList<>();
+        versions.add(readField(entity, model.getSingularAttribute(VERSION_ATTRIBUTE)));
+        LocalDateTime updated = (LocalDateTime) readField(entity, model.getSingularAttribute(UPDATED_ATTRIBUTE));
+        for (SingularAttribute<? super T, ?> attribute : embeddedAttributes(model)) {
+            Object reference = readField(entity, attribute);
+            if (reference == null || !Hibernate.isInitialized(reference)) {
+                return getVersionStamp(type, id);
+            }
+            Object referenced = Hibernate.unproxy(reference);
+            EntityType<?> referencedModel = em.getMetamodel().entity(Hibernate.getClass(referenced));
+            versions.add(readField(referenced, referencedModel.getSingularAttribute(VERSION_ATTRIBUTE)));
+            updated = VersionStamp.latest(updated, (LocalDateTime) readField(referenced, referencedModel.getSingularAttribute(UPDATED_ATTRIBUTE)));
+        }
+        return VersionStamp.of(stampKey(id), versions, updated);
+    }
+
+    /**
+     * Validators of a whole collection: row count and latest <code>updated</code>, taken over the entity's table and the
+     * tables of the entities its response embeds.  Each is one aggregate query served by the table's updated index.
+     * Filters and paging are not taken into account, so the stamp is conservative: any change to the table changes it.
+     * <p>
+     * The aggregates are read through the query cache (region {@value #COLLECTION_STAMP_CACHE_REGION}), so most pages
+     * cost no stamp query at all: Hibernate drops a cached result as soon as this node writes to its table, bulk
+     * UPDATE and DELETE included, and the region's short TTL bounds how long a change made by another node goes unseen.
+     *
+     * @param entity - entity type
+     * @return the stamp
+     */
+    public <T> VersionStamp getCollectionStamp(Class<T> entity) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+        Root<T> root = cq.from(entity);
+        cq.multiselect(cb.count(root), cb.greatest(root.<LocalDateTime>get(UPDATED_ATTRIBUTE)));
+        Tuple row = collectionStampQuery(em.createQuery(cq)).getSingleResult();
+        LocalDateTime updated = row.get(1, LocalDateTime.class);
+        for (SingularAttribute<? super T, ?> attribute : embeddedAttributes(root.getModel())) {
+            updated = VersionStamp.latest(updated, latestUpdate(attribute.getJavaType()));
+        }
+        return VersionStamp.ofCollection(row.get(0, Long.class), updated);
+    }
+
+    protected <T> LocalDateTime latestUpdate(Class<T> entity) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<LocalDateTime> cq = cb.createQuery(LocalDateTime.class);
+        Root<T> root = cq.from(entity);
+        return collectionStampQuery(em.createQuery(cq.select(cb.greatest(root.<LocalDateTime>get(UPDATED_ATTRIBUTE))))).getSingleResult();
+    }
+
+    private static <R> TypedQuery<R> collectionStampQuery(TypedQuery<R> query) {
+        return query.setHint(QueryHints.HINT_CACHEABLE, true)
+            .setHint(QueryHints.HINT_CACHE_REGION, COLLECTION_STAMP_CACHE_REGION);
+    }
+
+    /**
+     * The entities embedded in the JSON response of <code>model</code>: the to-one associations of its response graph
+     * that it owns.  Inverse one-to-ones (Physician.securityUser, MedicalTraining.certificate) are in their graphs only
+     * because Hibernate cannot load them lazily; they are not serialized.
+     */
+    protected <T> List<SingularAttribute<? super T, ?>> embeddedAttributes(EntityType<T> model) {
+        String graphName = model.getJavaType().getSimpleName() + RESPONSE_GRAPH_SUFFIX;
+        List<SingularAttribute<? super T, ?>> embedded = new ArrayList<>();
+        for (EntityGraph<?> graph : em.getEntityGraphs(model.getJavaType())) {
+            if (!graphName.equals(graph.getName())) {
+                continue;
+            }
+            for (AttributeNode<?> node : graph.getAttributeNodes()) {
+                Attribute<? super T, ?> attribute = model.getAttribute(node.getAttributeName());
+                if (attribute instanceof SingularAttribute && isOwningToOne(attribute)) {
+                    embedded.add((SingularAttribute<? super T, ?>) attribute);
+                }
+            }
+        }
+        return embedded;
+    }
+
+    private static boolean isOwningToOne(Attribute<?, ?> attribute) {
+        switch (attribute.getPersistentAttributeType()) {
+            case MANY_TO_ONE:
+                return true;
+            case ONE_TO_ONE:
+                OneToOne oneToOne = ((Field) attribute.getJavaMember()).getAnnotation(OneToOne.class);
+                return oneToOne == null || oneToOne.mappedBy().isEmpty();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Optimistic concurrency without reading the row first: a single
+     * <code>UPDATE ... SET &lt;changes&gt;, version = version + 1, updated = now WHERE id = ? AND version IN (...)</code>.
+     * If no row was updated, whether the row is missing (false) or was changed by someone else (412) is only looked up
+     * on that failure path.  The statement bypasses the entity listeners, which is why it sets version and updated
+     * itself, and the persistence context, so a copy already loaded in the transaction is refreshed; entities in the
+     * second-level cache should not use it (see updateMedicineIfMatch).
+     * <p>
+     * Conditional calls and conflicts are counted in {@value #CONDITIONAL_UPDATES_COUNTER_NAME} and
+     * {@value #UPDATE_CONFLICTS_COUNTER_NAME}, tagged with the entity; their ratio is the conflict rate.
+     *
+     * @param entity - entity type
+     * @param id - primary key (a PrescriptionPK for Prescription)
+     * @param versions - versions the row may have, null to update whatever its version; empty always fails
+     * @param changes - adds the SET clauses
+     * @return true if the row was updated, false if there is no such row
+     * @throws ClientErrorException 412 if the row exists with another version
+     */
+    protected <T> boolean updateIfMatch(Class<T> entity, Object id, Set<Long> versions, BiConsumer<CriteriaUpdate<T>, Root<T>> changes) {
+        countConditionalUpdate(entity, versions);
+        int rows = 0;
+        if (versions == null || !versions.isEmpty()) {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaUpdate<T> update = cb.createCriteriaUpdate(entity);
+            Root<T> root = update.from(entity);
+            changes.accept(update, root);
+            Path<Long> version = root.get(VERSION_ATTRIBUTE);
+            update.set(version, cb.sum(version, 1L));
+            update.set(root.<LocalDateTime>get(UPDATED_ATTRIBUTE), LocalDateTime.now());
+            Predicate where = idEquals(cb, root, id);
+            if (versions != null) {
+                where = cb.and(where, version.in(versions));
+            }
+            rows = em.createQuery(update.where(where)).executeUpdate();
+        }
+        if (rows > 0) {
+            refreshManaged(entity, id);
+            return true;
+        }
+        if (versions == null || getVersionStamp(entity, id) == null) {
+            return false;
+        }
+        throw preconditionFailed(entity, id);
+    }
+
+    // a copy loaded earlier in the same transaction would still show the old row; without one there is nothing to read
+    private void refreshManaged(Class<?> entity, Object id) {
+        SharedSessionContractImplementor session = em.unwrap(SharedSessionContractImplementor.class);
+        EntityKey key = session.generateEntityKey((Serializable) id, session.getFactory().getMetamodel().entityPersister(entity));
+        Object managed = session.getPersistenceContextInternal().getEntity(key);
+        if (managed != null) {
+            em.refresh(managed);
+        }
+    }
+
+    // a composite key is compared column by column, which every database accepts in an UPDATE
+    private static <T> Predicate idEquals(CriteriaBuilder cb, Root<T> root, Object id) {
+        if (id instanceof PrescriptionPK) {
+            PrescriptionPK pk = (PrescriptionPK) id;
+            Path<?> key = root.get("id");
+            return cb.and(cb.equal(key.get("physicianId"), pk.getPhysicianId()), cb.equal(key.get("patientId"), pk.getPatientId()));
+        }
+        return cb.equal(root.get(idAttribute(root.getModel())), id);
+    }
+
+    // CriteriaUpdate.set(path, value) does not accept a null value
+    private <Y> void setValue(CriteriaUpdate<?> update, Path<Y> path, Y value) {
+        if (value == null) {
+            update.set(path, em.getCriteriaBuilder().nullLiteral(path.getJavaType()));
+        }
+        else {
+            update.set(path, value);
+        }
+    }
+
+    protected void countConditionalUpdate(Class<?> entity, Set<Long> versions) {
+        if (versions != null && metricRegistry != null) {
+            metricRegistry.counter(CONDITIONAL_UPDATES_COUNTER_NAME, new Tag(ENTITY_TAG, entity.getSimpleName())).inc();
+        }
+    }
+
+    protected ClientErrorException preconditionFailed(Class<?> entity, Object id) {
+        if (metricRegistry != null) {
+            metricRegistry.counter(UPDATE_CONFLICTS_COUNTER_NAME, new Tag(ENTITY_TAG, entity.getSimpleName())).inc();
+        }
+        LOG.debug("{} {} was modified concurrently", entity.getSimpleName(), id);
+        return new ClientErrorException(entity.getSimpleName() + " " + stampKey(id) + " has been modified, read it again",
+            Response.Status.PRECONDITION_FAILED);
+    }
+
+    // id part of an entity tag: the id, or physicianId:patientId
+    private static String stampKey(Object id) {
+        if (id instanceof PrescriptionPK) {
+            PrescriptionPK pk = (PrescriptionPK) id;
+            return VersionStamp.key(pk.getPhysicianId(), pk.getPatientId());
+        }
+        return String.valueOf(id);
+    }
+
+    /**
+     * One page of the patients matching every given criterion; a null criterion is ignored
+     *
+     * @param lastNamePrefix - start of the last name, case as stored (the column collation decides)
+     * @param bornFrom - earliest year of birth, inclusive
+     * @param bornTo - latest year of birth, inclusive
+     * @param smoker - smoker flag
+     * @param afterId - id of the last row of the previous page, 0 for the first page
+     * @param limit - page size
+     * @param fields - fields to read, null for whole entities
+     * @return the page and the cursor of the next one
+     */
+    public KeysetPage<Patient> searchPatients(String lastNamePrefix, Integer bornFrom, Integer bornTo, Boolean smoker,
+        int afterId, int limit, Set<String> fields) {
+        return getPage(Patient.class, afterId, limit, fields, (cb, root) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (lastNamePrefix != null) {
+                // served by the (last_name, first_name) index
+                predicates.add(cb.like(root.get("lastName"), likePrefix(lastNamePrefix), LIKE_ESCAPE));
+            }
+            if (bornFrom != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("year"), bornFrom));
+            }
+            if (bornTo != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("year"), bornTo));
+            }
+            if (smoker != null) {
+                predicates.add(cb.equal(root.get("smoker"), (byte) (smoker ? 1 : 0)));
+            }
+            return predicates;
+        });
+    }
+
+    /**
+     * One page of the physicians whose first or last name starts with <code>namePrefix</code>
+     *
+     * @param namePrefix - start of the first or last name, null for all physicians
+     * @param afterId - id of the last row of the previous page, 0 for the first page
+     * @param limit - page size
+     * @param fields - fields to read, null for whole entities
+     * @return the page and the cursor of the next one
+     */
+    public KeysetPage<Physician> searchPhysicians(String namePrefix, int afterId, int limit, Set<String> fields) {
+        return getPage(Physician.class, afterId, limit, fields, (cb, root) -> {
+            if (namePrefix == null) {
+                return Collections.emptyList();
+            }
+            String pattern = likePrefix(namePrefix);
+            return List.of(cb.or(cb.like(root.get("lastName"), pattern, LIKE_ESCAPE),
+                cb.like(root.get("firstName"), pattern, LIKE_ESCAPE)));
+        });
+    }
+
+    /**
+     * @return <code>prefix%</code> with the LIKE wildcards of <code>prefix</code> escaped, so they match literally
+     */
+    protected static String likePrefix(String prefix) {
+        StringBuilder pattern = new StringBuilder(prefix.length() + 1);
+        for (char c : prefix.toCharArray()) {
+            if (c == LIKE_ESCAPE || c == '%' || c == '_') {
+                pattern.append(LIKE_ESCAPE);
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+
+    protected <T extends PojoBase> KeysetPage<T> getPage(Class<T> entity, int afterId, int limit, Set<String> fields,
+        BiFunction<CriteriaBuilder, Root<T>, List<Predicate>> filter) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        // one extra row tells us whether there is a next page
+        List<T> rows = select(entity, fields, (cq, root) -> {
+            List<Predicate> predicates = new ArrayList<>(filter.apply(cb, root));
+            predicates.add(cb.greaterThan(root.get("id"), afterId));
+            cq.where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.asc(root.get("id")));
+        }, limit + 1);
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new KeysetPage<>(items, String.valueOf(items.get(limit - 1).getId()));
+    }
+
+    /**
+     * Run a query shaped by <code>shape</code> (where and order by clauses) over <code>entity</code>.
+     * <p>
+     * Without <code>fields</code> whole entities are read, with the response load graph.  With <code>fields</code>
+     * the query is a tuple projection of those attributes (plus the id): unselected columns are not read and the
+     * results are new, unmanaged instances with only the selected fields set, meant for serialization with
+     * ConfigureJacksonObjectMapper's fields writer.  Only basic and embedded attributes can be selected.
+     *
+     * @param entity - entity type
+     * @param fields - attribute names, null for whole entities
+     * @param shape - adds where/order by to the query
+     * @param maxResults - maximum number of rows
+     * @return the rows
+     * @throws BadRequestException if a field is not a selectable attribute of <code>entity</code>
+     */
+    protected <T> List<T> select(Class<T> entity, Set<String> fields, BiConsumer<CriteriaQuery<?>, Root<T>> shape, int maxResults) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        if (fields == null) {
+            CriteriaQuery<T> cq = cb.createQuery(entity);
+            Root<T> root = cq.from(entity);
+            shape.accept(cq, root);
+            TypedQuery<T> query = em.createQuery(cq.select(root));
+            responseGraphHint(entity).forEach(query::setHint);
+            return query.setMaxResults(maxResults).getResultList();
+        }
+        CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+        Root<T> root = cq.from(entity);
+        shape.accept(cq, root);
+        List<SingularAttribute<? super T, ?>> attributes = selectedAttributes(root.getModel(), fields);
+        List<Selection<?>> selections = new ArrayList<>();
+        attributes.forEach(attribute -> selections.add(root.get(attribute)));
+        // the concrete class of each row, for an abstract root such as MedicalSchool;
+        // Hibernate 5 fails to parse TYPE() as the first select item, so it goes last
+        boolean polymorphic = Modifier.isAbstract(entity.getModifiers());
+        if (polymorphic) {
+            selections.add(root.type());
+        }
+        List<Tuple> tuples = em.createQuery(cq.multiselect(selections)).setMaxResults(maxResults).getResultList();
+        List<T> rows = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            Class<?> type = polymorphic ? (Class<?>) tuple.get(attributes.size()) : entity;
+            T row = entity.cast(newInstance(type));
+            for (int column = 0; column < attributes.size(); column++) {
+                setField(row, attributes.get(column), tuple.get(column));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    protected <T> List<SingularAttribute<? super T, ?>> selectedAttributes(EntityType<T> model, Set<String> fields) {
+        Map<String, SingularAttribute<? super T, ?>> selected = new LinkedHashMap<>();
+        SingularAttribute<? super T, ?> id = idAttribute(model);
+        selected.put(id.getName(), id);
+        for (String field : fields) {
+            Attribute<? super T, ?> attribute;
+            try {
+                attribute = model.getAttribute(field);
+            }
+            catch (IllegalArgumentException e) {
+                throw new BadRequestException("unknown field: " + field);
+            }
+            if (attribute.isCollection() || attribute.isAssociation()) {
+                throw new BadRequestException("field " + field + " is a relationship and cannot be selected");
+            }
+            selected.putIfAbsent(field, (SingularAttribute<? super T, ?>) attribute);
+        }
+        return new ArrayList<>(selected.values());
+    }
+
+    protected static <T> SingularAttribute<? super T, ?> idAttribute(EntityType<T> model) {
+        for (SingularAttribute<? super T, ?> attribute : model.getSingularAttributes()) {
+            if (attribute.isId()) {
+                return attribute;
+            }
+        }
+        throw new IllegalStateException(model.getName() + " has no single id attribute");
+    }
+
+    private static Object newInstance(Class<?> type) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to instantiate " + type.getName(), e);
+        }
+    }
+
+    private static Object readField(Object entity, SingularAttribute<?, ?> attribute) {
+        Field field = (Field) attribute.getJavaMember();
+        try {
+            field.setAccessible(true);
+            return field.get(entity);
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to read " + field, e);
+        }
+    }
+
+    private static void setField(Object row, SingularAttribute<?, ?> attribute, Object value) {
+        Field field = (Field) attribute.getJavaMember();
+        if (value == null && field.getType().isPrimitive()) {
+            return;
+        }
+        try {
+            field.setAccessible(true);
+            field.set(row, value);
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to set " + field, e);
+        }
+    }
+
+    /**
+     * Read a query through a forward-only JDBC cursor and detach rows as we go, so heap use stays flat
+     * whatever the number of rows.
+     */
+    protected <T> void streamAndClear(TypedQuery<T> query, Consumer<? super T> sink) {
+        // MySQL Connector/J only streams row by row with a fetch size of Integer.MIN_VALUE
+        query.setHint(QueryHints.HINT_FETCH_SIZE, Integer.MIN_VALUE);
+        query.setHint(QueryHints.HINT_READONLY, true);
+        int count = 0;
+        try (Stream<T> rows = query.getResultStream()) {
+            Iterator<T> it = rows.iterator();
+            while (it.hasNext()) {
+                sink.accept(it.next());
+                if (++count % STREAM_CLEAR_INTERVAL == 0) {
+                    em.clear();
+                }
+            }
+        }
+        LOG.debug("streamed {} rows", count);
+    }
+
+    /**
+     * Load-graph hint describing everything the JSON response of an entity serializes (the entity's
+     * "&lt;Entity&gt;.response" named entity graph), so that it is fetched in the same statement instead of
+     * lazily, one row at a time.  Empty if the entity has no such graph.
+     */
+    protected Map<String, Object> responseGraphHint(Class<?> entity) {
+        String graphName = entity.getSimpleName() + RESPONSE_GRAPH_SUFFIX;
+        for (EntityGraph<?> graph : em.getEntityGraphs(entity)) {
+            if (graphName.equals(graph.getName())) {
+                return Collections.singletonMap(QueryHints.JAKARTA_HINT_LOADGRAPH, graph);
+            }
+        }
+        return Collections.emptyMap();
+    }
+
     public <T> T getById(Class<T> entity, String namedQuery, int id) {
         TypedQuery<T> allQuery = em.createNamedQuery(namedQuery, entity);
         allQuery.setParameter(PARAM1, id);
         return allQuery.getSingleResult();
     }
 
+    /**
+     * Deletes a medical school and its trainings in a fixed number of statements, however many trainings it has:
+     * one select of the trainings' ids, one bulk UPDATE that unlinks their certificates (bumping the certificates'
+     * version, as their response changes), one bulk DELETE of the trainings, then the school itself is removed.
+     * <p>
+     * Bulk statements bypass the persistence context, so it is flushed before them, and the trainings and certificates
+     * they changed are detached after them; other managed entities are left alone.  Hibernate invalidates the
+     * second-level and query caches of the tables they touch.  The school is removed as an entity, which evicts only
+     * its own cache entry.
+     *
+     * @param id - id of the school
+     * @return the deleted school, detached
+     * @throws NoResultException if there is no such school
+     */
     @Transactional
+    @WriteLock(MedicalSchool.class)
     public MedicalSchool deleteMedicalSchool(int id) {
-        //MedicalSchool ms = getMedicalSchoolById(id);
-    	MedicalSchool ms = getById(MedicalSchool.class, MedicalSchool.SPECIFIC_MEDICAL_SCHOOL_QUERY_NAME, id);
-        if (ms != null) {
-            Set<MedicalTraining> medicalTrainings = ms.getMedicalTrainings();
-            List<MedicalTraining> list = new LinkedList<>();
-            medicalTrainings.forEach(list::add);
-            list.forEach(mt -> {
-                if (mt.getCertificate() != null) {
-                    MedicalCertificate mc = getById(MedicalCertificate.class, MedicalCertificate.ID_CARD_QUERY_NAME, mt.getCertificate().getId());
-                    mc.setMedicalTraining(null);
+        em.flush();
+        List<Integer> trainingIds = em.createQuery("SELECT mt.id FROM MedicalTraining mt WHERE mt.school.id = :schoolId", Integer.class)
+            .setParameter("schoolId", id)
+            .getResultList();
+        if (!trainingIds.isEmpty()) {
+            em.createQuery("UPDATE MedicalCertificate mc SET mc.medicalTraining = NULL, mc.version = mc.version + 1, mc.updated = :now"
+                + " WHERE mc.medicalTraining.id IN (SELECT mt.id FROM MedicalTraining mt WHERE mt.school.id = :schoolId)")
+                .setParameter("now", LocalDateTime.now())
+                .setParameter("schoolId", id)
+                .executeUpdate();
+            em.createQuery("DELETE FROM MedicalTraining mt WHERE mt.school.id = :schoolId")
+                .setParameter("schoolId", id)
+                .executeUpdate();
+            detachTrainings(new HashSet<>(trainingIds));
+        }
+        // the trainings collection is empty now, cascading the remove to it costs a single select
+        MedicalSchool school = em.find(MedicalSchool.class, id);
+        if (school == null) {
+            throw new NoResultException("No medical school with id " + id);
+        }
+        em.remove(school);
+        LOG.debug("Deleted medical school {} with {} trainings", id, trainingIds.size());
+        return school;
+    }
+
+    // managed copies of deleted trainings, and of certificates still pointing at them, would show rows that are gone;
+    // detaching a training cascades to its school, whose trainings collection would still hold them
+    private void detachTrainings(Set<Integer> trainingIds) {
+        SharedSessionContractImplementor session = em.unwrap(SharedSessionContractImplementor.class);
+        PersistenceUnitUtil util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        List<Object> stale = new ArrayList<>();
+        for (Map.Entry<Object, EntityEntry> managed : session.getPersistenceContextInternal().reentrantSafeEntityEntries()) {
+            Object entity = managed.getKey();
+            if (entity instanceof MedicalTraining && trainingIds.contains(((MedicalTraining) entity).getId())) {
+                stale.add(entity);
+            }
+            else if (entity instanceof MedicalCertificate) {
+                // the training may be an uninitialized proxy: its id is read without loading it
+                MedicalTraining training = ((MedicalCertificate) entity).getMedicalTraining();
+                if (training != null && trainingIds.contains(util.getIdentifier(training))) {
+                    stale.add(entity);
                 }
-                mt.setCertificate(null);
-                em.merge(mt);
-            });
-            em.remove(ms);
-            return ms;
+            }
+        }
+        for (Object entity : stale) {
+            if (em.contains(entity)) {
+                em.detach(entity);
+            }
         }
-        return null;
     }
     
     // Please study & use the methods below in your test suites
@@ -304,6 +1095,7 @@ public class ACMEMedicalService implements Serializable {
     }
 
     @Transactional
+    @WriteLock(MedicalSchool.class)
     public MedicalSchool updateMedicalSchool(int id, MedicalSchool updatingMedicalSchool) {
     	MedicalSchool medicalSchoolToBeUpdated = getMedicalSchoolById(id);
         if (medicalSchoolToBeUpdated != null) {
@@ -333,6 +1125,7 @@ public class ACMEMedicalService implements Serializable {
     public MedicalTraining getMedicalTrainingById(int mtId) {
         TypedQuery<MedicalTraining> query = em.createNamedQuery(MedicalTraining.FIND_BY_ID, MedicalTraining.class);
         query.setParameter(PARAM1, mtId);
+        responseGraphHint(MedicalTraining.class).forEach(query::setHint);
         List<MedicalTraining> results = query.getResultList();
         return results.isEmpty() ? null : results.get(0);
     }
@@ -342,10 +1135,11 @@ public class ACMEMedicalService implements Serializable {
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<MedicalTraining> cq = cb.createQuery(MedicalTraining.class);
         cq.select(cq.from(MedicalTraining.class));
-        return em.createQuery(cq).getResultList();
+        return em.createQuery(cq).setHint(QueryHints.JAKARTA_HINT_LOADGRAPH, em.getEntityGraph(MedicalTraining.RESPONSE_GRAPH)).getResultList();
     }
 
     @Transactional
+    @WriteLock(MedicalTraining.class)
     public MedicalTraining updateMedicalTraining(int id, MedicalTraining medicalTrainingWithUpdates) {
     	MedicalTraining medicalTrainingToBeUpdated = getMedicalTrainingById(id);
         if (medicalTrainingToBeUpdated != null) {
@@ -392,6 +1186,7 @@ public class ACMEMedicalService implements Serializable {
     
     // Delete method, added by Ryan
     @Transactional
+    @WriteLock(MedicalTraining.class)
     public MedicalTraining deleteMedicalTraining(int id) {
         MedicalTraining trainingToDelete = getMedicalTrainingById(id);
         if (trainingToDelete == null) {
@@ -432,7 +1227,89 @@ public class ACMEMedicalService implements Serializable {
         return em.find(Medicine.class, id);
     }
 
+    /**
+     * Search medicines by drug name, manufacturer or dosage information, best match first.
+     * <p>
+     * A single word is a type-ahead query: it is answered from {@link MedicineTypeAheadIndex} (word prefixes of drug and
+     * manufacturer names) and the medicines are loaded by id, mostly from the second-level cache.  Anything else, and
+     * a word of at least {@value acmemedical.utility.MyConstants#FULLTEXT_MIN_TOKEN_LENGTH} characters the index does
+     * not know (e.g. one from the dosage information), goes to the FULLTEXT index, every word as a required prefix
+     * ranked by MySQL relevance.  Shorter words are left out of the full-text query: InnoDB does not index them.
+     *
+     * @param query - free text; only its letters and digits are used
+     * @param limit - maximum number of results
+     * @return matching medicines, most relevant first
+     */
+    public List<Medicine> searchMedicines(String query, int limit) {
+        List<String> terms = MedicineTypeAheadIndex.terms(query);
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (terms.size() == 1) {
+            String word = terms.get(0);
+            List<Integer> ids = typeAheadLookup(word, limit);
+            if (ids != null && (!ids.isEmpty() || word.length() < FULLTEXT_MIN_TOKEN_LENGTH)) {
+                return getMedicinesByIds(ids);
+            }
+            if (ids == null && word.length() < FULLTEXT_MIN_TOKEN_LENGTH) {
+                // index not built yet and too short for FULLTEXT: plain prefix match on the names
+                CriteriaBuilder cb = em.getCriteriaBuilder();
+                CriteriaQuery<Medicine> cq = cb.createQuery(Medicine.class);
+                Root<Medicine> root = cq.from(Medicine.class);
+                String pattern = likePrefix(word);
+                cq.select(root)
+                    .where(cb.or(cb.like(root.get("drugName"), pattern, LIKE_ESCAPE),
+                        cb.like(root.get("manufacturerName"), pattern, LIKE_ESCAPE)))
+                    .orderBy(cb.asc(root.get("id")));
+                return em.createQuery(cq).setMaxResults(limit).getResultList();
+            }
+        }
+        StringBuilder against = new StringBuilder();
+        for (String term : terms) {
+            if (term.length() >= FULLTEXT_MIN_TOKEN_LENGTH) {
+                against.append(against.length() == 0 ? "+" : " +").append(term).append('*');
+            }
+        }
+        if (against.length() == 0) {
+            return Collections.emptyList();
+        }
+        return em.createNamedQuery(Medicine.FULLTEXT_SEARCH_QUERY_NAME, Medicine.class)
+            .setParameter(1, against.toString())
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    /**
+     * @return ids from the type-ahead index, or null if there is no index (yet)
+     */
+    protected List<Integer> typeAheadLookup(String word, int limit) {
+        return medicineTypeAhead == null ? null : medicineTypeAhead.lookup(word, limit);
+    }
+
+    /**
+     * Rebuild the medicine type-ahead index from the database; run in the background by
+     * {@link MedicineTypeAheadRefresher}, never on a request thread
+     */
+    public void rebuildMedicineTypeAhead() {
+        medicineTypeAhead.rebuild(sink -> streamAndClear(
+            em.createQuery("SELECT m.id, m.drugName, m.manufacturerName FROM Medicine m", Object[].class), sink));
+    }
+
+    /**
+     * Load medicines in the order of <code>ids</code>, from the second-level cache where possible and the rest
+     * in one statement; ids that no longer exist are skipped
+     */
+    protected List<Medicine> getMedicinesByIds(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Medicine> medicines = new ArrayList<>(em.unwrap(Session.class).byMultipleIds(Medicine.class).multiLoad(ids));
+        medicines.removeIf(Objects::isNull);
+        return medicines;
+    }
+
     @Transactional
+    @WriteLock(Medicine.class)
     public Medicine updateMedicine(int id, Medicine medicineWithUpdates) {
     	Medicine medicineToBeUpdated = getMedicineById(id);
         if (medicineToBeUpdated == null) {
@@ -446,26 +1323,101 @@ public class ACMEMedicalService implements Serializable {
         }
         return medicineToBeUpdated;
     }
+
+    /**
+     * Update a medicine if it still has one of <code>versions</code>.
+     * <p>
+     * Unlike the other update*IfMatch methods this is not a bulk UPDATE: Medicine is in the second-level cache, where
+     * find() costs no SQL, and a bulk UPDATE would evict the whole cache region.  Changing the managed entity updates
+     * just its cache entry and the type-ahead index, and Hibernate's versioned <code>UPDATE ... WHERE version = ?</code>
+     * still catches a change made by another node after the row was cached.
+     *
+     * @param id - id of entity to update
+     * @param versions - versions the row may have, null to update whatever its version
+     * @param medicineWithUpdates - entity with updated information
+     * @return the updated entity, null if there is no such medicine
+     * @throws ClientErrorException 412 if the medicine has another version
+     */
+    @Transactional
+    @WriteLock(Medicine.class)
+    public Medicine updateMedicineIfMatch(int id, Set<Long> versions, Medicine medicineWithUpdates) {
+        countConditionalUpdate(Medicine.class, versions);
+        Medicine medicineToBeUpdated = getMedicineById(id);
+        if (medicineToBeUpdated == null) {
+            return null;
+        }
+        if (versions != null && !versions.contains(medicineToBeUpdated.getVersion())) {
+            throw preconditionFailed(Medicine.class, id);
+        }
+        medicineToBeUpdated.setDrugName(medicineWithUpdates.getDrugName());
+        medicineToBeUpdated.setManufacturerName(medicineWithUpdates.getManufacturerName());
+        medicineToBeUpdated.setDosageInformation(medicineWithUpdates.getDosageInformation());
+        try {
+            em.flush();
+        }
+        catch (OptimisticLockException e) {
+            throw preconditionFailed(Medicine.class, id);
+        }
+        return medicineToBeUpdated;
+    }
     
+    /**
+     * @throws ClientErrorException 409 if the medicine is still prescribed, as a prescription cannot be without one
+     */
     @Transactional
+    @WriteLock(Medicine.class)
     public Medicine deleteMedicine(int id) {
         Medicine medicineToDelete = getMedicineById(id);
         if (medicineToDelete == null) {
             return null;
         }
+        if (!prescribedMedicines(List.of(id)).isEmpty()) {
+            throw new ClientErrorException("Medicine " + id + " is still prescribed", Response.Status.CONFLICT);
+        }
+        em.remove(medicineToDelete);
+        return medicineToDelete;
+    }
 
-        // Safely unlink from prescriptions
-        Set<Prescription> prescriptions = medicineToDelete.getPrescriptions();
-        if (prescriptions != null && !prescriptions.isEmpty()) {
-            for (Prescription p : prescriptions) {
-                if (p != null) {
-                    p.setMedicine(null);
-                }
+    /**
+     * Deletes the medicines that are not prescribed; the prescribed ones are reported as conflicts.
+     * <p>
+     * Nothing depends on a medicine once it is not prescribed, so the medicines are removed as entities rather than
+     * with a bulk DELETE: loading them is one statement (or none, from the second-level cache), the deletes go out as
+     * one JDBC batch, and only their own cache entries and type-ahead words are dropped.
+     *
+     * @param ids - ids of the medicines
+     * @return ids deleted, not found and still prescribed, rows affected
+     */
+    @Transactional
+    public BulkDeleteResult deleteMedicines(Collection<Integer> ids) {
+        BulkDeleteResult result = new BulkDeleteResult();
+        List<Integer> existing = existingIds(Medicine.class, ids, result);
+        if (existing.isEmpty()) {
+            return result;
+        }
+        Set<Integer> prescribed = prescribedMedicines(existing);
+        List<Integer> deletable = new ArrayList<>();
+        for (Integer id : existing) {
+            if (prescribed.contains(id)) {
+                result.conflict(id);
+            }
+            else {
+                deletable.add(id);
             }
         }
+        if (!deletable.isEmpty()) {
+            em.unwrap(Session.class).byMultipleIds(Medicine.class).multiLoad(deletable).forEach(em::remove);
+            em.flush();
+            result.rows("medicine", deletable.size());
+            result.deleted(deletable);
+        }
+        return result;
+    }
 
-        em.remove(medicineToDelete);
-        return medicineToDelete;
+    private Set<Integer> prescribedMedicines(List<Integer> ids) {
+        return new HashSet<>(em.createQuery("SELECT DISTINCT p.medicine.id FROM Prescription p WHERE p.medicine.id IN :ids", Integer.class)
+            .setParameter("ids", ids)
+            .getResultList());
     }
    
     // CRUD service for Patient entity. By Ryan
@@ -482,11 +1434,23 @@ public class ACMEMedicalService implements Serializable {
         return em.createQuery(cq).getResultList();
     }
     
+    /**
+     * Push every patient to <code>sink</code>, in id order, without materializing the table
+     *
+     * @param sink - receives each row, must not keep references to it
+     */
+    @Transactional
+    public void streamPatients(Consumer<? super Patient> sink) {
+        TypedQuery<Patient> query = em.createQuery("SELECT p FROM Patient p ORDER BY p.id", Patient.class);
+        streamAndClear(query, sink);
+    }
+
     public Patient getPatientById(int id) {
         return em.find(Patient.class, id);
     }
 
     @Transactional
+    @WriteLock(Patient.class)
     public Patient updatePatient(int id, Patient patientWithUpdates) {
     	Patient patientToBeUpdated = getPatientById(id);
         if (patientToBeUpdated == null) {
@@ -504,17 +1468,66 @@ public class ACMEMedicalService implements Serializable {
         }
         return patientToBeUpdated;
     }
+
+    /**
+     * Overwrite a patient in one conditional UPDATE, see {@link #updateIfMatch(Class, Object, Set, BiConsumer)}
+     *
+     * @param id - id of entity to update
+     * @param versions - versions the row may have, null to update whatever its version
+     * @param patientWithUpdates - entity with updated information
+     * @return the updated entity, null if there is no such patient
+     * @throws ClientErrorException 412 if the patient has another version
+     */
+    @Transactional
+    @WriteLock(Patient.class)
+    public Patient updatePatientIfMatch(int id, Set<Long> versions, Patient patientWithUpdates) {
+        boolean found = updateIfMatch(Patient.class, id, versions, (update, root) -> {
+            setValue(update, root.get("firstName"), patientWithUpdates.getFirstName());
+            setValue(update, root.get("lastName"), patientWithUpdates.getLastName());
+            update.set(root.get("year"), patientWithUpdates.getYear());
+            setValue(update, root.get("address"), patientWithUpdates.getAddress());
+            update.set(root.get("height"), patientWithUpdates.getHeight());
+            update.set(root.get("weight"), patientWithUpdates.getWeight());
+            update.set(root.get("smoker"), patientWithUpdates.getSmoker());
+        });
+        return found ? getPatientById(id) : null;
+    }
     
     @Transactional
+    @WriteLock(Patient.class)
     public Patient deletePatient(int id) {
     	Patient patientToDelete = getPatientById(id);
         if (patientToDelete == null) {
             return null;
         }
 
-        em.remove(patientToDelete);
+        removePatients(List.of(id), new BulkDeleteResult());
         return patientToDelete;
     }
+
+    /**
+     * Deletes patients and their prescriptions with one statement per table, however many prescriptions they have.
+     *
+     * @param ids - ids of the patients
+     * @return ids deleted and not found, rows affected per table
+     */
+    @Transactional
+    public BulkDeleteResult deletePatients(Collection<Integer> ids) {
+        BulkDeleteResult result = new BulkDeleteResult();
+        List<Integer> existing = existingIds(Patient.class, ids, result);
+        if (!existing.isEmpty()) {
+            removePatients(existing, result);
+        }
+        return result;
+    }
+
+    private void removePatients(List<Integer> ids, BulkDeleteResult result) {
+        em.flush();
+        result.rows("prescription", bulk("DELETE FROM Prescription p WHERE p.id.patientId IN :ids", ids));
+        result.rows("patient", bulk("DELETE FROM Patient p WHERE p.id IN :ids", ids));
+        em.clear();
+        result.deleted(ids);
+    }
     
     // CRUD service for MedicalCertificate entity. By Ryan
     @Transactional
@@ -604,14 +1617,15 @@ public class ACMEMedicalService implements Serializable {
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<MedicalCertificate> cq = cb.createQuery(MedicalCertificate.class);
         cq.select(cq.from(MedicalCertificate.class));
-        return em.createQuery(cq).getResultList();
+        return em.createQuery(cq).setHint(QueryHints.JAKARTA_HINT_LOADGRAPH, em.getEntityGraph(MedicalCertificate.RESPONSE_GRAPH)).getResultList();
     }
     
     public MedicalCertificate getMedicalCertificateById(int id) {
-        return em.find(MedicalCertificate.class, id);
+        return em.find(MedicalCertificate.class, id, responseGraphHint(MedicalCertificate.class));
     }
 
     @Transactional
+    @WriteLock(MedicalCertificate.class)
     public Response updateMedicalCertificate(int id, MedicalCertificate updatedMc) {
     	MedicalCertificate existing = getMedicalCertificateById(id);
         if (existing == null) {
@@ -622,12 +1636,13 @@ public class ACMEMedicalService implements Serializable {
         existing.setSigned(updatedMc.getSigned());
 
         if (updatedMc.getMedicalTraining() != null && updatedMc.getMedicalTraining().getId() != 0) {
-            MedicalTraining trainingRef = em.getReference(MedicalTraining.class, updatedMc.getMedicalTraining().getId());
+            // find, not getReference: the response is serialized after the transaction ended, a proxy could not be initialized
+            MedicalTraining trainingRef = em.find(MedicalTraining.class, updatedMc.getMedicalTraining().getId());
             existing.setMedicalTraining(trainingRef);
         }
         
         if (updatedMc.getOwner() != null && updatedMc.getOwner().getId() != 0) {
-            Physician ownerRef = em.getReference(Physician.class, updatedMc.getOwner().getId());
+            Physician ownerRef = em.find(Physician.class, updatedMc.getOwner().getId());
             existing.setOwner(ownerRef);
         }
         
@@ -639,6 +1654,7 @@ public class ACMEMedicalService implements Serializable {
     }
     
     @Transactional
+    @WriteLock(MedicalCertificate.class)
     public MedicalCertificate deleteMedicalCertificate(int id) {
     	MedicalCertificate medicalCertificateToDelete = getMedicalCertificateById(id);
         if (medicalCertificateToDelete == null) {
@@ -659,21 +1675,21 @@ public class ACMEMedicalService implements Serializable {
             newEntity.setId(newPrescription.getId());
         }
 
-        // bind the physician as a managed reference
+        // bind the physician as a managed (and initialized: the response is serialized after the transaction ended) entity
         if (newPrescription.getPhysician() != null && newPrescription.getPhysician().getId() != 0) {
-            Physician physicianRef = em.getReference(Physician.class, newPrescription.getPhysician().getId());
+            Physician physicianRef = em.find(Physician.class, newPrescription.getPhysician().getId());
             newEntity.setPhysician(physicianRef);
         }
 
         // bind the patient as a managed reference
         if (newPrescription.getPatient() != null && newPrescription.getPatient().getId() != 0) {
-            Patient patientRef = em.getReference(Patient.class, newPrescription.getPatient().getId());
+            Patient patientRef = em.find(Patient.class, newPrescription.getPatient().getId());
             newEntity.setPatient(patientRef);
         }
 
         // bind the medicine as a managed reference
         if (newPrescription.getMedicine() != null && newPrescription.getMedicine().getId() != 0) {
-            Medicine medicineRef = em.getReference(Medicine.class, newPrescription.getMedicine().getId());
+            Medicine medicineRef = em.find(Medicine.class, newPrescription.getMedicine().getId());
             newEntity.setMedicine(medicineRef);
         }
 
@@ -689,15 +1705,69 @@ public class ACMEMedicalService implements Serializable {
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<Prescription> cq = cb.createQuery(Prescription.class);
         cq.select(cq.from(Prescription.class));
-        return em.createQuery(cq).getResultList();
+        return em.createQuery(cq).setHint(QueryHints.JAKARTA_HINT_LOADGRAPH, em.getEntityGraph(Prescription.RESPONSE_GRAPH)).getResultList();
     }
     
+    /**
+     * Keyset pagination over the composite key, ordered by (physician_id, patient_id)
+     *
+     * @param afterPhysicianId - physician id of the last row of the previous page, 0 for the first page
+     * @param afterPatientId - patient id of the last row of the previous page
+     * @param limit - page size
+     * @return the page and the cursor ("physicianId:patientId") of the next one
+     */
+    public KeysetPage<Prescription> getPrescriptionPage(int afterPhysicianId, int afterPatientId, int limit) {
+        return getPrescriptionPage(afterPhysicianId, afterPatientId, limit, null);
+    }
+
+    /**
+     * Keyset pagination of prescriptions reading only some fields, see {@link #select(Class, Set, BiConsumer, int)}
+     *
+     * @param fields - fields to read, null for whole entities
+     */
+    public KeysetPage<Prescription> getPrescriptionPage(int afterPhysicianId, int afterPatientId, int limit, Set<String> fields) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        List<Prescription> rows = select(Prescription.class, fields, (cq, root) -> {
+            Path<Integer> physicianId = root.get("id").get("physicianId");
+            Path<Integer> patientId = root.get("id").get("patientId");
+            // (physicianId, patientId) > (a, b)  <=>  physicianId > a OR (physicianId = a AND patientId > b)
+            cq.where(cb.or(
+                    cb.greaterThan(physicianId, afterPhysicianId),
+                    cb.and(cb.equal(physicianId, afterPhysicianId), cb.greaterThan(patientId, afterPatientId))))
+                .orderBy(cb.asc(physicianId), cb.asc(patientId));
+        }, limit + 1);
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<Prescription> items = rows.subList(0, limit);
+        PrescriptionPK last = items.get(limit - 1).getId();
+        return new KeysetPage<>(items, PaginationUtil.compositeCursor(last.getPhysicianId(), last.getPatientId()));
+    }
+
+    /**
+     * Push every prescription to <code>sink</code>, in key order, without materializing the table.
+     * Physician (with its security user, an inverse one-to-one that cannot be proxied), patient and medicine are
+     * fetched in the same row: with a streaming JDBC cursor open
+     * no other statement may run on the connection, so nothing may be lazily loaded while the sink serializes.
+     *
+     * @param sink - receives each row, must not keep references to it
+     */
+    @Transactional
+    public void streamPrescriptions(Consumer<? super Prescription> sink) {
+        TypedQuery<Prescription> query = em.createQuery(
+            "SELECT p FROM Prescription p JOIN FETCH p.physician ph LEFT JOIN FETCH ph.securityUser"
+                + " JOIN FETCH p.patient JOIN FETCH p.medicine"
+                + " ORDER BY p.id.physicianId, p.id.patientId", Prescription.class);
+        streamAndClear(query, sink);
+    }
+
     public Prescription getPrescriptionByIds(int physicianId, int patientId) {
         PrescriptionPK pk = new PrescriptionPK(physicianId, patientId);
-        return em.find(Prescription.class, pk);
+        return em.find(Prescription.class, pk, responseGraphHint(Prescription.class));
     }
 
     @Transactional
+    @WriteLock(Prescription.class)
     public Prescription updatePrescription(int physicianId, int patientId, Prescription prescriptionWithUpdates) {
         Prescription prescriptionToBeUpdated = getPrescriptionByIds(physicianId, patientId);
         if (prescriptionToBeUpdated == null || prescriptionWithUpdates == null) {
@@ -710,14 +1780,46 @@ public class ACMEMedicalService implements Serializable {
 
         // medicine，optional fk field
         if (prescriptionWithUpdates.getMedicine() != null && prescriptionWithUpdates.getMedicine().getId() != 0) {
-        	Medicine medicineRef = em.getReference(Medicine.class, prescriptionWithUpdates.getMedicine().getId());
+        	Medicine medicineRef = em.find(Medicine.class, prescriptionWithUpdates.getMedicine().getId());
         	prescriptionToBeUpdated.setMedicine(medicineRef);
         }
 
         return prescriptionToBeUpdated;
     }
 
+    /**
+     * Update a prescription's refills, information and (if given) medicine in one conditional UPDATE,
+     * see {@link #updateIfMatch(Class, Object, Set, BiConsumer)}
+     *
+     * @param versions - versions the row may have, null to update whatever its version
+     * @return the updated entity, null if there is no such prescription
+     * @throws ClientErrorException 412 if the prescription has another version
+     * @throws BadRequestException if the medicine does not exist
+     */
     @Transactional
+    @WriteLock(Prescription.class)
+    public Prescription updatePrescriptionIfMatch(int physicianId, int patientId, Set<Long> versions, Prescription prescriptionWithUpdates) {
+        Medicine medicine = null;
+        if (prescriptionWithUpdates.getMedicine() != null && prescriptionWithUpdates.getMedicine().getId() != 0) {
+            // second-level cache hit in the common case
+            medicine = em.find(Medicine.class, prescriptionWithUpdates.getMedicine().getId());
+            if (medicine == null) {
+                throw new BadRequestException("Medicine " + prescriptionWithUpdates.getMedicine().getId() + " not found");
+            }
+        }
+        Medicine medicineRef = medicine;
+        boolean found = updateIfMatch(Prescription.class, new PrescriptionPK(physicianId, patientId), versions, (update, root) -> {
+            update.set(root.get("numberOfRefills"), prescriptionWithUpdates.getNumberOfRefills());
+            setValue(update, root.get("prescriptionInformation"), prescriptionWithUpdates.getPrescriptionInformation());
+            if (medicineRef != null) {
+                update.set(root.get("medicine"), medicineRef);
+            }
+        });
+        return found ? getPrescriptionByIds(physicianId, patientId) : null;
+    }
+
+    @Transactional
+    @WriteLock(Prescription.class)
     public Prescription deletePrescription(int physicianId, int patientId) {
     	Prescription prescriptionToDelete = getPrescriptionByIds(physicianId, patientId);
         if (prescriptionToDelete == null) {
@@ -727,6 +1829,160 @@ public class ACMEMedicalService implements Serializable {
         em.remove(prescriptionToDelete);
         em.flush();
         return prescriptionToDelete;
-    }  
+    }
+
+    // Bulk create: one transaction per chunk, inserts sent as JDBC batches (hibernate.jdbc.batch_size)
+
+    /**
+     * Persist many patients; see {@link #persistInChunks(List, Function)}
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public List<BatchItemResult> persistPatients(List<Patient> newPatients) {
+        return persistInChunks(newPatients, this::persistItem);
+    }
+
+    /**
+     * Persist many medicines; see {@link #persistInChunks(List, Function)}
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public List<BatchItemResult> persistMedicines(List<Medicine> newMedicines) {
+        return persistInChunks(newMedicines, this::persistItem);
+    }
+
+    /**
+     * Persist many prescriptions; each must name its physician, patient and medicine by id.
+     * See {@link #persistInChunks(List, Function)}
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public List<BatchItemResult> persistPrescriptions(List<Prescription> newPrescriptions) {
+        return persistInChunks(newPrescriptions, prescription -> persistItem(newPrescriptionReferencing(prescription)));
+    }
+
+    // the persist hook of an item that is its own entity
+    private <T> T persistItem(T item) {
+        em.persist(item);
+        return item;
+    }
+
+    /**
+     * Persist <code>items</code> in chunks of {@value #BATCH_CHUNK_SIZE}, each chunk in its own transaction.
+     * A chunk that fails (constraint violation, unknown foreign key, ...) is rolled back and replayed one row
+     * per transaction, so only the offending rows are reported as failed and every other row is still created.
+     *
+     * @param items - new entities, in request order
+     * @param persist - persists one item, and whatever must be created with it, in the chunk's transaction; returns
+     *        the entity whose id is reported
+     * @return one result per item, in the same order
+     */
+    protected <T> List<BatchItemResult> persistInChunks(List<T> items, Function<? super T, ?> persist) {
+        // go through the container so that persistChunk gets its REQUIRES_NEW transaction
+        ACMEMedicalService self = sessionContext == null ? this : sessionContext.getBusinessObject(ACMEMedicalService.class);
+        BatchItemResult[] results = new BatchItemResult[items.size()];
+        for (int from = 0; from < items.size(); from += BATCH_CHUNK_SIZE) {
+            int to = Math.min(from + BATCH_CHUNK_SIZE, items.size());
+            // rows that cannot possibly be inserted are reported without costing the rest of the chunk a rollback
+            List<Integer> valid = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                String error = batchItemError(items.get(i));
+                if (error == null) {
+                    valid.add(i);
+                } else {
+                    results[i] = BatchItemResult.failed(i, error);
+                }
+            }
+            try {
+                self.persistChunk(items, valid, persist).forEach(r -> results[r.getIndex()] = r);
+            }
+            catch (RuntimeException e) {
+                LOG.debug("batch chunk [{}, {}) rolled back, retrying row by row: {}", from, to, e.getMessage());
+                for (int i : valid) {
+                    resetGeneratedState(items.get(i));
+                    try {
+                        results[i] = self.persistChunk(items, List.of(i), persist).get(0);
+                    }
+                    catch (RuntimeException rowError) {
+                        resetGeneratedState(items.get(i));
+                        results[i] = BatchItemResult.failed(i, rootCauseMessage(rowError));
+                    }
+                }
+            }
+        }
+        return List.of(results);
+    }
+
+    /**
+     * Insert <code>items[indexes]</code> with <code>persist</code> in one new transaction.  Public only so that the
+     * container can apply REQUIRES_NEW to it; not meant to be called directly.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public <T> List<BatchItemResult> persistChunk(List<T> items, List<Integer> indexes, Function<? super T, ?> persist) {
+        List<Object> entities = new ArrayList<>(indexes.size());
+        for (int i : indexes) {
+            entities.add(persist.apply(items.get(i)));
+        }
+        // send the queued inserts now, so that a failure surfaces here and not at commit
+        em.flush();
+        List<BatchItemResult> results = new ArrayList<>(indexes.size());
+        for (int n = 0; n < indexes.size(); n++) {
+            Object entity = entities.get(n);
+            Object id = entity instanceof PojoBase pojo ? (Object) pojo.getId() : ((Prescription) entity).getId();
+            results.add(BatchItemResult.created(indexes.get(n), id));
+        }
+        // nothing of the chunk is read again, do not let the persistence context grow across chunks
+        em.clear();
+        return results;
+    }
 
-}
\ No newline at end of file
+    /**
+     * Like persistPrescription, but binds physician, patient and medicine as uninitialized references:
+     * the batch response only reports keys, and an unknown id fails the chunk at flush time
+     */
+    protected Prescription newPrescriptionReferencing(Prescription newPrescription) {
+        Prescription newEntity = new Prescription();
+        newEntity.setPhysician(em.getReference(Physician.class, newPrescription.getPhysician().getId()));
+        newEntity.setPatient(em.getReference(Patient.class, newPrescription.getPatient().getId()));
+        newEntity.setMedicine(em.getReference(Medicine.class, newPrescription.getMedicine().getId()));
+        newEntity.setNumberOfRefills(newPrescription.getNumberOfRefills());
+        newEntity.setPrescriptionInformation(newPrescription.getPrescriptionInformation());
+        return newEntity;
+    }
+
+    /**
+     * @return why this element can not be inserted, or null if it looks insertable
+     */
+    protected String batchItemError(Object item) {
+        if (item == null) {
+            return "null element";
+        }
+        if (item instanceof PojoBase pojo && pojo.getId() != 0) {
+            return "id must not be set on a new entity";
+        }
+        if (item instanceof Prescription prescription) {
+            if (prescription.getPhysician() == null || prescription.getPhysician().getId() == 0
+                || prescription.getPatient() == null || prescription.getPatient().getId() == 0
+                || prescription.getMedicine() == null || prescription.getMedicine().getId() == 0) {
+                return "physician, patient and medicine ids are required";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A rolled-back insert leaves its generated id and version on the (now detached) object;
+     * clear them so that it can be persisted again
+     */
+    private void resetGeneratedState(Object item) {
+        if (item instanceof PojoBase pojo) {
+            pojo.setId(0);
+            pojo.setVersion(0);
+        }
+    }
+
+    private static String rootCauseMessage(Throwable t) {
+        Throwable cause = t;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage();
+    }
+}
@@ -0,0 +1,78 @@
+/********************************************************************************************************
+ * File:  CacheStatisticsMetrics.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Publishes Hibernate second-level/query cache statistics as MicroProfile Metrics gauges.
+ */
+package acmemedical.ejb;
+
+import static acmemedical.utility.MyConstants.PU_NAME;
+
+import java.util.function.ToLongFunction;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+/**
+ * One set of gauges per cache region (tag <code>region</code>):
+ * <code>acmemedical.cache.hits</code>, <code>.misses</code>, <code>.puts</code> and <code>.entries</code>.
+ * Needs <code>hibernate.generate_statistics=true</code> in persistence.xml.
+ */
+@Singleton
+@Startup
+public class CacheStatisticsMetrics {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    public static final String CACHE_METRIC_PREFIX = "acmemedical.cache.";
+    public static final String REGION_TAG = "region";
+
+    @PersistenceUnit(unitName = PU_NAME)
+    protected EntityManagerFactory emf;
+
+    @Inject
+    protected MetricRegistry metricRegistry;
+
+    @PostConstruct
+    public void registerGauges() {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            LOG.warn("hibernate.generate_statistics is off, cache metrics not registered");
+            return;
+        }
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            register(statistics, region, "hits", CacheRegionStatistics::getHitCount);
+            register(statistics, region, "misses", CacheRegionStatistics::getMissCount);
+            register(statistics, region, "puts", CacheRegionStatistics::getPutCount);
+            register(statistics, region, "entries", CacheRegionStatistics::getElementCountInMemory);
+        }
+        metricRegistry.gauge(CACHE_METRIC_PREFIX + "query.hits", statistics::getQueryCacheHitCount);
+        metricRegistry.gauge(CACHE_METRIC_PREFIX + "query.misses", statistics::getQueryCacheMissCount);
+        metricRegistry.gauge(CACHE_METRIC_PREFIX + "query.puts", statistics::getQueryCachePutCount);
+    }
+
+    protected void register(Statistics statistics, String region, String name, ToLongFunction<CacheRegionStatistics> value) {
+        metricRegistry.gauge(CACHE_METRIC_PREFIX + name, () -> {
+            // look the region up on every read: Hibernate may (re)build its statistics object lazily
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            return regionStatistics == null ? 0L : value.applyAsLong(regionStatistics);
+        }, new Tag(REGION_TAG, region));
+    }
+}
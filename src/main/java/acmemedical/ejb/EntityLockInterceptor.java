@@ -0,0 +1,146 @@
+/********************************************************************************************************
+ * File:  EntityLockInterceptor.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Takes the per-entity write lock around ACMEMedicalService methods marked with @WriteLock.
+ */
+package acmemedical.ejb;
+
+import java.io.Serializable;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.InvocationContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+import acmemedical.entity.PojoBase;
+
+/**
+ * ACMEMedicalService uses bean-managed concurrency, so the container no longer serializes calls.
+ * This interceptor puts back the mutual exclusion that writes need, but only per row:
+ * methods annotated with {@link WriteLock} lock (entity type, primary key), every other method (all reads and
+ * inserts of new rows) proceeds without any lock.
+ * <p>
+ * Inside a transaction the lock is held until it completes, released by an interposed synchronization: a second
+ * writer of the same row only starts once the first one's changes are committed (or rolled back), not as soon as the
+ * first method returns with its changes still unflushed.  A nested @WriteLock call of the same transaction re-enters
+ * the stripe.  Without a transaction the lock is released when the call returns.  The container completes the
+ * transaction on the thread that called the method, which is also the thread that holds the lock.
+ * <p>
+ * Two transactions touching the same row from different nodes are still caught by the entities' @Version column.
+ */
+public class EntityLockInterceptor implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    public static final String LOCK_WAIT_TIMER_NAME = "acmemedical.service.lock.wait";
+    public static final String LOCK_CONTENDED_GAUGE_NAME = "acmemedical.service.lock.contended";
+
+    // ACMEMedicalService is a @Singleton, so there is exactly one interceptor instance (and lock table) per node
+    private final EntityLockManager lockManager = new EntityLockManager();
+
+    @Inject
+    protected MetricRegistry metricRegistry;
+
+    @Resource
+    protected TransactionSynchronizationRegistry transactionRegistry;
+
+    @PostConstruct
+    public void registerMetrics(InvocationContext ctx) throws Exception {
+        if (metricRegistry != null) {
+            lockManager.setWaitTimer(metricRegistry.timer(LOCK_WAIT_TIMER_NAME));
+            metricRegistry.gauge(LOCK_CONTENDED_GAUGE_NAME, lockManager::getContended);
+        }
+        ctx.proceed();
+    }
+
+    @AroundInvoke
+    public Object lockEntity(InvocationContext ctx) throws Exception {
+        WriteLock writeLock = ctx.getMethod().getAnnotation(WriteLock.class);
+        if (writeLock == null) {
+            return ctx.proceed();
+        }
+        int[] key = keyOf(ctx.getParameters());
+        ReentrantLock lock = lockManager.lock(writeLock.value(), key);
+        if (!unlockAfterCompletion(lock)) {
+            try {
+                return ctx.proceed();
+            } finally {
+                lockManager.unlock(lock);
+            }
+        }
+        return ctx.proceed();
+    }
+
+    /**
+     * @return true if <code>lock</code> will be released when the current transaction completes, false if there is
+     *         no active transaction to hold it for
+     */
+    protected boolean unlockAfterCompletion(ReentrantLock lock) {
+        if (transactionRegistry == null || transactionRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            return false;
+        }
+        try {
+            transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (lock.isHeldByCurrentThread()) {
+                        lockManager.unlock(lock);
+                    } else {
+                        LOG.error("transaction completed on another thread, entity write lock {} not released", lock);
+                    }
+                }
+            });
+            return true;
+        }
+        catch (RuntimeException e) {
+            lockManager.unlock(lock);
+            throw e;
+        }
+    }
+
+    public EntityLockManager getLockManager() {
+        return lockManager;
+    }
+
+    /**
+     * The key is made of the leading int parameters; if there are none and the first parameter is an entity, its id is used.
+     */
+    protected int[] keyOf(Object[] params) {
+        int count = 0;
+        while (count < params.length && params[count] instanceof Integer) {
+            count++;
+        }
+        if (count == 0) {
+            if (params.length > 0 && params[0] instanceof PojoBase) {
+                return new int[] { ((PojoBase) params[0]).getId() };
+            }
+            LOG.warn("@WriteLock method has no usable key, locking on the entity type only");
+            return new int[0];
+        }
+        int[] key = new int[count];
+        for (int i = 0; i < count; i++) {
+            key[i] = (Integer) params[i];
+        }
+        return key;
+    }
+}
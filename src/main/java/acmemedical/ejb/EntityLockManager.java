@@ -0,0 +1,104 @@
+/********************************************************************************************************
+ * File:  EntityLockManager.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Striped per-entity write locks used by ACMEMedicalService.
+ */
+package acmemedical.ejb;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.microprofile.metrics.Timer;
+
+/**
+ * Hands out write locks keyed on (entity type, primary key) so that two writers only wait for
+ * each other when they touch the same row.  Readers never take a lock.
+ * <p>
+ * Locks are striped: a fixed array of {@link ReentrantLock}s is indexed by the hash of the key,
+ * so memory stays constant no matter how many rows exist.  Two unrelated keys may occasionally
+ * share a stripe, which costs a little extra waiting but never affects correctness.
+ */
+public class EntityLockManager implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_STRIPES = 64;
+
+    private final ReentrantLock[] stripes;
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    // Optional MicroProfile Metrics timer, only present when running inside the container
+    private transient Timer waitTimer;
+
+    public EntityLockManager() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public EntityLockManager(int stripeCount) {
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public void setWaitTimer(Timer waitTimer) {
+        this.waitTimer = waitTimer;
+    }
+
+    /**
+     * Acquire the write lock of one row, blocking until it is available
+     *
+     * @param entityType - entity class being written
+     * @param keyParts - primary key value(s), more than one for composite keys
+     * @return the stripe that was locked, pass it to {@link #unlock(ReentrantLock)}
+     */
+    public ReentrantLock lock(Class<?> entityType, int... keyParts) {
+        ReentrantLock lock = stripeFor(entityType, keyParts);
+        long waited = 0;
+        if (!lock.tryLock()) {
+            long start = System.nanoTime();
+            lock.lock();
+            waited = System.nanoTime() - start;
+            contended.increment();
+            waitNanos.add(waited);
+        }
+        acquisitions.increment();
+        if (waitTimer != null) {
+            waitTimer.update(Duration.ofNanos(waited));
+        }
+        return lock;
+    }
+
+    public void unlock(ReentrantLock lock) {
+        lock.unlock();
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    public long getContended() {
+        return contended.sum();
+    }
+
+    public long getTotalWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    protected ReentrantLock stripeFor(Class<?> entityType, int... keyParts) {
+        int h = 31 * entityType.getName().hashCode() + Arrays.hashCode(keyParts);
+        // spread the bits so that sequential ids do not cluster on neighbouring stripes
+        h ^= (h >>> 16);
+        return stripes[Math.floorMod(h, stripes.length)];
+    }
+}
@@ -0,0 +1,289 @@
+/********************************************************************************************************
+ * File:  IdempotencyStore.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Responses of POSTs sent with an Idempotency-Key header, replayed to retries of the same request.
+ */
+package acmemedical.ejb;
+
+import static acmemedical.utility.MyConstants.DEFAULT_IDEMPOTENCY_CACHE_MAX_SIZE;
+import static acmemedical.utility.MyConstants.DEFAULT_IDEMPOTENCY_TTL_SECONDS;
+import static acmemedical.utility.MyConstants.IDEMPOTENCY_CACHE_MAX_SIZE_PROPNAME;
+import static acmemedical.utility.MyConstants.IDEMPOTENCY_TTL_SECONDS_PROPNAME;
+import static acmemedical.utility.MyConstants.PU_NAME;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+import acmemedical.entity.IdempotencyRecord;
+import acmemedical.utility.ConstraintViolationUtil;
+
+/**
+ * Remembers the response of a request sent with an <code>Idempotency-Key</code> so that a retry of it gets the
+ * same response back instead of running again (and, for a create, failing with 409 or creating a duplicate).
+ * <p>
+ * The <code>idempotency_key</code> table is the record shared by all nodes: {@link #claim(String, String, byte[])}
+ * inserts an in-progress row before the request runs, {@link #complete(String, int, String, String)} stores its
+ * response, {@link #release(String)} removes the row of a request that failed so that a retry runs again.
+ * Completed responses are also kept in a bounded LRU map in memory, so a replay on the node that answered first
+ * touches no table at all.  Rows expire after {@value acmemedical.utility.MyConstants#IDEMPOTENCY_TTL_SECONDS_PROPNAME}
+ * seconds and are purged while claiming new keys; an in-progress row is taken over once
+ * {@value #IN_PROGRESS_TIMEOUT_SECONDS} seconds old, in case its node died before releasing it.
+ */
+@ApplicationScoped
+public class IdempotencyStore {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    public static final String HITS_GAUGE_NAME = "acmemedical.idempotency.cache.hits";
+    public static final String SIZE_GAUGE_NAME = "acmemedical.idempotency.cache.size";
+
+    public static final long IN_PROGRESS_TIMEOUT_SECONDS = 60;
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    @Inject
+    @ConfigProperty(name = IDEMPOTENCY_TTL_SECONDS_PROPNAME, defaultValue = DEFAULT_IDEMPOTENCY_TTL_SECONDS)
+    protected long ttlSeconds;
+
+    @Inject
+    @ConfigProperty(name = IDEMPOTENCY_CACHE_MAX_SIZE_PROPNAME, defaultValue = DEFAULT_IDEMPOTENCY_CACHE_MAX_SIZE)
+    protected int maxSize;
+
+    @Inject
+    protected MetricRegistry metricRegistry;
+
+    @PersistenceContext(name = PU_NAME)
+    protected EntityManager em;
+
+    private final LongAdder hits = new LongAdder();
+    private final AtomicReference<LocalDateTime> nextPurge = new AtomicReference<>(LocalDateTime.MIN);
+    private Map<String, IdempotencyRecord> completed;
+
+    /**
+     * What to do with a request
+     */
+    public enum Outcome {
+        /** first request with this key: run it, then complete or release the key */
+        PROCEED,
+        /** answered before: send {@link Claim#getResponse()} */
+        REPLAY,
+        /** the first request is still running */
+        IN_PROGRESS,
+        /** the key was used for a request with another body */
+        MISMATCH
+    }
+
+    public static final class Claim {
+        private final Outcome outcome;
+        private final String recordKey;
+        private final IdempotencyRecord response;
+
+        Claim(Outcome outcome, String recordKey, IdempotencyRecord response) {
+            this.outcome = outcome;
+            this.recordKey = recordKey;
+            this.response = response;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public String getRecordKey() {
+            return recordKey;
+        }
+
+        /**
+         * @return status, content type and body to replay; null unless {@link Outcome#REPLAY}
+         */
+        public IdempotencyRecord getResponse() {
+            return response;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        // access-ordered LinkedHashMap == LRU
+        completed = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+                return size() > maxSize;
+            }
+        };
+        if (metricRegistry != null) {
+            metricRegistry.gauge(HITS_GAUGE_NAME, this::getHits);
+            metricRegistry.gauge(SIZE_GAUGE_NAME, this::size);
+        }
+        LOG.debug("idempotency store ttlSeconds={}, maxSize={}", ttlSeconds, maxSize);
+    }
+
+    /**
+     * Claims <code>key</code> for a request, unless it was used before.  A concurrent claim of the same new key
+     * fails with a PersistenceException from the primary key ({@link #isConcurrentClaim(Throwable)}), which means
+     * {@link Outcome#IN_PROGRESS}.
+     *
+     * @param scope - user, method and path of the request: the same key on another resource is another key
+     * @param key - value of the Idempotency-Key header
+     * @param requestBody - body of the request
+     * @return what to do with the request
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public Claim claim(String scope, String key, byte[] requestBody) {
+        String recordKey = sha256(scope + '\0' + key);
+        String requestHash = sha256(requestBody);
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyRecord cached = cached(recordKey, now);
+        if (cached != null) {
+            hits.increment();
+            return answered(recordKey, requestHash, cached);
+        }
+        // the row lock orders this claim after a concurrent complete or takeover of the same key
+        IdempotencyRecord record = em.find(IdempotencyRecord.class, recordKey, LockModeType.PESSIMISTIC_WRITE);
+        if (record == null) {
+            purgeExpired(now);
+            em.persist(new IdempotencyRecord(recordKey, requestHash, now.plusSeconds(IN_PROGRESS_TIMEOUT_SECONDS)));
+            em.flush();
+            return new Claim(Outcome.PROCEED, recordKey, null);
+        }
+        if (record.getExpires().isBefore(now)) {
+            // expired response, or a request whose node never completed it
+            record.setRequestHash(requestHash);
+            record.setStatus(IdempotencyRecord.IN_PROGRESS);
+            record.setContentType(null);
+            record.setBody(null);
+            record.setExpires(now.plusSeconds(IN_PROGRESS_TIMEOUT_SECONDS));
+            return new Claim(Outcome.PROCEED, recordKey, null);
+        }
+        if (record.isInProgress()) {
+            return new Claim(Outcome.IN_PROGRESS, recordKey, null);
+        }
+        em.detach(record);
+        remember(record);
+        return answered(recordKey, requestHash, record);
+    }
+
+    /**
+     * @param e - an exception thrown by {@link #claim(String, String, byte[])}
+     * @return true if it is the duplicate primary key of a concurrent claim of the same new key; any other
+     *         constraint violation (a value too long, a NOT NULL) is a server error, not a request in progress
+     */
+    public static boolean isConcurrentClaim(Throwable e) {
+        return ConstraintViolationUtil.isDuplicateKey(e, ConstraintViolationUtil.PRIMARY_KEY);
+    }
+
+    /**
+     * Stores the response of the request that claimed <code>recordKey</code>
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void complete(String recordKey, int status, String contentType, String body) {
+        IdempotencyRecord record = em.find(IdempotencyRecord.class, recordKey);
+        if (record == null) {
+            LOG.warn("Idempotency record {} disappeared before its response was stored", recordKey);
+            return;
+        }
+        record.setStatus(status);
+        record.setContentType(contentType);
+        record.setBody(body);
+        record.setExpires(LocalDateTime.now().plusSeconds(ttlSeconds));
+        em.flush();
+        em.detach(record);
+        remember(record);
+    }
+
+    /**
+     * Forgets the claim of a request that failed, so that a retry with the same key runs again
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void release(String recordKey) {
+        IdempotencyRecord record = em.find(IdempotencyRecord.class, recordKey);
+        if (record != null && record.isInProgress()) {
+            em.remove(record);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public int size() {
+        synchronized (completed) {
+            return completed.size();
+        }
+    }
+
+    private Claim answered(String recordKey, String requestHash, IdempotencyRecord record) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            return new Claim(Outcome.MISMATCH, recordKey, null);
+        }
+        return new Claim(Outcome.REPLAY, recordKey, record);
+    }
+
+    private IdempotencyRecord cached(String recordKey, LocalDateTime now) {
+        synchronized (completed) {
+            IdempotencyRecord record = completed.get(recordKey);
+            if (record != null && record.getExpires().isBefore(now)) {
+                completed.remove(recordKey);
+                return null;
+            }
+            return record;
+        }
+    }
+
+    private void remember(IdempotencyRecord record) {
+        synchronized (completed) {
+            completed.put(record.getRecordKey(), record);
+        }
+    }
+
+    // one statement on the expires index, at most once a minute per node
+    private void purgeExpired(LocalDateTime now) {
+        LocalDateTime due = nextPurge.get();
+        if (now.isBefore(due) || !nextPurge.compareAndSet(due, now.plusSeconds(IN_PROGRESS_TIMEOUT_SECONDS))) {
+            return;
+        }
+        int purged = em.createQuery("DELETE FROM IdempotencyRecord r WHERE r.expires < :now")
+            .setParameter("now", now)
+            .executeUpdate();
+        LOG.debug("Purged {} expired idempotency keys", purged);
+    }
+
+    protected static String sha256(String text) {
+        return sha256(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected static String sha256(byte[] bytes) {
+        try {
+            return HEX.formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/********************************************************************************************************
+ * File:  JdbcPoolMetrics.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Publishes acmemedicalDB pool usage as MicroProfile Metrics.
+ */
+package acmemedical.ejb;
+
+import static acmemedical.utility.MyConstants.DEFAULT_JDBC_POOL_MAX_SIZE;
+import static acmemedical.utility.MyConstants.DEFAULT_JDBC_POOL_MBEAN;
+import static acmemedical.utility.MyConstants.JDBC_POOL_MAX_SIZE_PROPNAME;
+import static acmemedical.utility.MyConstants.JDBC_POOL_MBEAN_PROPNAME;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/**
+ * Gauges <code>acmemedical.jdbc.pool.active</code> (connections in use), <code>.idle</code>, <code>.waiters</code>,
+ * <code>.max</code> and <code>.available</code> (max - active: connections that can still be handed out without
+ * waiting), read from the pool's own statistics by {@link JdbcPoolStatistics}, plus the timer
+ * {@value #ACQUISITION_TIMER_NAME} fed by {@link MeteredConnectionProvider}.
+ * <p>
+ * <code>max</code> is {@value acmemedical.utility.MyConstants#JDBC_POOL_MAX_SIZE_PROPNAME}, the same property
+ * payara-resources.xml sizes the pool with; the pool's MBean is
+ * {@value acmemedical.utility.MyConstants#JDBC_POOL_MBEAN_PROPNAME}.
+ */
+@Singleton
+@Startup
+public class JdbcPoolMetrics {
+
+    public static final String POOL_METRIC_PREFIX = "acmemedical.jdbc.pool.";
+    public static final String ACQUISITION_TIMER_NAME = "acmemedical.jdbc.connection.acquisition";
+
+    @Inject
+    @ConfigProperty(name = JDBC_POOL_MAX_SIZE_PROPNAME, defaultValue = DEFAULT_JDBC_POOL_MAX_SIZE)
+    protected int maxPoolSize;
+
+    @Inject
+    @ConfigProperty(name = JDBC_POOL_MBEAN_PROPNAME, defaultValue = DEFAULT_JDBC_POOL_MBEAN)
+    protected String poolMBeanName;
+
+    @Inject
+    protected MetricRegistry metricRegistry;
+
+    @PostConstruct
+    public void registerMetrics() {
+        MeteredConnectionProvider.setAcquisitionTimer(metricRegistry.timer(ACQUISITION_TIMER_NAME));
+        try {
+            registerGauges(new JdbcPoolStatistics(ManagementFactory.getPlatformMBeanServer(), new ObjectName(poolMBeanName)));
+        }
+        catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(JDBC_POOL_MBEAN_PROPNAME + " is not a JMX object name: " + poolMBeanName, e);
+        }
+    }
+
+    protected void registerGauges(JdbcPoolStatistics pool) {
+        metricRegistry.gauge(POOL_METRIC_PREFIX + "active", pool::getUsed);
+        metricRegistry.gauge(POOL_METRIC_PREFIX + "idle", pool::getFree);
+        metricRegistry.gauge(POOL_METRIC_PREFIX + "waiters", pool::getWaiting);
+        metricRegistry.gauge(POOL_METRIC_PREFIX + "max", () -> maxPoolSize);
+        // NaN while the pool's statistics are unavailable
+        metricRegistry.gauge(POOL_METRIC_PREFIX + "available", () -> Math.max(0, maxPoolSize - pool.getUsed()));
+    }
+}
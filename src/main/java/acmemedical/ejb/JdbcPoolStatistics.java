@@ -0,0 +1,79 @@
+/********************************************************************************************************
+ * File:  JdbcPoolStatistics.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Reads the acmemedicalDB pool's own statistics from its Payara monitoring MBean.
+ */
+package acmemedical.ejb;
+
+import javax.management.JMException;
+import javax.management.JMRuntimeException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * The pool counts physical connections: unlike the checkouts Hibernate sees, which under JTA are one per
+ * transaction and resource, whatever the pool shares between them.
+ * <p>
+ * Payara registers the MBean only while the monitoring level of <code>jdbc-connection-pool</code> is not OFF
+ * (<code>asadmin set configs.config.server-config.monitoring-service.module-monitoring-levels.jdbc-connection-pool=HIGH</code>);
+ * until then, or if the MBean has no such attribute, every value is NaN.  Statistics are read as JMX composite
+ * data: the <code>current</code> value of a range statistic, the <code>count</code> of a count statistic.
+ */
+public class JdbcPoolStatistics {
+
+    /** connections handed out by the pool */
+    public static final String NUM_CONN_USED = "numconnused";
+    /** open connections waiting in the pool */
+    public static final String NUM_CONN_FREE = "numconnfree";
+    /** requests waiting for a connection */
+    public static final String WAIT_QUEUE_LENGTH = "waitqueuelength";
+
+    private final MBeanServer server;
+    private final ObjectName pool;
+
+    public JdbcPoolStatistics(MBeanServer server, ObjectName pool) {
+        this.server = server;
+        this.pool = pool;
+    }
+
+    public double getUsed() {
+        return read(NUM_CONN_USED);
+    }
+
+    public double getFree() {
+        return read(NUM_CONN_FREE);
+    }
+
+    public double getWaiting() {
+        return read(WAIT_QUEUE_LENGTH);
+    }
+
+    protected double read(String attribute) {
+        try {
+            return valueOf(server.getAttribute(pool, attribute));
+        }
+        catch (JMException | JMRuntimeException e) {
+            return Double.NaN;
+        }
+    }
+
+    static double valueOf(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof CompositeData statistic) {
+            String key = statistic.containsKey("current") ? "current" : "count";
+            if (statistic.containsKey(key) && statistic.get(key) instanceof Number number) {
+                return number.doubleValue();
+            }
+        }
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,209 @@
+/********************************************************************************************************
+ * File:  MedicineTypeAheadIndex.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: In-memory word prefix index of medicine drug and manufacturer names, for type-ahead search.
+ */
+package acmemedical.ejb;
+
+import static acmemedical.utility.MyConstants.DEFAULT_MEDICINE_TYPEAHEAD_TTL_SECONDS;
+import static acmemedical.utility.MyConstants.MEDICINE_TYPEAHEAD_TTL_SECONDS_PROPNAME;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/**
+ * Maps every word of every medicine's drug and manufacturer name (lower case) to the ids of the medicines using it.
+ * The words are kept sorted, so all words starting with a prefix are one contiguous range: a type-ahead lookup is a
+ * range scan of a {@link ConcurrentSkipListMap}, with no database access.  Exact word matches come first, then longer
+ * words in alphabetical order.
+ * <p>
+ * {@link MedicineTypeAheadRefresher} builds the index from the database in the background right after deployment and
+ * rebuilds it every {@value acmemedical.utility.MyConstants#MEDICINE_TYPEAHEAD_TTL_SECONDS_PROPNAME} seconds; in
+ * between, {@link MedicineTypeAheadListener} applies this node's own inserts, updates and deletes.  Changes made by
+ * other nodes therefore show up after at most the TTL.  Lookups never wait for a rebuild: they use the previous
+ * contents, or report the index as unavailable ({@code null}) before the first build has completed.
+ */
+@ApplicationScoped
+public class MedicineTypeAheadIndex {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    public static final String SIZE_GAUGE_NAME = "acmemedical.medicine.typeahead.size";
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    @Inject
+    @ConfigProperty(name = MEDICINE_TYPEAHEAD_TTL_SECONDS_PROPNAME, defaultValue = DEFAULT_MEDICINE_TYPEAHEAD_TTL_SECONDS)
+    protected long ttlSeconds;
+
+    @Inject
+    protected MetricRegistry metricRegistry;
+
+    private volatile Snapshot snapshot;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    /**
+     * One generation of the index; reads are lock-free, writes are serialized on the snapshot
+     */
+    private static final class Snapshot {
+        final NavigableMap<String, Set<Integer>> idsByWord = new ConcurrentSkipListMap<>();
+        final Map<Integer, List<String>> wordsById = new ConcurrentHashMap<>();
+        final long builtAtNanos = System.nanoTime();
+
+        synchronized void put(int id, String... texts) {
+            remove(id);
+            List<String> words = new ArrayList<>();
+            for (String text : texts) {
+                words.addAll(terms(text));
+            }
+            wordsById.put(id, words);
+            for (String word : words) {
+                idsByWord.computeIfAbsent(word, w -> new ConcurrentSkipListSet<>()).add(id);
+            }
+        }
+
+        synchronized void remove(int id) {
+            List<String> words = wordsById.remove(id);
+            if (words == null) {
+                return;
+            }
+            for (String word : words) {
+                Set<Integer> ids = idsByWord.get(word);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    idsByWord.remove(word);
+                }
+            }
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (metricRegistry != null) {
+            metricRegistry.gauge(SIZE_GAUGE_NAME, this::size);
+        }
+        LOG.debug("medicine type-ahead index ttlSeconds={}", ttlSeconds);
+    }
+
+    /**
+     * Split free text into search terms: lower-case runs of letters and digits.
+     * Everything else, including the MySQL boolean full-text operators, is a separator.
+     *
+     * @param text - text to split, may be null
+     * @return the terms in order, possibly empty
+     */
+    public static List<String> terms(String text) {
+        if (text == null || text.isBlank()) {
+            return Collections.emptyList();
+        }
+        List<String> terms = new ArrayList<>();
+        for (String term : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Build a new generation of the index and swap it in once it is complete; lookups keep using the current one
+     * meanwhile.  A call made while another rebuild is running returns at once.
+     *
+     * @param source - feeds every medicine to the consumer as <code>{id, drugName, manufacturerName}</code>
+     */
+    public void rebuild(Consumer<Consumer<Object[]>> source) {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Snapshot fresh = new Snapshot();
+            source.accept(row -> fresh.put((Integer) row[0], (String) row[1], (String) row[2]));
+            snapshot = fresh;
+            LOG.debug("medicine type-ahead index built, {} medicines", fresh.wordsById.size());
+        }
+        finally {
+            refreshing.set(false);
+        }
+    }
+
+    public boolean isStale() {
+        Snapshot current = snapshot;
+        return current == null || System.nanoTime() - current.builtAtNanos > TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * @param prefix - start of a word, any case
+     * @param limit - maximum number of ids
+     * @return ids of the medicines having a word that starts with <code>prefix</code>, best match first,
+     *     or null if the index has not been built yet
+     */
+    public List<Integer> lookup(String prefix, int limit) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        String from = prefix.toLowerCase(Locale.ROOT);
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (Set<Integer> wordIds : current.idsByWord.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            for (Integer id : wordIds) {
+                ids.add(id);
+                if (ids.size() >= limit) {
+                    return new ArrayList<>(ids);
+                }
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * Index (or re-index) one medicine; ignored until the index has been built, since the build reads it anyway
+     */
+    public void put(int id, String drugName, String manufacturerName) {
+        Snapshot current = snapshot;
+        if (current != null) {
+            current.put(id, drugName, manufacturerName);
+        }
+    }
+
+    public void remove(int id) {
+        Snapshot current = snapshot;
+        if (current != null) {
+            current.remove(id);
+        }
+    }
+
+    /**
+     * @return number of medicines indexed
+     */
+    public int size() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.wordsById.size();
+    }
+}
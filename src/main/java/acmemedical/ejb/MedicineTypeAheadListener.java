@@ -0,0 +1,55 @@
+/********************************************************************************************************
+ * File:  MedicineTypeAheadListener.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: JPA entity listener keeping MedicineTypeAheadIndex in sync with Medicine changes.
+ */
+package acmemedical.ejb;
+
+import jakarta.enterprise.inject.spi.CDI;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import acmemedical.entity.Medicine;
+
+public class MedicineTypeAheadListener {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    @PostPersist
+    @PostUpdate
+    public void medicineSaved(Medicine medicine) {
+        MedicineTypeAheadIndex index = lookupIndex();
+        if (index != null) {
+            index.put(medicine.getId(), medicine.getDrugName(), medicine.getManufacturerName());
+        }
+    }
+
+    @PostRemove
+    public void medicineRemoved(Medicine medicine) {
+        MedicineTypeAheadIndex index = lookupIndex();
+        if (index != null) {
+            index.remove(medicine.getId());
+        }
+    }
+
+    protected MedicineTypeAheadIndex lookupIndex() {
+        try {
+            return CDI.current().select(MedicineTypeAheadIndex.class).get();
+        }
+        catch (IllegalStateException e) {
+            // no CDI container, e.g. plain JPA in the tests: there is no index to maintain
+            LOG.trace("no CDI container, medicine type-ahead index not available");
+            return null;
+        }
+    }
+}
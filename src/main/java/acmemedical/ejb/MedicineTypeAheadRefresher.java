@@ -0,0 +1,70 @@
+/********************************************************************************************************
+ * File:  MedicineTypeAheadRefresher.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Rebuilds the medicine type-ahead index in the background.
+ */
+package acmemedical.ejb;
+
+import static acmemedical.utility.MyConstants.DEFAULT_MEDICINE_TYPEAHEAD_TTL_SECONDS;
+import static acmemedical.utility.MyConstants.MEDICINE_TYPEAHEAD_TTL_SECONDS_PROPNAME;
+
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.Timeout;
+import jakarta.ejb.TimerConfig;
+import jakarta.ejb.TimerService;
+import jakarta.inject.Inject;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * A non-persistent interval timer: the first build runs right after deployment, then one every
+ * {@value acmemedical.utility.MyConstants#MEDICINE_TYPEAHEAD_TTL_SECONDS_PROPNAME} seconds, on the container's
+ * timer thread.  Search requests only read the index; until the first build completes they fall back to the
+ * database (see {@link ACMEMedicalService#searchMedicines(String, int)}).
+ */
+@Singleton
+@Startup
+public class MedicineTypeAheadRefresher {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    @Inject
+    @ConfigProperty(name = MEDICINE_TYPEAHEAD_TTL_SECONDS_PROPNAME, defaultValue = DEFAULT_MEDICINE_TYPEAHEAD_TTL_SECONDS)
+    protected long ttlSeconds;
+
+    @Inject
+    protected ACMEMedicalService service;
+
+    @Resource
+    protected TimerService timerService;
+
+    @PostConstruct
+    public void schedule() {
+        // not persistent: every node keeps its own index, and a missed rebuild is not worth catching up on
+        timerService.createIntervalTimer(0, TimeUnit.SECONDS.toMillis(ttlSeconds), new TimerConfig(null, false));
+    }
+
+    @Timeout
+    public void refresh() {
+        try {
+            service.rebuildMedicineTypeAhead();
+        }
+        catch (RuntimeException e) {
+            // keep the timer: the current contents stay in use and the next run tries again
+            LOG.warn("medicine type-ahead index rebuild failed", e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/********************************************************************************************************
+ * File:  MeteredConnectionProvider.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Hibernate connection provider timing checkouts from the acmemedicalDB pool.
+ */
+package acmemedical.ejb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import org.eclipse.microprofile.metrics.Timer;
+import org.hibernate.engine.jdbc.connections.internal.DatasourceConnectionProviderImpl;
+
+/**
+ * Set as <code>hibernate.connection.provider_class</code>: Hibernate still gets its connections from the JTA
+ * data source, every checkout is just timed here first, failed ones (e.g. timed out on a full pool) included.
+ * Hibernate creates the provider, not CDI, so {@link JdbcPoolMetrics} hands in the timer once it is registered.
+ * <p>
+ * The provider does not count connections in use: under JTA a checkout is a logical handle, and several of them
+ * may share one pooled connection.  {@link JdbcPoolStatistics} reads those counts from the pool itself.
+ */
+public class MeteredConnectionProvider extends DatasourceConnectionProviderImpl {
+
+    private static volatile Timer acquisitionTimer;
+
+    public static void setAcquisitionTimer(Timer timer) {
+        acquisitionTimer = timer;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return super.getConnection();
+        }
+        finally {
+            Timer timer = acquisitionTimer;
+            if (timer != null) {
+                timer.update(Duration.ofNanos(System.nanoTime() - start));
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/********************************************************************************************************
+ * File:  ServiceMetricsInterceptor.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Times every ACMEMedicalService method and samples the size of its persistence context.
+ */
+package acmemedical.ejb;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.InvocationContext;
+import jakarta.persistence.EntityManager;
+
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.Timer;
+import org.hibernate.Session;
+
+/**
+ * Every business method is recorded in the timer {@value #CALL_TIMER_NAME}, tagged <code>method</code>
+ * (time spent waiting for an {@link EntityLockInterceptor} lock included).  Methods that ran in a transaction also
+ * report how many entities their persistence context held at the end in the histogram {@value #PERSISTENCE_CONTEXT_HISTOGRAM_NAME}.
+ * <p>
+ * The cost per call is two nanoTime reads, a map lookup and, in a transaction, a map size.
+ */
+public class ServiceMetricsInterceptor implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String CALL_TIMER_NAME = "acmemedical.service.calls";
+    public static final String PERSISTENCE_CONTEXT_HISTOGRAM_NAME = "acmemedical.service.persistence-context.entities";
+
+    @Inject
+    protected MetricRegistry metricRegistry;
+
+    private transient Map<Method, Timer> timers;
+    private transient Histogram persistenceContextSize;
+
+    @PostConstruct
+    public void registerMetrics(InvocationContext ctx) throws Exception {
+        timers = new ConcurrentHashMap<>();
+        if (metricRegistry != null) {
+            persistenceContextSize = metricRegistry.histogram(PERSISTENCE_CONTEXT_HISTOGRAM_NAME);
+        }
+        ctx.proceed();
+    }
+
+    @AroundInvoke
+    public Object timeServiceCall(InvocationContext ctx) throws Exception {
+        if (metricRegistry == null) {
+            return ctx.proceed();
+        }
+        long start = System.nanoTime();
+        try {
+            Object result = ctx.proceed();
+            samplePersistenceContext(ctx.getTarget());
+            return result;
+        }
+        finally {
+            timers.computeIfAbsent(ctx.getMethod(), m -> metricRegistry.timer(CALL_TIMER_NAME, new Tag("method", m.getName())))
+                .update(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    protected void samplePersistenceContext(Object target) {
+        if (!(target instanceof ACMEMedicalService service)) {
+            return;
+        }
+        EntityManager em = service.em;
+        // outside a transaction a container-managed EntityManager has nothing to report (and unwrap would open a session)
+        if (em != null && em.isJoinedToTransaction()) {
+            persistenceContextSize.update(em.unwrap(Session.class).getStatistics().getEntityCount());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/********************************************************************************************************
+ * File:  SqlStatementListener.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Times every JDBC statement and batch, for the per-request statistics and the slow-query log.
+ */
+package acmemedical.ejb;
+
+import static acmemedical.utility.MyConstants.DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS;
+import static acmemedical.utility.MyConstants.DEFAULT_SQL_SAMPLE_RATE;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Registered through <code>hibernate.session.events.auto</code> (one instance per session) and, for the SQL text,
+ * as <code>hibernate.session_factory.statement_inspector</code>: Hibernate prepares a statement on the thread that
+ * executes it, right before executing it, so the inspector leaves the SQL in a thread local for the listener.
+ * <p>
+ * Each execution is added to the {@link SqlStatementStatistics} bound to the thread, if any.  One slower than
+ * the threshold (MicroProfile Config {@value acmemedical.utility.MyConstants#SLOW_QUERY_THRESHOLD_MILLIS_PROPNAME},
+ * handed in by <code>SqlStatementTimingFilter</code>) goes to the {@value #SLOW_QUERY_LOGGER_NAME} logger; of the
+ * others, a random fraction ({@value acmemedical.utility.MyConstants#SQL_SAMPLE_RATE_PROPNAME}, 0 for none) goes to
+ * the {@value #SQL_SAMPLE_LOGGER_NAME} logger.  The sample is drawn before anything is formatted, so a statement
+ * that is not sampled costs one random number, unlike a filter behind <code>org.hibernate.SQL</code> at debug.
+ * Bound parameters never appear in the SQL Hibernate prepares, and literals are replaced by <code>?</code>
+ * before logging, so no patient data ends up in that log.
+ */
+public class SqlStatementListener extends BaseSessionEventListener implements StatementInspector {
+    private static final long serialVersionUID = 1L;
+
+    public static final String SLOW_QUERY_LOGGER_NAME = "acmemedical.slowquery";
+
+    public static final String SQL_SAMPLE_LOGGER_NAME = "acmemedical.sqlsample";
+
+    private static final Logger SLOW_QUERY_LOG = LogManager.getLogger(SLOW_QUERY_LOGGER_NAME);
+    private static final Logger SQL_SAMPLE_LOG = LogManager.getLogger(SQL_SAMPLE_LOGGER_NAME);
+
+    private static final ThreadLocal<String> LAST_SQL = new ThreadLocal<>();
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+
+    private static volatile long slowQueryThresholdNanos =
+        TimeUnit.MILLISECONDS.toNanos(Long.parseLong(DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS));
+    private static volatile double sampleRate = Double.parseDouble(DEFAULT_SQL_SAMPLE_RATE);
+
+    private long executionStart;
+
+    public static void setSlowQueryThresholdMillis(long millis) {
+        slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * @param rate - fraction of the statements to log, from 0 (none) to 1 (all)
+     */
+    public static void setSampleRate(double rate) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException("SQL sample rate must be between 0 and 1, was " + rate);
+        }
+        sampleRate = rate;
+    }
+
+    /**
+     * @param sql - SQL as prepared by Hibernate
+     * @return the same SQL with string and number literals replaced by <code>?</code>
+     */
+    public static String redact(String sql) {
+        if (sql == null) {
+            return null;
+        }
+        String redacted = STRING_LITERAL.matcher(sql).replaceAll("?");
+        return NUMBER_LITERAL.matcher(redacted).replaceAll("?");
+    }
+
+    @Override
+    public String inspect(String sql) {
+        LAST_SQL.set(sql);
+        return sql;
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executionStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        executed();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        executionStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        executed();
+    }
+
+    protected void executed() {
+        long elapsed = System.nanoTime() - executionStart;
+        SqlStatementStatistics statistics = SqlStatementStatistics.current();
+        if (statistics != null) {
+            statistics.recordStatement(elapsed);
+        }
+        if (elapsed >= slowQueryThresholdNanos && SLOW_QUERY_LOG.isWarnEnabled()) {
+            SLOW_QUERY_LOG.warn("{} ms [{}] {}", TimeUnit.NANOSECONDS.toMillis(elapsed),
+                statistics == null ? "-" : statistics.getLabel(), redact(LAST_SQL.get()));
+        } else if (sampled() && SQL_SAMPLE_LOG.isInfoEnabled()) {
+            SQL_SAMPLE_LOG.info("{} ms [{}] {}", TimeUnit.NANOSECONDS.toMillis(elapsed),
+                statistics == null ? "-" : statistics.getLabel(), redact(LAST_SQL.get()));
+        }
+    }
+
+    protected static boolean sampled() {
+        double rate = sampleRate;
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+}
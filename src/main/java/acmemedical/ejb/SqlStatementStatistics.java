@@ -0,0 +1,70 @@
+/********************************************************************************************************
+ * File:  SqlStatementStatistics.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: JDBC statements executed, and the time spent executing them, on behalf of one request.
+ */
+package acmemedical.ejb;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistics of the request being served are bound to the current thread with {@link #bind(SqlStatementStatistics)}
+ * and picked up there by {@link SqlStatementListener}.  A request whose work moves to another thread moves its
+ * statistics along (see <code>AsyncResourceExecutor</code>), which is why the counters are atomic.
+ */
+public class SqlStatementStatistics {
+
+    private static final ThreadLocal<SqlStatementStatistics> CURRENT = new ThreadLocal<>();
+
+    private final String label;
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+
+    public SqlStatementStatistics(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return statistics bound to this thread, null outside of a request
+     */
+    public static SqlStatementStatistics current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @param statistics - statistics to bind to this thread, null to unbind
+     */
+    public static void bind(SqlStatementStatistics statistics) {
+        if (statistics == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(statistics);
+        }
+    }
+
+    public void recordStatement(long elapsedNanos) {
+        statements.incrementAndGet();
+        nanos.addAndGet(elapsedNanos);
+    }
+
+    /**
+     * @return what the statements were run for, e.g. <code>PatientResource.getPatients</code>
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    public long getStatements() {
+        return statements.get();
+    }
+
+    public long getNanos() {
+        return nanos.get();
+    }
+}
@@ -0,0 +1,37 @@
+/********************************************************************************************************
+ * File:  WriteLock.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Marks an ACMEMedicalService method that modifies an existing row.
+ */
+package acmemedical.ejb;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a service method that modifies an existing row of {@link #value()}.
+ * <p>
+ * The row key is taken from the method's leading <code>int</code> parameters
+ * (e.g. <code>updatePatient(int id, ...)</code> or <code>updatePrescription(int physicianId, int patientId, ...)</code>),
+ * or, if the first parameter is an entity, from its id.
+ *
+ * @see EntityLockInterceptor
+ */
+@Retention(RUNTIME)
+@Target(METHOD)
+public @interface WriteLock {
+
+    /**
+     * @return entity class being modified
+     */
+    Class<?> value();
+}
@@ -0,0 +1,124 @@
+/********************************************************************************************************
+ * File:  IdempotencyRecord.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: The stored response of a POST sent with an Idempotency-Key header.
+ */
+package acmemedical.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Access;
+import jakarta.persistence.AccessType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * One <code>Idempotency-Key</code> of one user on one resource, see acmemedical.ejb.IdempotencyStore.
+ * <p>
+ * While the first request runs, {@link #getStatus()} is {@value #IN_PROGRESS}; afterwards the row holds the response
+ * that retries get back.  The row is not a domain entity: no id generator, version or audit columns.
+ */
+@Entity
+@Table(name = "idempotency_key",
+    indexes = @Index(name = "idx_idempotency_key_expires", columnList = "expires")) // purge of expired rows
+@Access(AccessType.FIELD)
+public class IdempotencyRecord implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int IN_PROGRESS = 0;
+
+    // SHA-256 (hex) of user, method, path and key: fixed length whatever the client sends
+    @Id
+    @Column(name = "record_key", length = 64, nullable = false)
+    private String recordKey;
+
+    // SHA-256 (hex) of the request body, a key reused with another body is rejected
+    @Column(name = "request_hash", length = 64, nullable = false)
+    private String requestHash;
+
+    @Column(name = "status", nullable = false)
+    private int status;
+
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    // MEDIUMTEXT, as in acmemedical-create.sql
+    @Column(name = "body", length = 16777215)
+    private String body;
+
+    @Column(name = "expires", nullable = false)
+    private LocalDateTime expires;
+
+    public IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(String recordKey, String requestHash, LocalDateTime expires) {
+        this.recordKey = recordKey;
+        this.requestHash = requestHash;
+        this.status = IN_PROGRESS;
+        this.expires = expires;
+    }
+
+    public String getRecordKey() {
+        return recordKey;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public void setRequestHash(String requestHash) {
+        this.requestHash = requestHash;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public boolean isInProgress() {
+        return status == IN_PROGRESS;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public LocalDateTime getExpires() {
+        return expires;
+    }
+
+    public void setExpires(LocalDateTime expires) {
+        this.expires = expires;
+    }
+
+    @Override
+    public String toString() {
+        return "IdempotencyRecord [recordKey=" + recordKey + ", status=" + status + ", expires=" + expires + "]";
+    }
+}
@@ -25,7 +25,11 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.NamedQuery;
 import jakarta.persistence.OneToOne;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table; // added by Ruchen - end
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.AttributeOverride; // added by Ryan
 import jakarta.persistence.CascadeType;
 
@@ -36,7 +40,8 @@ import jakarta.persistence.CascadeType;
  */
 //TODO MC01 - Add the missing annotations.
 @Entity  // MC01
-@Table(name = "medical_certificate")  // MC01
+// index also in acmemedical-create.sql, serves ACMEMedicalService.getCollectionStamp
+@Table(name = "medical_certificate", indexes = @Index(name = "idx_medical_certificate_updated", columnList = "updated"))  // MC01
 @Access(AccessType.FIELD)  // MC01
 //TODO MC02 - Do we need a mapped super class?  If so, which one?
 @AttributeOverride(name = "id", column = @Column(name = "certificate_id")) // Added by Ryan
@@ -44,10 +49,15 @@ import jakarta.persistence.CascadeType;
 	    name = MedicalCertificate.ID_CARD_QUERY_NAME,
 	    query = "SELECT mc FROM MedicalCertificate mc WHERE mc.id = :param1"
 	)	//Added by Ryan
+// Everything the JSON response serializes: the training and the owner (plus the owner's inverse 1:1 securityUser)
+@NamedEntityGraph(name = MedicalCertificate.RESPONSE_GRAPH,
+    attributeNodes = { @NamedAttributeNode("medicalTraining"), @NamedAttributeNode(value = "owner", subgraph = "owner") },
+    subgraphs = @NamedSubgraph(name = "owner", attributeNodes = @NamedAttributeNode("securityUser")))
 public class MedicalCertificate extends PojoBase implements Serializable { // MC02
 	private static final long serialVersionUID = 1L;
 	
 	public static final String ID_CARD_QUERY_NAME = "MedicalCertificate.findById";	//Added by Ryan
+	public static final String RESPONSE_GRAPH = "MedicalCertificate.response";
 
 	// TODO MC03 - Add annotations for 1:1 mapping.  What should be the cascade and fetch types?
 //	@OneToOne(mappedBy = "certificate", fetch = FetchType.LAZY) // MC03
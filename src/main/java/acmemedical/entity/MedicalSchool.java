@@ -31,9 +31,16 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.Inheritance;
 import jakarta.persistence.InheritanceType;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table; // added by Ruchen - end
 import jakarta.persistence.NamedQueries; //Added by Ryan
 import jakarta.persistence.NamedQuery;	//Added by Ryan
+import jakarta.persistence.QueryHint;
+import jakarta.persistence.Cacheable;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.QueryHints;
 
 
 /**
@@ -44,8 +51,12 @@ import jakarta.persistence.NamedQuery;	//Added by Ryan
 //TODO MS03 - Do we need a mapped super class?  If so, which one?
 //TODO MS04 - Add in JSON annotations to indicate different sub-classes of MedicalSchool
 @Entity  // MS01
-@Table(name = "medical_school")  // MS01
+// index also in acmemedical-create.sql, serves ACMEMedicalService.getCollectionStamp
+@Table(name = "medical_school", indexes = @Index(name = "idx_medical_school_updated", columnList = "updated"))  // MS01
 @Access(AccessType.FIELD)  // MS01
+// Reference data, cached for the whole hierarchy (PublicSchool, PrivateSchool) in one region, see META-INF/ehcache.xml
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "acmemedical.medical_school")
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)  // MS02
 @DiscriminatorColumn(name = "public", discriminatorType = DiscriminatorType.INTEGER)  // MS02, fixed the name from "school_type" to "public" by Ryan
 @AttributeOverride(name = "id", column = @Column(name = "school_id"))		//MS03 Added by Ryan Xu
@@ -58,11 +69,13 @@ import jakarta.persistence.NamedQuery;	//Added by Ryan
 @NamedQueries({
     @NamedQuery(
         name = MedicalSchool.ALL_MEDICAL_SCHOOLS_QUERY_NAME,
-        query = "SELECT ms FROM MedicalSchool ms"
+        query = "SELECT ms FROM MedicalSchool ms",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")
     ),
     @NamedQuery(
         name = MedicalSchool.SPECIFIC_MEDICAL_SCHOOL_QUERY_NAME,
-        query = "SELECT ms FROM MedicalSchool ms WHERE ms.id = :param1"
+        query = "SELECT ms FROM MedicalSchool ms WHERE ms.id = :param1",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")
     ),
     @NamedQuery(
         name = MedicalSchool.IS_DUPLICATE_QUERY_NAME,
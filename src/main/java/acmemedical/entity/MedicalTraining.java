@@ -27,7 +27,10 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.NamedQuery;
 import jakarta.persistence.OneToOne;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table; // added by Ruchen - end
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
 import jakarta.persistence.Column;	//added by Ryan
 
 import jakarta.persistence.Embedded;
@@ -39,7 +42,8 @@ import jakarta.persistence.Embedded;
  */
 //TODO MT01 - Add the missing annotations.
 @Entity  // MT01
-@Table(name = "medical_training")  // MT01
+// index also in acmemedical-create.sql, serves ACMEMedicalService.getCollectionStamp
+@Table(name = "medical_training", indexes = @Index(name = "idx_medical_training_updated", columnList = "updated"))  // MT01
 @Access(AccessType.FIELD)  // MT01
 //TODO MT02 - Do we need a mapped super class?  If so, which one?
 @AttributeOverride(name = "id", column = @Column(name = "training_id"))	//Added by Ryan Xu
@@ -47,10 +51,13 @@ import jakarta.persistence.Embedded;
 	    name = MedicalTraining.FIND_BY_ID,
 	    query = "SELECT mt FROM MedicalTraining mt WHERE mt.id = :param1"
 	)	//Added by Ryan
+// certificate is the inverse side of a 1:1, fetch it in the same statement instead of one SELECT per training
+@NamedEntityGraph(name = MedicalTraining.RESPONSE_GRAPH, attributeNodes = @NamedAttributeNode("certificate"))
 public class MedicalTraining extends PojoBase implements Serializable { // MT02
 	private static final long serialVersionUID = 1L;
 	
 	public static final String FIND_BY_ID = "MedicalTraining.findById";	//Added by Ryan
+	public static final String RESPONSE_GRAPH = "MedicalTraining.response";
 
 	// TODO MT03 - Add annotations for M:1.  What should be the cascade and fetch types?
 	@ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL)  // MT03
@@ -23,9 +23,20 @@ import jakarta.persistence.Basic;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
+import jakarta.persistence.NamedNativeQuery;
 import jakarta.persistence.NamedQuery;
+import jakarta.persistence.QueryHint;
+import jakarta.persistence.Cacheable;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.QueryHints;
+
+import acmemedical.ejb.MedicineTypeAheadListener;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
 
@@ -39,12 +50,17 @@ import jakarta.persistence.Transient;
 //Hint - @Entity name does not matter as long as it is consistent across the code.
 @Entity
 //Hint - @Table defines a specific table on DB which is mapped to this entity.
-@Table(name = "medicine")
+// index also in acmemedical-create.sql, serves ACMEMedicalService.getCollectionStamp
+@Table(name = "medicine", indexes = @Index(name = "idx_medicine_updated", columnList = "updated"))
 @Access(AccessType.FIELD)	//Added by Ryan Xu
+// Reference data: read far more often than written, kept in the second-level cache (see META-INF/ehcache.xml)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "acmemedical.medicine")
 //Hint - @NamedQuery attached to this class which uses JPQL/HQL.  SQL cannot be used with NamedQuery.
 //Hint - @NamedQuery uses the name which is defined in @Entity for JPQL, if no name is defined use class name.
 //Hint - @NamedNativeQuery can optionally be used if there is a need for SQL query.
-@NamedQuery(name = "Medicine.findAll", query = "SELECT m FROM Medicine m")
+@NamedQuery(name = "Medicine.findAll", query = "SELECT m FROM Medicine m",
+    hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))
 //Hint - @AttributeOverride can override column details.  This entity uses medicine_id as its primary key name, it needs to override the name in the mapped super class.
 //Hint - PojoBase is inherited by any entity with integer as their primary key.
 //Hint - PojoBaseCompositeKey is inherited by any entity with a composite key as their primary key.
@@ -53,10 +69,17 @@ import jakarta.persistence.Transient;
 	    name = Medicine.FIND_BY_ID,
 	    query = "SELECT m FROM Medicine m WHERE m.id = :param1"
 	)	//Added by Ryan
+// Relevance-ranked search over the FULLTEXT index ft_medicine_search (see acmemedical-create.sql); JPQL has no MATCH
+@NamedNativeQuery(name = Medicine.FULLTEXT_SEARCH_QUERY_NAME,
+    query = "SELECT * FROM medicine WHERE MATCH(drug_name, manufacturer_name, dosage_information) AGAINST(?1 IN BOOLEAN MODE)"
+        + " ORDER BY MATCH(drug_name, manufacturer_name, dosage_information) AGAINST(?1 IN BOOLEAN MODE) DESC, medicine_id",
+    resultClass = Medicine.class)
+@EntityListeners(MedicineTypeAheadListener.class) // keeps the type-ahead search index in sync
 public class Medicine extends PojoBase implements Serializable {
 	private static final long serialVersionUID = 1L;
 	
 	public static final String FIND_BY_ID = "Medicine.findById";	//Added by Ryan
+	public static final String FULLTEXT_SEARCH_QUERY_NAME = "Medicine.fulltextSearch";
 
 	// Hint - @Basic(optional = false) is used when the object cannot be null.
 	// Hint - @Basic or none can be used if the object can be null.
@@ -23,6 +23,7 @@ import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table; // added by Ruchen - end
 
@@ -33,7 +34,11 @@ import jakarta.persistence.Table; // added by Ruchen - end
  */
 //TODO PA01 - Add the missing annotations.
 @Entity  // PA01
-@Table(name = "patient")  // PA01
+// indexes also in acmemedical-create.sql, they serve ACMEMedicalService.searchPatients and getCollectionStamp
+@Table(name = "patient", indexes = {  // PA01
+	@Index(name = "idx_patient_last_first", columnList = "last_name, first_name"),
+	@Index(name = "idx_patient_year_of_birth", columnList = "year_of_birth"),
+	@Index(name = "idx_patient_updated", columnList = "updated") })
 @Access(AccessType.FIELD) // PA01
 //TODO PA02 - Do we need a mapped super class?  If so, which one?
 @AttributeOverride(name = "id", column = @Column(name = "patient_id"))  //Added by Ryan Xu
@@ -25,9 +25,12 @@ import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table; // added by Ruchen - end
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
 /**
  * The persistent class for the physician database table.
  */
@@ -37,12 +40,19 @@ import jakarta.persistence.Table; // added by Ruchen - end
 @Entity  // PH01 - Marks this as a JPA entity
 //TODO PH02 - Do we need a mapped super class? If so, which one?
 @NamedQuery(name = "Physician.findAll", query = "SELECT p FROM Physician p")  //Added by Ryan
-@Table(name = "physician")  // Optional
+// securityUser is the inverse side of a 1:1 and cannot be proxied, Hibernate would load it with one extra SELECT per physician
+@NamedEntityGraph(name = Physician.RESPONSE_GRAPH, attributeNodes = @NamedAttributeNode("securityUser"))
+// indexes also in acmemedical-create.sql, they serve ACMEMedicalService.searchPhysicians and getCollectionStamp
+@Table(name = "physician", indexes = {  // Optional
+	@Index(name = "idx_physician_last_first", columnList = "last_name, first_name"),
+	@Index(name = "idx_physician_first", columnList = "first_name"),
+	@Index(name = "idx_physician_updated", columnList = "updated") })
 @Access(AccessType.FIELD)  // Let JPA access fields directly
 public class Physician extends PojoBase implements Serializable {
 	private static final long serialVersionUID = 1L;
 	
 	public static final String ALL_PHYSICIANS_QUERY_NAME = "Physician.findAll"; //Added by Ryan
+	public static final String RESPONSE_GRAPH = "Physician.response";
 
     public Physician() {
     	super();
@@ -20,11 +20,12 @@ import jakarta.persistence.AccessType;
 import jakarta.persistence.Column;
 import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.MappedSuperclass;
 import jakarta.persistence.Version; // added by Ruchen - end
 
+import org.hibernate.annotations.GenericGenerator;
+
 /**
  * Abstract class that is base of (class) hierarchy for all @Entity classes
  */
@@ -40,7 +41,10 @@ public abstract class PojoBase implements Serializable {
 
 	// TODO PB04 - Add missing annotations.
 	@Id  // PB04
-	@GeneratedValue(strategy = GenerationType.IDENTITY)  // Added by Ryan Xu
+	// pooled table generator instead of IDENTITY so that inserts can be JDBC-batched; one segment per entity table
+	// (the table behind each entity's @AttributeOverride id column), see PooledTableIdGenerator
+	@GeneratedValue(generator = PooledTableIdGenerator.NAME)
+	@GenericGenerator(name = PooledTableIdGenerator.NAME, strategy = "acmemedical.entity.PooledTableIdGenerator")
 	protected int id;
 
 	// TODO PB05 - Add missing annotations.
@@ -0,0 +1,71 @@
+/********************************************************************************************************
+ * File:  PooledTableIdGenerator.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Table-backed, pooled id generator shared by every PojoBase entity.
+ */
+package acmemedical.entity;
+
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * MySQL has no sequences, and IDENTITY columns force Hibernate to execute every INSERT on its own to read the key back,
+ * which rules out JDBC batching.  This generator emulates a sequence per entity table in <code>id_generator</code>
+ * (one row per table, e.g. <code>('patient', 1051)</code>) and hands ids out of blocks of <code>allocation size</code>
+ * values (pooled-lo optimizer), so one UPDATE of that table serves that many inserts.
+ * <p>
+ * The allocation size comes from the persistence unit property {@value #ALLOCATION_SIZE_SETTING}
+ * (default {@value #DEFAULT_ALLOCATION_SIZE}); ids left in a block at shutdown are skipped, not reused.
+ */
+public class PooledTableIdGenerator extends TableGenerator {
+
+    public static final String NAME = "acmemedical-pooled";
+    public static final String TABLE = "id_generator";
+    public static final String SEGMENT_COLUMN = "table_name";
+    public static final String VALUE_COLUMN = "next_val";
+
+    public static final String ALLOCATION_SIZE_SETTING = "acmemedical.id_generator.allocation_size";
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        params.setProperty(TABLE_PARAM, TABLE);
+        params.setProperty(SEGMENT_COLUMN_PARAM, SEGMENT_COLUMN);
+        params.setProperty(VALUE_COLUMN_PARAM, VALUE_COLUMN);
+        // segment value = the entity's table, so each table keeps its own id range
+        params.setProperty(SEGMENT_VALUE_PARAM, params.getProperty(PersistentIdentifierGenerator.TABLE));
+        params.setProperty(OPT_PARAM, "pooled-lo");
+        params.setProperty(INCREMENT_PARAM, String.valueOf(allocationSize(serviceRegistry)));
+        super.configure(type, params, serviceRegistry);
+    }
+
+    protected int allocationSize(ServiceRegistry serviceRegistry) {
+        ConfigurationService configuration = serviceRegistry.getService(ConfigurationService.class);
+        Object value = configuration == null ? null : configuration.getSettings().get(ALLOCATION_SIZE_SETTING);
+        if (value == null || value.toString().isBlank()) {
+            return DEFAULT_ALLOCATION_SIZE;
+        }
+        try {
+            int size = Integer.parseInt(value.toString().trim());
+            if (size < 1) {
+                throw new MappingException(ALLOCATION_SIZE_SETTING + " must be at least 1, was " + size);
+            }
+            return size;
+        }
+        catch (NumberFormatException e) {
+            throw new MappingException(ALLOCATION_SIZE_SETTING + " is not a number: " + value, e);
+        }
+    }
+}
@@ -26,7 +26,11 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.MapsId;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
 import jakarta.persistence.NamedQuery;
+import jakarta.persistence.NamedSubgraph;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 
 @SuppressWarnings("unused")
@@ -34,12 +38,19 @@ import jakarta.persistence.Table;
  * The persistent class for the prescription database table.
  */
 @Entity
-@Table(name = "prescription")
+// index also in acmemedical-create.sql, serves ACMEMedicalService.getCollectionStamp
+@Table(name = "prescription", indexes = @Index(name = "idx_prescription_updated", columnList = "updated"))
 @Access(AccessType.FIELD)
 @NamedQuery(name = "Prescription.findAll", query = "SELECT p FROM Prescription p")
+// Everything the JSON response serializes: physician (plus its inverse 1:1 securityUser), patient and medicine
+@NamedEntityGraph(name = Prescription.RESPONSE_GRAPH,
+    attributeNodes = { @NamedAttributeNode(value = "physician", subgraph = "physician"), @NamedAttributeNode("patient"), @NamedAttributeNode("medicine") },
+    subgraphs = @NamedSubgraph(name = "physician", attributeNodes = @NamedAttributeNode("securityUser")))
 public class Prescription extends PojoBaseCompositeKey<PrescriptionPK> implements Serializable {
 	private static final long serialVersionUID = 1L;
 
+	public static final String RESPONSE_GRAPH = "Prescription.response";
+
 	// Hint - What annotation is used for a composite primary key type?
 	@EmbeddedId
 	private PrescriptionPK id;
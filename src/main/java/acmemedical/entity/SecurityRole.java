@@ -22,6 +22,7 @@ import jakarta.persistence.Access;
 import jakarta.persistence.AccessType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -30,6 +31,14 @@ import jakarta.persistence.ManyToMany;
 import jakarta.persistence.Table; // added by Ruchen - end
 
 import jakarta.persistence.NamedQuery;	// Added by Ryan
+import jakarta.persistence.QueryHint;
+import jakarta.persistence.Cacheable;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.QueryHints;
+
+import acmemedical.security.CredentialCacheListener;
 
 @SuppressWarnings("unused")
 
@@ -40,9 +49,14 @@ import jakarta.persistence.NamedQuery;	// Added by Ryan
 @Entity // SR01
 @Table(name = "security_role") // SR01
 @Access(AccessType.FIELD) // SR01
+@EntityListeners(CredentialCacheListener.class)
+// Reference data, looked up by name for every new physician user, see META-INF/ehcache.xml
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "acmemedical.security_role")
 @NamedQuery(
 	    name = SecurityRole.FIND_BY_NAME,
-	    query = "SELECT sr FROM SecurityRole sr WHERE sr.roleName = :param1"
+	    query = "SELECT sr FROM SecurityRole sr WHERE sr.roleName = :param1",
+	    hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")
 	)
 public class SecurityRole implements Serializable {
     /** Explicit set serialVersionUID */
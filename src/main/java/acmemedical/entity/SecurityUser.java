@@ -22,6 +22,7 @@ import jakarta.persistence.AccessType;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -33,9 +34,13 @@ import jakarta.persistence.NamedQueries;
 import jakarta.persistence.NamedQuery;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 
 import com.fasterxml.jackson.annotation.JsonIgnore; // added by Ruchen - end
 
+import acmemedical.security.CredentialCacheListener;
+
 @SuppressWarnings("unused")
 
 /**
@@ -58,8 +63,11 @@ import com.fasterxml.jackson.annotation.JsonIgnore; // added by Ruchen - end
 		    query = "SELECT su FROM SecurityUser su JOIN su.roles r WHERE su.physician.id = :physicianId"
 		)
 })
-@Table(name = "security_user") // SU01 - Specifies the name of the database table this entity maps to
+@Table(name = "security_user", // SU01 - Specifies the name of the database table this entity maps to
+	// named as in acmemedical-create.sql: ACMEMedicalService.onboardPhysician tells a taken username by this name
+	uniqueConstraints = @UniqueConstraint(name = "username_UNIQUE", columnNames = "username"))
 @Access(AccessType.FIELD) // SU01 - Instructs JPA to access fields directly rather than through getters/setters
+@EntityListeners(CredentialCacheListener.class) // keeps the authenticated-credential cache in sync
 public class SecurityUser implements Serializable, Principal {
     /** Explicit set serialVersionUID */
     private static final long serialVersionUID = 1L;
@@ -71,7 +79,7 @@ public class SecurityUser implements Serializable, Principal {
     protected int id;
     
     //TODO SU03 - Add annotations.
-    @Column(name = "username", nullable = false, unique = true, length = 64) // - SU03
+    @Column(name = "username", nullable = false, length = 64) // - SU03, unique: see @Table
     protected String username;
     
     //TODO SU04 - Add annotations.
@@ -93,6 +101,12 @@ public class SecurityUser implements Serializable, Principal {
     @JsonIgnore // - SU06
     protected Set<SecurityRole> roles = new HashSet<SecurityRole>();
 
+    // a change of the roles alone bumps it too, so CredentialCacheListener's @PostUpdate sees revoked roles
+    @Version
+    @Column(name = "version")
+    @JsonIgnore
+    protected long version;
+
     public SecurityUser() {
         super();
     }
@@ -130,6 +144,14 @@ public class SecurityUser implements Serializable, Principal {
         this.roles = roles;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public Physician getPhysician() {
         return physician;
     }
@@ -0,0 +1,194 @@
+/********************************************************************************************************
+ * File:  AsyncResourceExecutor.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Runs resource method bodies off the container request thread, with a concurrency limit per resource.
+ */
+package acmemedical.rest;
+
+import static acmemedical.utility.MyConstants.ASYNC_ACQUIRE_TIMEOUT_MILLIS_PROPNAME;
+import static acmemedical.utility.MyConstants.ASYNC_MAX_CONCURRENCY_PROPNAME;
+import static acmemedical.utility.MyConstants.ASYNC_RESOURCES_ENABLED_PROPNAME;
+import static acmemedical.utility.MyConstants.DEFAULT_ASYNC_ACQUIRE_TIMEOUT_MILLIS;
+import static acmemedical.utility.MyConstants.DEFAULT_ASYNC_MAX_CONCURRENCY;
+import static acmemedical.utility.MyConstants.DEFAULT_ASYNC_RESOURCES_ENABLED;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ContextService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.Response;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+
+import acmemedical.ejb.SqlStatementStatistics;
+import acmemedical.utility.ErrorResponseUtil;
+
+/**
+ * Resource methods return {@link #submit(String, Supplier)}: the container request thread is handed back
+ * as soon as the work is queued, and the work itself (JDBC included) runs on a virtual thread.
+ * Virtual threads are cheap, so the limit that matters is not the executor but the <code>acmemedicalDB</code>
+ * pool: every resource gets a {@link Semaphore} of {@value acmemedical.utility.MyConstants#ASYNC_MAX_CONCURRENCY_PROPNAME}
+ * permits (overridable per resource with <code>async-max-concurrency.&lt;resource&gt;</code>, e.g.
+ * <code>async-max-concurrency.patient</code>), so one busy resource cannot take every pooled connection.
+ * A request that cannot get a permit within {@value acmemedical.utility.MyConstants#ASYNC_ACQUIRE_TIMEOUT_MILLIS_PROPNAME}
+ * milliseconds is answered with 503 and a <code>Retry-After</code> header instead of queueing without bound.
+ * <p>
+ * The work is wrapped by the default {@link ContextService} so that it sees the caller's security, naming and
+ * class loader context (EJB calls and role checks behave as on the request thread); it does not inherit the
+ * caller's transaction.  JAX-RS proxies such as <code>UriInfo</code> and <code>SecurityContext</code> are bound
+ * to the request thread: read what is needed from them before calling {@link #submit(String, Supplier)}.
+ * <p>
+ * With {@value acmemedical.utility.MyConstants#ASYNC_RESOURCES_ENABLED_PROPNAME}=false the work runs inline
+ * on the request thread, which is the synchronous behaviour to compare against.
+ */
+@ApplicationScoped
+public class AsyncResourceExecutor {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    public static final String DEFAULT_CONTEXT_SERVICE = "java:comp/DefaultContextService";
+    public static final String IN_FLIGHT_GAUGE_NAME = "acmemedical.rest.async.in-flight";
+    public static final String REJECTED_COUNTER_NAME = "acmemedical.rest.async.rejected";
+    public static final String RESOURCE_TAG = "resource";
+
+    @Inject
+    @ConfigProperty(name = ASYNC_RESOURCES_ENABLED_PROPNAME, defaultValue = DEFAULT_ASYNC_RESOURCES_ENABLED)
+    protected boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = ASYNC_MAX_CONCURRENCY_PROPNAME, defaultValue = DEFAULT_ASYNC_MAX_CONCURRENCY)
+    protected int maxConcurrency;
+
+    @Inject
+    @ConfigProperty(name = ASYNC_ACQUIRE_TIMEOUT_MILLIS_PROPNAME, defaultValue = DEFAULT_ASYNC_ACQUIRE_TIMEOUT_MILLIS)
+    protected long acquireTimeoutMillis;
+
+    @Inject
+    protected Config config;
+
+    @Inject
+    protected MetricRegistry metricRegistry;
+
+    @Resource(lookup = DEFAULT_CONTEXT_SERVICE)
+    protected ContextService contextService;
+
+    private ExecutorService executor;
+    private final Map<String, Limit> limits = new ConcurrentHashMap<>();
+
+    private record Limit(Semaphore semaphore, Counter rejected) {
+    }
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        LOG.debug("async resources enabled={}, maxConcurrency={}, acquireTimeoutMillis={}", enabled, maxConcurrency, acquireTimeoutMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Run a resource method body asynchronously
+     *
+     * @param resource - resource name, selects the concurrency limit (e.g. PATIENT_RESOURCE_NAME)
+     * @param work - builds the response; must not touch request-bound JAX-RS proxies
+     * @return stage completed with the response, or exceptionally with whatever the work threw
+     */
+    @SuppressWarnings("unchecked")
+    public CompletionStage<Response> submit(String resource, Supplier<Response> work) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(work.get());
+        }
+        Supplier<Response> contextual = contextService == null ? work : contextService.createContextualProxy(work, Supplier.class);
+        // the request's SQL statement counts follow its work to the virtual thread
+        SqlStatementStatistics statistics = SqlStatementStatistics.current();
+        SqlStatementStatistics.bind(null);
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                SqlStatementStatistics.bind(statistics);
+                try {
+                    result.complete(runLimited(resource, contextual));
+                }
+                catch (Throwable t) {
+                    // not wrapped, so JAX-RS exception mappers see the original exception
+                    result.completeExceptionally(t);
+                }
+                finally {
+                    SqlStatementStatistics.bind(null);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            // shutting down
+            result.complete(serviceUnavailable(resource));
+        }
+        return result;
+    }
+
+    protected Response runLimited(String resource, Supplier<Response> work) {
+        Limit limit = limits.computeIfAbsent(resource, this::newLimit);
+        boolean acquired;
+        try {
+            acquired = limit.semaphore().tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            limit.rejected().inc();
+            return serviceUnavailable(resource);
+        }
+        try {
+            return work.get();
+        }
+        finally {
+            limit.semaphore().release();
+        }
+    }
+
+    protected Limit newLimit(String resource) {
+        int permits = config.getOptionalValue(ASYNC_MAX_CONCURRENCY_PROPNAME + "." + resource, Integer.class).orElse(maxConcurrency);
+        if (permits < 1) {
+            throw new IllegalStateException(ASYNC_MAX_CONCURRENCY_PROPNAME + " for " + resource + " must be at least 1, was " + permits);
+        }
+        Semaphore semaphore = new Semaphore(permits);
+        Tag tag = new Tag(RESOURCE_TAG, resource);
+        metricRegistry.gauge(IN_FLIGHT_GAUGE_NAME, () -> permits - semaphore.availablePermits(), tag);
+        LOG.debug("async concurrency limit for {} = {}", resource, permits);
+        return new Limit(semaphore, metricRegistry.counter(REJECTED_COUNTER_NAME, tag));
+    }
+
+    protected Response serviceUnavailable(String resource) {
+        long retryAfterSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(acquireTimeoutMillis));
+        return ErrorResponseUtil.serviceUnavailable("Too many concurrent requests for " + resource + ", retry later", retryAfterSeconds);
+    }
+}
@@ -0,0 +1,200 @@
+/********************************************************************************************************
+ * File:  ConditionalGet.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: If-None-Match / If-Modified-Since handling of the GETs: 304 when the client's copy is current.
+ */
+package acmemedical.rest;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.function.Supplier;
+
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+
+import acmemedical.ejb.ACMEMedicalService;
+import acmemedical.utility.VersionStamp;
+
+/**
+ * The validators of an entity come from {@link ACMEMedicalService#getVersionStamp(Class, Object)}, which reads the
+ * version columns only: when the client's <code>If-None-Match</code> (or, without it, <code>If-Modified-Since</code>)
+ * still matches, the answer is 304 and the entity is never loaded nor serialized.  Otherwise the response carries
+ * <code>ETag</code> and <code>Last-Modified</code>, plus <code>Cache-Control: private, no-cache</code> so that clients
+ * revalidate every time instead of guessing a freshness lifetime from <code>Last-Modified</code>.  A request without
+ * conditional headers is not charged for the version query: the validators are taken from the loaded entity.
+ * <p>
+ * JAX-RS <code>Request.evaluatePreconditions</code> is bound to the request thread while the stamps are read on the
+ * async worker, so the headers are captured by {@link #of(HttpHeaders)} on the request thread and compared here
+ * (weak comparison for <code>If-None-Match</code>, as RFC 9110 requires for GET).
+ */
+public class ConditionalGet {
+
+    private final String ifNoneMatch;
+    private final Date ifModifiedSince;
+
+    protected ConditionalGet(String ifNoneMatch, Date ifModifiedSince) {
+        this.ifNoneMatch = ifNoneMatch;
+        this.ifModifiedSince = ifModifiedSince;
+    }
+
+    /**
+     * @param headers - headers of the current request, read on the request thread
+     * @return the request's preconditions
+     */
+    public static ConditionalGet of(HttpHeaders headers) {
+        String ifNoneMatch = headers.getHeaderString(HttpHeaders.IF_NONE_MATCH);
+        return new ConditionalGet(ifNoneMatch == null || ifNoneMatch.isBlank() ? null : ifNoneMatch,
+            parseDate(headers.getHeaderString(HttpHeaders.IF_MODIFIED_SINCE)));
+    }
+
+    /**
+     * @return true if the request has a precondition this class evaluates
+     */
+    public boolean isConditional() {
+        return ifNoneMatch != null || ifModifiedSince != null;
+    }
+
+    /**
+     * @param stamp - current validators of the resource, null if it does not exist
+     * @return true if the client's copy matches <code>stamp</code>
+     */
+    public boolean isNotModified(VersionStamp stamp) {
+        if (stamp == null) {
+            return false;
+        }
+        if (ifNoneMatch != null) {
+            // If-Modified-Since is ignored when If-None-Match is present
+            return matches(ifNoneMatch, stamp.getEntityTag());
+        }
+        Date lastModified = stamp.getLastModified();
+        // HTTP dates have a resolution of one second
+        return ifModifiedSince != null && lastModified != null
+            && lastModified.getTime() / 1000 <= ifModifiedSince.getTime() / 1000;
+    }
+
+    /**
+     * GET of one entity
+     *
+     * @param service - reads the stamp
+     * @param type - entity type
+     * @param id - primary key (a PrescriptionPK for Prescription)
+     * @param view - fields of the response
+     * @param load - loads the whole entity, null if it does not exist
+     * @param notFound - response when it does not exist
+     * @return 304, 200 with validators, or <code>notFound</code>
+     */
+    public <T> Response entity(ACMEMedicalService service, Class<T> type, Object id, FieldSelection view,
+        Supplier<T> load, Supplier<Response> notFound) {
+        VersionStamp stamp = null;
+        // a projection leaves out the embedded entities, the stamp has to be read anyway
+        if (isConditional() || view.getFields() != null) {
+            stamp = service.getVersionStamp(type, id);
+            if (stamp == null) {
+                return notFound.get();
+            }
+            if (isNotModified(stamp)) {
+                return notModified(stamp);
+            }
+        }
+        T entity = view.getFields() == null ? load.get() : service.getProjectedById(type, id, view.getFields());
+        if (entity == null) {
+            return notFound.get();
+        }
+        if (stamp == null) {
+            stamp = service.versionStampOf(entity);
+        }
+        return validators(view.ok(entity), stamp).build();
+    }
+
+    /**
+     * GET of an entity that had to be loaded anyway, e.g. for an ownership check
+     *
+     * @return 304 or 200 with validators
+     */
+    public Response loaded(ACMEMedicalService service, Object entity, FieldSelection view) {
+        VersionStamp stamp = service.versionStampOf(entity);
+        if (isNotModified(stamp)) {
+            return notModified(stamp);
+        }
+        return validators(view.ok(entity), stamp).build();
+    }
+
+    /**
+     * GET of a collection: <code>page</code> only runs if the client's copy is stale
+     *
+     * @param stamp - {@link ACMEMedicalService#getCollectionStamp(Class)} of the collection, served from the query
+     *        cache until the table changes
+     * @param page - builds the 200 response
+     * @return 304, or the response of <code>page</code> with validators
+     */
+    public Response collection(VersionStamp stamp, Supplier<Response> page) {
+        if (isNotModified(stamp)) {
+            return notModified(stamp);
+        }
+        Response response = page.get();
+        if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+            return response;
+        }
+        return validators(Response.fromResponse(response), stamp).build();
+    }
+
+    public static Response notModified(VersionStamp stamp) {
+        return validators(Response.notModified(), stamp).build();
+    }
+
+    /**
+     * @return <code>builder</code> with ETag, Last-Modified and Cache-Control set
+     */
+    public static Response.ResponseBuilder validators(Response.ResponseBuilder builder, VersionStamp stamp) {
+        return builder.tag(stamp.getEntityTag()).lastModified(stamp.getLastModified()).cacheControl(revalidate());
+    }
+
+    // private, no-cache; a new instance per response since CacheControl is mutable
+    protected static CacheControl revalidate() {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setPrivate(true);
+        cacheControl.setNoCache(true);
+        return cacheControl;
+    }
+
+    // If-None-Match: "*" or a comma separated list of (possibly weak) entity tags
+    protected static boolean matches(String ifNoneMatch, EntityTag current) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")
+                && tag.substring(1, tag.length() - 1).equals(current.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // an unparseable date is ignored, as RFC 9110 requires
+    protected static Date parseDate(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Date.from(ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+        }
+        catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
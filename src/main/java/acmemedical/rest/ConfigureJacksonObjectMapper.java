@@ -9,16 +9,31 @@
  */
 package acmemedical.rest;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.ext.ContextResolver;
 import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.Providers;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import acmemedical.entity.PojoBase;
+import acmemedical.entity.PojoBaseCompositeKey;
+
 @Provider
 public class ConfigureJacksonObjectMapper implements ContextResolver<ObjectMapper> {
+
+    // property filter of every entity: passes everything, except through fieldsWriter
+    public static final String FIELDS_FILTER_ID = "acmemedical.fields";
     
     private final ObjectMapper objectMapper;
 
@@ -38,7 +53,10 @@ public class ConfigureJacksonObjectMapper implements ContextResolver<ObjectMappe
             .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
             .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
             // Lenient parsing of JSON - if a field has a typo, don't fall to pieces
-            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .addMixIn(PojoBase.class, FieldsFilterMixIn.class)
+            .addMixIn(PojoBaseCompositeKey.class, FieldsFilterMixIn.class)
+            .setFilterProvider(new SimpleFilterProvider().addFilter(FIELDS_FILTER_ID, SimpleBeanPropertyFilter.serializeAll()));
         /* 
         HttpErrorAsJSONServlet.setObjectMapper(mapper);
         TypeResolverBuilder<?> typer = new StdTypeResolverBuilder()
@@ -51,4 +69,32 @@ public class ConfigureJacksonObjectMapper implements ContextResolver<ObjectMappe
         */
         return mapper;
     }
-}
\ No newline at end of file
+
+    /**
+     * Writer serializing only the given properties of entities (and <code>id</code>, always), for <code>?fields=</code>
+     *
+     * @param mapper - the application's mapper
+     * @param fields - JSON property names to keep
+     * @return filtered writer
+     */
+    public static ObjectWriter fieldsWriter(ObjectMapper mapper, Set<String> fields) {
+        Set<String> kept = new LinkedHashSet<>(fields);
+        kept.add("id");
+        return mapper.writer(new SimpleFilterProvider().addFilter(FIELDS_FILTER_ID, SimpleBeanPropertyFilter.filterOutAllExcept(kept)));
+    }
+
+    /**
+     * @param providers - JAX-RS providers of the current request
+     * @param type - type to be serialized
+     * @return the application's mapper, as the JSON provider would use it
+     */
+    public static ObjectMapper lookup(Providers providers, Class<?> type) {
+        ContextResolver<ObjectMapper> resolver = providers.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE);
+        ObjectMapper mapper = resolver == null ? null : resolver.getContext(type);
+        return mapper != null ? mapper : new ConfigureJacksonObjectMapper().getContext(type);
+    }
+
+    @JsonFilter(FIELDS_FILTER_ID)
+    private abstract static class FieldsFilterMixIn {
+    }
+}
@@ -0,0 +1,117 @@
+/********************************************************************************************************
+ * File:  FieldSelection.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: The fields query parameter of the GETs: which entity properties a response carries.
+ */
+package acmemedical.rest;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.ext.Providers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import acmemedical.utility.KeysetPage;
+import acmemedical.utility.PaginationUtil;
+
+/**
+ * <code>?fields=firstName,lastName</code> asks for those properties (and <code>id</code>, always) only.
+ * <p>
+ * The resource passes {@link #getFields()} to the ACMEMedicalService read methods, which then project just those
+ * columns instead of loading entities, and builds the response with {@link #ok(Object)} or
+ * {@link #paged(KeysetPage, UriBuilder)}, which serialize through
+ * {@link ConfigureJacksonObjectMapper#fieldsWriter(com.fasterxml.jackson.databind.ObjectMapper, Set)}.
+ * Without the parameter both behave exactly as before.
+ * <p>
+ * Create it on the request thread: it reads the request's JAX-RS providers.
+ */
+public class FieldSelection {
+
+    private final Set<String> fields;
+    private final ObjectWriter writer;
+
+    protected FieldSelection(Set<String> fields, ObjectWriter writer) {
+        this.fields = fields;
+        this.writer = writer;
+    }
+
+    /**
+     * @param providers - JAX-RS providers of the current request
+     * @param type - entity type of the response
+     * @param fields - value of the fields query parameter, comma separated; null or blank for every property
+     * @return the selection
+     */
+    public static FieldSelection of(Providers providers, Class<?> type, String fields) {
+        Set<String> selected = parse(fields);
+        if (selected == null) {
+            return new FieldSelection(null, null);
+        }
+        ObjectWriter writer = ConfigureJacksonObjectMapper.fieldsWriter(ConfigureJacksonObjectMapper.lookup(providers, type), selected)
+            // the container owns the response stream
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return new FieldSelection(selected, writer);
+    }
+
+    /**
+     * @return the field names in request order, null if every property is wanted
+     */
+    public static Set<String> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            if (!field.isBlank()) {
+                selected.add(field.trim());
+            }
+        }
+        return selected.isEmpty() ? null : Collections.unmodifiableSet(selected);
+    }
+
+    /**
+     * @return the selected field names, null for every property
+     */
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * @param body - entity or collection of entities
+     * @return 200 with the body restricted to the selected fields
+     */
+    public Response.ResponseBuilder ok(Object body) {
+        if (writer == null) {
+            return Response.ok(body);
+        }
+        return Response.ok((StreamingOutput) output -> writer.writeValue(output, body));
+    }
+
+    /**
+     * @return {@link PaginationUtil#pagedResponse(KeysetPage, UriBuilder)} with the items restricted to the selected fields
+     */
+    public Response paged(KeysetPage<?> page, UriBuilder requestUri) {
+        return PaginationUtil.pagedResponse(ok(page.getItems()), page, requestUri);
+    }
+
+    /**
+     * @return streaming JSON array of the rows, restricted to the selected fields
+     */
+    public <T> JsonArrayStreamingOutput<T> array(Providers providers, Class<T> type, JsonArrayStreamingOutput.RowSource<T> source) {
+        if (writer == null) {
+            return JsonArrayStreamingOutput.of(providers, type, source);
+        }
+        return new JsonArrayStreamingOutput<>(writer, source);
+    }
+}
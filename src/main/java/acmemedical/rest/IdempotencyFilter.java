@@ -0,0 +1,186 @@
+/********************************************************************************************************
+ * File:  IdempotencyFilter.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Replays the stored response of a POST retried with the same Idempotency-Key header.
+ */
+package acmemedical.rest;
+
+import static acmemedical.utility.MyConstants.IDEMPOTENCY_KEY_HEADER;
+import static acmemedical.utility.MyConstants.IDEMPOTENT_REPLAYED_HEADER;
+import static acmemedical.utility.MyConstants.MAX_IDEMPOTENCY_KEY_LENGTH;
+import static acmemedical.utility.MyConstants.MAX_IDEMPOTENT_REQUEST_BYTES;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import acmemedical.ejb.IdempotencyStore;
+import acmemedical.ejb.IdempotencyStore.Claim;
+import acmemedical.entity.IdempotencyRecord;
+import acmemedical.rest.resource.HttpErrorResponse;
+import acmemedical.utility.ErrorResponseUtil;
+
+/**
+ * For a method annotated {@link Idempotent} and a request with an <code>Idempotency-Key</code> header:
+ * <ul>
+ * <li>the first request claims the key in {@link IdempotencyStore} and runs; a 2xx response is stored as it is
+ *     written, any other outcome releases the key so that the client can retry</li>
+ * <li>a retry with the same key and body gets the stored status and body back, with
+ *     <code>Idempotent-Replayed: true</code>, without running the method</li>
+ * <li>a retry while the first request still runs gets 409, a key reused with another body gets 422</li>
+ * <li>a body over {@value acmemedical.utility.MyConstants#MAX_IDEMPOTENT_REQUEST_BYTES} bytes, buffered to be
+ *     hashed, gets 413</li>
+ * </ul>
+ * The key is scoped to the user, HTTP method and path.  Requests without the header are not affected.
+ */
+@Provider
+@Idempotent
+public class IdempotencyFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    public static final String RECORD_KEY_PROPERTY = "acmemedical.idempotency.key";
+    public static final String STATUS_PROPERTY = "acmemedical.idempotency.status";
+
+    private static final int UNPROCESSABLE_ENTITY = 422;
+
+    @Inject
+    protected IdempotencyStore store;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        String key = requestContext.getHeaderString(IDEMPOTENCY_KEY_HEADER);
+        if (key == null) {
+            return;
+        }
+        if (key.isBlank() || key.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            requestContext.abortWith(ErrorResponseUtil.badRequest(
+                IDEMPOTENCY_KEY_HEADER + " must have 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters"));
+            return;
+        }
+        if (requestContext.getLength() > MAX_IDEMPOTENT_REQUEST_BYTES) {
+            requestContext.abortWith(tooLarge());
+            return;
+        }
+        // without a Content-Length (chunked), one byte past the limit tells a body that is too large
+        byte[] body = requestContext.getEntityStream().readNBytes(MAX_IDEMPOTENT_REQUEST_BYTES + 1);
+        if (body.length > MAX_IDEMPOTENT_REQUEST_BYTES) {
+            requestContext.abortWith(tooLarge());
+            return;
+        }
+        requestContext.setEntityStream(new ByteArrayInputStream(body));
+
+        Claim claim;
+        try {
+            claim = store.claim(scope(requestContext), key, body);
+        }
+        catch (RuntimeException e) {
+            if (!IdempotencyStore.isConcurrentClaim(e)) {
+                // database down, lock timeout...: a server error, not a verdict on the key
+                throw e;
+            }
+            // another node inserted the same new key first
+            LOG.debug("Idempotency-Key {} claimed concurrently: {}", key, e.getMessage());
+            requestContext.abortWith(inProgress());
+            return;
+        }
+        switch (claim.getOutcome()) {
+            case PROCEED -> requestContext.setProperty(RECORD_KEY_PROPERTY, claim.getRecordKey());
+            case REPLAY -> requestContext.abortWith(replay(claim.getResponse()));
+            case IN_PROGRESS -> requestContext.abortWith(inProgress());
+            case MISMATCH -> requestContext.abortWith(Response.status(UNPROCESSABLE_ENTITY)
+                .entity(new HttpErrorResponse(UNPROCESSABLE_ENTITY,
+                    IDEMPOTENCY_KEY_HEADER + " was already used for a different request"))
+                .build());
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object recordKey = requestContext.getProperty(RECORD_KEY_PROPERTY);
+        if (recordKey == null) {
+            return;
+        }
+        int status = responseContext.getStatus();
+        if (status < 200 || status >= 300) {
+            store.release((String) recordKey);
+        }
+        else if (!responseContext.hasEntity()) {
+            store.complete((String) recordKey, status, null, null);
+        }
+        else {
+            // the body is stored by aroundWriteTo, which sees the request properties, as it is written
+            requestContext.setProperty(STATUS_PROPERTY, status);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        Object recordKey = context.getProperty(RECORD_KEY_PROPERTY);
+        Object status = context.getProperty(STATUS_PROPERTY);
+        if (recordKey == null || status == null) {
+            context.proceed();
+            return;
+        }
+        OutputStream out = context.getOutputStream();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        context.setOutputStream(buffer);
+        try {
+            context.proceed();
+        }
+        catch (IOException | RuntimeException e) {
+            store.release((String) recordKey);
+            throw e;
+        }
+        MediaType mediaType = context.getMediaType();
+        store.complete((String) recordKey, (Integer) status, mediaType == null ? null : mediaType.toString(),
+            buffer.toString(StandardCharsets.UTF_8));
+        buffer.writeTo(out);
+    }
+
+    private static String scope(ContainerRequestContext requestContext) {
+        Principal principal = requestContext.getSecurityContext().getUserPrincipal();
+        return (principal == null ? "" : principal.getName()) + ' ' + requestContext.getMethod() + ' '
+            + requestContext.getUriInfo().getPath();
+    }
+
+    private static Response replay(IdempotencyRecord stored) {
+        return Response.status(stored.getStatus())
+            .type(stored.getContentType())
+            .entity(stored.getBody())
+            .header(IDEMPOTENT_REPLAYED_HEADER, Boolean.TRUE.toString())
+            .build();
+    }
+
+    private static Response tooLarge() {
+        return ErrorResponseUtil.payloadTooLarge("A request with an " + IDEMPOTENCY_KEY_HEADER + " has at most "
+            + MAX_IDEMPOTENT_REQUEST_BYTES + " bytes");
+    }
+
+    private static Response inProgress() {
+        return ErrorResponseUtil.conflict("A request with this " + IDEMPOTENCY_KEY_HEADER + " is still in progress");
+    }
+}
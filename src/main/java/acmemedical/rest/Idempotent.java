@@ -0,0 +1,29 @@
+/********************************************************************************************************
+ * File:  Idempotent.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Marks a resource method that honours the Idempotency-Key header.
+ */
+package acmemedical.rest;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import jakarta.ws.rs.NameBinding;
+
+/**
+ * Binds {@link IdempotencyFilter} to a resource method, so that a retry sent with the same
+ * <code>Idempotency-Key</code> gets the first response back instead of running the method again.
+ */
+@NameBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE, ElementType.METHOD })
+public @interface Idempotent {
+}
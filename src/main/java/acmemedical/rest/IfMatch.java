@@ -0,0 +1,63 @@
+/********************************************************************************************************
+ * File:  IfMatch.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Turns the If-Match header of a PUT into the entity versions the update is conditional on.
+ */
+package acmemedical.rest;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import jakarta.ws.rs.core.EntityTag;
+
+import acmemedical.utility.VersionStamp;
+
+/**
+ * A PUT is applied only if the row still has the version the client read: the one in an <code>If-Match</code>
+ * ETag from a GET (see {@link ConditionalGet}), or else the <code>version</code> property of the request body.
+ * The update*IfMatch methods of ACMEMedicalService answer 412 otherwise.
+ * <p>
+ * Only the entity's own version is compared, not the versions of the entities its response embeds: a prescription
+ * can be updated after its medicine changed.  <code>If-Match</code> uses the strong comparison, so weak tags never
+ * match.  A body <code>version</code> of 0 cannot be told from a missing one and is ignored; rows created through
+ * the API start at version 0, so clients should prefer <code>If-Match</code>.
+ */
+public final class IfMatch {
+
+    private IfMatch() {
+    }
+
+    /**
+     * @param ifMatch - value of the If-Match header, may be null
+     * @param key - {@link VersionStamp#key(int...)} of the entity being updated
+     * @param bodyVersion - version property of the request body
+     * @return versions the row may have, null for an unconditional update, empty if no tag can match
+     */
+    public static Set<Long> versions(String ifMatch, String key, long bodyVersion) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return bodyVersion == 0 ? null : Set.of(bodyVersion);
+        }
+        Set<Long> versions = new LinkedHashSet<>();
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag)) {
+                // any current representation
+                return null;
+            }
+            if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+                continue;
+            }
+            Long version = VersionStamp.versionOf(new EntityTag(tag.substring(1, tag.length() - 1)), key);
+            if (version != null) {
+                versions.add(version);
+            }
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,96 @@
+/********************************************************************************************************
+ * File:  JsonArrayStreamingOutput.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Writes rows to the response as a JSON array while they are read from the database.
+ */
+package acmemedical.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.ext.Providers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * A JSON array body produced one element at a time, so that heap use does not depend on the number of rows.
+ * <p>
+ * Elements are serialized with the application's {@link ObjectMapper} (see {@link ConfigureJacksonObjectMapper})
+ * as the {@link RowSource} hands them over.  The row source runs inside {@link #write(OutputStream)}, i.e. after the
+ * resource method returned, so it must open its own transaction (ACMEMedicalService.stream* methods do).
+ *
+ * @param <T> element type
+ */
+public class JsonArrayStreamingOutput<T> implements StreamingOutput {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    /**
+     * Pushes every row to the sink, e.g. <code>sink -&gt; service.streamPatients(sink)</code>
+     */
+    @FunctionalInterface
+    public interface RowSource<T> {
+        void forEach(Consumer<? super T> sink);
+    }
+
+    private final ObjectWriter writer;
+    private final RowSource<T> source;
+
+    public JsonArrayStreamingOutput(ObjectMapper mapper, RowSource<T> source) {
+        this(mapper.writer(), source);
+    }
+
+    public JsonArrayStreamingOutput(ObjectWriter writer, RowSource<T> source) {
+        // flushing is left to the servlet container's buffer instead of once per element
+        this.writer = writer.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.source = source;
+    }
+
+    /**
+     * @param providers - JAX-RS providers of the current request
+     * @param source - rows to write
+     * @return streaming body serialized with the application's ObjectMapper
+     */
+    public static <T> JsonArrayStreamingOutput<T> of(Providers providers, Class<T> type, RowSource<T> source) {
+        return new JsonArrayStreamingOutput<>(ConfigureJacksonObjectMapper.lookup(providers, type), source);
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        int[] count = { 0 };
+        try (JsonGenerator generator = writer.getFactory().createGenerator(output)) {
+            generator.writeStartArray();
+            source.forEach(row -> {
+                try {
+                    writer.writeValue(generator, row);
+                    count[0]++;
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        }
+        catch (UncheckedIOException e) {
+            // the status line is already sent, all we can do is cut the body short
+            LOG.warn("streaming aborted after {} rows: {}", count[0], e.getMessage());
+            throw e.getCause();
+        }
+        LOG.debug("streamed {} rows", count[0]);
+    }
+}
@@ -0,0 +1,173 @@
+/********************************************************************************************************
+ * File:  PrometheusTextFormat.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Writes a MicroProfile MetricRegistry in the Prometheus text exposition format.
+ */
+package acmemedical.rest;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.Metric;
+import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Snapshot;
+import org.eclipse.microprofile.metrics.Timer;
+
+/**
+ * Counters and gauges map one to one; histograms and timers are written as summaries (quantiles, _count, _sum)
+ * plus a <code>_max</code> gauge, or as Prometheus histograms (cumulative <code>_bucket</code>s instead of quantiles)
+ * when histogram buckets are configured for them.
+ * Timers are converted to seconds, as Prometheus expects.  Names are the MicroProfile names with every
+ * character outside <code>[a-zA-Z0-9_]</code> replaced by <code>_</code>.
+ */
+public final class PrometheusTextFormat {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private PrometheusTextFormat() {
+    }
+
+    public static void write(MetricRegistry registry, Writer out) throws IOException {
+        // group by name: one TYPE line per metric family, then every tag combination
+        SortedMap<String, SortedMap<MetricID, Metric>> families = new TreeMap<>();
+        for (Map.Entry<MetricID, Metric> entry : registry.getMetrics().entrySet()) {
+            families.computeIfAbsent(entry.getKey().getName(), k -> new TreeMap<>()).put(entry.getKey(), entry.getValue());
+        }
+        for (SortedMap<MetricID, Metric> family : families.values()) {
+            writeFamily(family, out);
+        }
+    }
+
+    private static void writeFamily(SortedMap<MetricID, Metric> family, Writer out) throws IOException {
+        Metric first = family.values().iterator().next();
+        String name = sanitize(family.firstKey().getName());
+        boolean isTimer = first instanceof Timer;
+        if (isTimer) {
+            name += "_seconds";
+        }
+        double divisor = isTimer ? NANOS_PER_SECOND : 1;
+        boolean bucketed = isBucketed(first);
+        out.append("# TYPE ").append(name).append(' ').append(bucketed ? "histogram" : typeOf(first)).append('\n');
+        for (Map.Entry<MetricID, Metric> entry : family.entrySet()) {
+            Map<String, String> tags = entry.getKey().getTags();
+            Metric metric = entry.getValue();
+            if (metric instanceof Counter counter) {
+                sample(out, name, tags, null, null, counter.getCount());
+            } else if (metric instanceof Gauge<?> gauge) {
+                Object value = gauge.getValue();
+                if (value instanceof Number number) {
+                    sample(out, name, tags, null, null, number.doubleValue());
+                }
+            } else if (metric instanceof Timer timer) {
+                distribution(out, name, tags, timer.getSnapshot(), timer.getCount(), timer.getElapsedTime().toNanos() / divisor,
+                    divisor, bucketed);
+            } else if (metric instanceof Histogram histogram) {
+                distribution(out, name, tags, histogram.getSnapshot(), histogram.getCount(), histogram.getSum(), divisor, bucketed);
+            }
+        }
+        if (first instanceof Timer || first instanceof Histogram) {
+            // summaries and histograms have no max: it is its own gauge family, written after their samples
+            out.append("# TYPE ").append(name).append("_max gauge\n");
+            for (Map.Entry<MetricID, Metric> entry : family.entrySet()) {
+                sample(out, name + "_max", entry.getKey().getTags(), null, null, snapshotOf(entry.getValue()).getMax() / divisor);
+            }
+        }
+    }
+
+    private static void distribution(Writer out, String name, Map<String, String> tags, Snapshot snapshot,
+        long count, double sum, double divisor, boolean bucketed) throws IOException {
+        if (bucketed) {
+            for (Snapshot.HistogramBucket bucket : snapshot.bucketValues()) {
+                sample(out, name + "_bucket", tags, "le", format(bucket.getBucket() / divisor), bucket.getCount());
+            }
+            sample(out, name + "_bucket", tags, "le", "+Inf", count);
+        } else {
+            for (Snapshot.PercentileValue percentile : snapshot.percentileValues()) {
+                sample(out, name, tags, "quantile", String.valueOf(percentile.getPercentile()), percentile.getValue() / divisor);
+            }
+        }
+        sample(out, name + "_count", tags, null, null, count);
+        sample(out, name + "_sum", tags, null, null, sum);
+    }
+
+    /**
+     * @param labelName - name of a label added after the tags (quantile, le), null for none
+     */
+    private static void sample(Writer out, String name, Map<String, String> tags, String labelName, String labelValue,
+        double value) throws IOException {
+        out.append(name);
+        if (!tags.isEmpty() || labelName != null) {
+            out.append('{');
+            boolean firstLabel = true;
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                if (!firstLabel) {
+                    out.append(',');
+                }
+                label(out, sanitize(tag.getKey()), tag.getValue());
+                firstLabel = false;
+            }
+            if (labelName != null) {
+                if (!firstLabel) {
+                    out.append(',');
+                }
+                label(out, labelName, labelValue);
+            }
+            out.append('}');
+        }
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    private static void label(Writer out, String key, String value) throws IOException {
+        out.append(key).append("=\"")
+            .append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+            .append('"');
+    }
+
+    private static Snapshot snapshotOf(Metric metric) {
+        return metric instanceof Timer timer ? timer.getSnapshot() : ((Histogram) metric).getSnapshot();
+    }
+
+    private static boolean isBucketed(Metric metric) {
+        return (metric instanceof Timer || metric instanceof Histogram) && snapshotOf(metric).bucketValues().length > 0;
+    }
+
+    private static String typeOf(Metric metric) {
+        if (metric instanceof Counter) {
+            return "counter";
+        }
+        if (metric instanceof Timer || metric instanceof Histogram) {
+            return "summary";
+        }
+        return "gauge";
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    static String sanitize(String name) {
+        return name.replaceAll("[^a-zA-Z0-9_]", "_");
+    }
+}
@@ -0,0 +1,113 @@
+/********************************************************************************************************
+ * File:  RequestMetricsFilter.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Request rate, latency and error metrics for every REST call.
+ */
+package acmemedical.rest;
+
+import static acmemedical.utility.MyConstants.APPLICATION_API_VERSION;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.inject.Inject;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.Timer;
+
+/**
+ * Times every request under the REST application path and records it in the timer
+ * {@value #REQUEST_TIMER_NAME} (count = request rate, snapshot = latency distribution); responses with a
+ * status of 400 or more also increment {@value #ERROR_COUNTER_NAME}.  Both are tagged with
+ * <code>resource</code> and <code>method</code> (the Java resource class and method, set by
+ * {@link ResourceMethodTagFilter}) and <code>status</code>.
+ * <p>
+ * This is a servlet filter rather than a JAX-RS one so that the final status is seen even when an exception
+ * escapes JAX-RS and the container turns it into a 500.
+ */
+@WebFilter(asyncSupported = true, urlPatterns = APPLICATION_API_VERSION + "/*")
+public class RequestMetricsFilter implements Filter {
+
+    public static final String REQUEST_TIMER_NAME = "acmemedical.rest.requests";
+    public static final String ERROR_COUNTER_NAME = "acmemedical.rest.errors";
+    // requests that did not match any resource method (404, 405, authentication failures...)
+    public static final String UNMATCHED = "none";
+
+    @Inject
+    protected MetricRegistry metricRegistry;
+
+    // the registry lookup builds a MetricID per call; resource x method x status is small and fixed
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> errorCounters = new ConcurrentHashMap<>();
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        }
+        finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(request, response, start);
+                    }
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                record(request, response, start);
+            }
+        }
+    }
+
+    protected void record(ServletRequest request, ServletResponse response, long start) {
+        long elapsed = System.nanoTime() - start;
+        String resource = attribute(request, ResourceMethodTagFilter.RESOURCE_ATTRIBUTE);
+        String method = attribute(request, ResourceMethodTagFilter.METHOD_ATTRIBUTE);
+        int status = ((HttpServletResponse) response).getStatus();
+        String key = resource + '#' + method + '#' + status;
+        timers.computeIfAbsent(key, k -> metricRegistry.timer(REQUEST_TIMER_NAME, tags(resource, method, status)))
+            .update(Duration.ofNanos(elapsed));
+        if (status >= HttpServletResponse.SC_BAD_REQUEST) {
+            errorCounters.computeIfAbsent(key, k -> metricRegistry.counter(ERROR_COUNTER_NAME, tags(resource, method, status)))
+                .inc();
+        }
+    }
+
+    private static String attribute(ServletRequest request, String name) {
+        Object value = request.getAttribute(name);
+        return value == null ? UNMATCHED : value.toString();
+    }
+
+    private static Tag[] tags(String resource, String method, int status) {
+        return new Tag[] { new Tag("resource", resource), new Tag("method", method), new Tag("status", String.valueOf(status)) };
+    }
+}
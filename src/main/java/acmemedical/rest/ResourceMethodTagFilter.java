@@ -0,0 +1,40 @@
+/********************************************************************************************************
+ * File:  ResourceMethodTagFilter.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Records which resource method a request was matched to, for RequestMetricsFilter.
+ */
+package acmemedical.rest;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * JAX-RS knows the matched resource method, the servlet filter that times the request does not.
+ * Request properties are servlet request attributes, so this hands the names over.
+ */
+@Provider
+public class ResourceMethodTagFilter implements ContainerRequestFilter {
+
+    public static final String RESOURCE_ATTRIBUTE = "acmemedical.metrics.resource";
+    public static final String METHOD_ATTRIBUTE = "acmemedical.metrics.method";
+
+    @Context
+    protected ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (resourceInfo.getResourceMethod() != null) {
+            requestContext.setProperty(RESOURCE_ATTRIBUTE, resourceInfo.getResourceClass().getSimpleName());
+            requestContext.setProperty(METHOD_ATTRIBUTE, resourceInfo.getResourceMethod().getName());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/********************************************************************************************************
+ * File:  SqlStatementTimingFilter.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Counts the JDBC statements of each request and reports them in Server-Timing and as metrics.
+ */
+package acmemedical.rest;
+
+import static acmemedical.utility.MyConstants.DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS;
+import static acmemedical.utility.MyConstants.DEFAULT_SQL_STATEMENTS_WARN_THRESHOLD;
+import static acmemedical.utility.MyConstants.SLOW_QUERY_THRESHOLD_MILLIS_PROPNAME;
+import static acmemedical.utility.MyConstants.SQL_SAMPLE_RATE_PROPNAME;
+import static acmemedical.utility.MyConstants.DEFAULT_SQL_SAMPLE_RATE;
+import static acmemedical.utility.MyConstants.SQL_STATEMENTS_WARN_THRESHOLD_PROPNAME;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.ext.Provider;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.Timer;
+
+import acmemedical.ejb.SqlStatementListener;
+import acmemedical.ejb.SqlStatementStatistics;
+
+/**
+ * Binds a fresh {@link SqlStatementStatistics} to the thread that runs the resource method and, once the response
+ * is ready, reports what was counted:
+ * <ul>
+ * <li>a <code>Server-Timing: db;dur=&lt;ms&gt;;desc="&lt;n&gt; statements"</code> response header</li>
+ * <li>the histogram {@value #STATEMENTS_HISTOGRAM_NAME} and the timer {@value #DB_TIMER_NAME},
+ *     tagged with <code>resource</code> and <code>method</code></li>
+ * <li>a warning when a request ran more than {@value acmemedical.utility.MyConstants#SQL_STATEMENTS_WARN_THRESHOLD_PROPNAME}
+ *     statements, the usual sign of an N+1 loop</li>
+ * </ul>
+ */
+@Provider
+public class SqlStatementTimingFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    public static final String STATISTICS_PROPERTY = "acmemedical.sql.statistics";
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+    public static final String STATEMENTS_HISTOGRAM_NAME = "acmemedical.rest.sql.statements";
+    public static final String DB_TIMER_NAME = "acmemedical.rest.sql.time";
+
+    @Inject
+    @ConfigProperty(name = SLOW_QUERY_THRESHOLD_MILLIS_PROPNAME, defaultValue = DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS)
+    protected long slowQueryThresholdMillis;
+
+    @Inject
+    @ConfigProperty(name = SQL_SAMPLE_RATE_PROPNAME, defaultValue = DEFAULT_SQL_SAMPLE_RATE)
+    protected double sqlSampleRate;
+
+    @Inject
+    @ConfigProperty(name = SQL_STATEMENTS_WARN_THRESHOLD_PROPNAME, defaultValue = DEFAULT_SQL_STATEMENTS_WARN_THRESHOLD)
+    protected long statementsWarnThreshold;
+
+    @Inject
+    protected MetricRegistry metricRegistry;
+
+    @Context
+    protected ResourceInfo resourceInfo;
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        SqlStatementListener.setSlowQueryThresholdMillis(slowQueryThresholdMillis);
+        SqlStatementListener.setSampleRate(sqlSampleRate);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (resourceInfo.getResourceMethod() == null) {
+            return;
+        }
+        SqlStatementStatistics statistics = new SqlStatementStatistics(
+            resourceInfo.getResourceClass().getSimpleName() + "." + resourceInfo.getResourceMethod().getName());
+        requestContext.setProperty(STATISTICS_PROPERTY, statistics);
+        SqlStatementStatistics.bind(statistics);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object property = requestContext.getProperty(STATISTICS_PROPERTY);
+        if (!(property instanceof SqlStatementStatistics statistics)) {
+            return;
+        }
+        if (SqlStatementStatistics.current() == statistics) {
+            SqlStatementStatistics.bind(null);
+        }
+        long statements = statistics.getStatements();
+        long nanos = statistics.getNanos();
+        responseContext.getHeaders().add(SERVER_TIMING_HEADER,
+            String.format(Locale.ROOT, "db;dur=%.3f;desc=\"%d statements\"", nanos / 1_000_000.0, statements));
+
+        // set by ResourceMethodTagFilter; ResourceInfo is not used here, the response of an async method is
+        // filtered on the thread that completed it
+        String resource = String.valueOf(requestContext.getProperty(ResourceMethodTagFilter.RESOURCE_ATTRIBUTE));
+        String method = String.valueOf(requestContext.getProperty(ResourceMethodTagFilter.METHOD_ATTRIBUTE));
+        String key = resource + '#' + method;
+        histograms.computeIfAbsent(key, k -> metricRegistry.histogram(STATEMENTS_HISTOGRAM_NAME, tags(resource, method)))
+            .update(statements);
+        timers.computeIfAbsent(key, k -> metricRegistry.timer(DB_TIMER_NAME, tags(resource, method)))
+            .update(Duration.ofNanos(nanos));
+        if (statements > statementsWarnThreshold) {
+            LOG.warn("{} ran {} SQL statements ({} ms)", statistics.getLabel(), statements, nanos / 1_000_000);
+        }
+    }
+
+    private static Tag[] tags(String resource, String method) {
+        return new Tag[] { new Tag("resource", resource), new Tag("method", method) };
+    }
+}
@@ -0,0 +1,46 @@
+/********************************************************************************************************
+ * File:  BearerTokenResponse.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Body returned by CredentialResource when a bearer token is issued.
+ */
+package acmemedical.rest.resource;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class BearerTokenResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String token;
+    private final String tokenType;
+    private final long expiresIn;
+
+    public BearerTokenResponse(String token, String tokenType, long expiresIn) {
+        this.token = token;
+        this.tokenType = tokenType;
+        this.expiresIn = expiresIn;
+    }
+
+    @JsonProperty("token")
+    public String getToken() {
+        return token;
+    }
+
+    @JsonProperty("token-type")
+    public String getTokenType() {
+        return tokenType;
+    }
+
+    @JsonProperty("expires-in")
+    public long getExpiresIn() {
+        return expiresIn;
+    }
+
+}
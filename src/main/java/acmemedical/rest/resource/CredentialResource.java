@@ -0,0 +1,86 @@
+/********************************************************************************************************
+ * File:  CredentialResource.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: REST API resource class issuing signed bearer tokens to Basic-authenticated callers.
+ */
+package acmemedical.rest.resource;
+
+import static acmemedical.utility.MyConstants.ADMIN_ROLE;
+import static acmemedical.utility.MyConstants.CREDENTIAL_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.USER_ROLE;
+import static jakarta.servlet.http.HttpServletRequest.BASIC_AUTH;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.security.enterprise.SecurityContext;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Response.Status;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.glassfish.soteria.WrappingCallerPrincipal;
+
+import acmemedical.entity.SecurityUser;
+import acmemedical.security.BearerTokenService;
+
+/**
+ * Opt-in token session: <code>POST /api/v1/credential</code> with Basic credentials returns a short-lived
+ * bearer token; later requests send <code>Authorization: Bearer &lt;token&gt;</code> instead of the password.
+ */
+@Path(CREDENTIAL_RESOURCE_NAME)
+@Consumes(MediaType.APPLICATION_JSON)
+@Produces(MediaType.APPLICATION_JSON)
+public class CredentialResource {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    @Inject
+    protected SecurityContext sc;
+
+    @Inject
+    protected BearerTokenService tokenService;
+
+    @Context
+    protected HttpHeaders headers;
+
+    @POST
+    @RolesAllowed({ADMIN_ROLE, USER_ROLE})
+    public Response login() {
+        // a token may only be obtained with the real credentials, otherwise a stolen token could be renewed forever
+        String authHeader = headers.getHeaderString(HttpHeaders.AUTHORIZATION);
+        if (authHeader == null || !authHeader.regionMatches(true, 0, BASIC_AUTH, 0, BASIC_AUTH.length())) {
+            return Response.status(Status.BAD_REQUEST)
+                .entity(new HttpErrorResponse(Status.BAD_REQUEST.getStatusCode(), "A token can only be issued for Basic credentials"))
+                .build();
+        }
+        WrappingCallerPrincipal wCallerPrincipal = (WrappingCallerPrincipal) sc.getCallerPrincipal();
+        SecurityUser sUser = (SecurityUser) wCallerPrincipal.getWrapped();
+        Set<String> roles = new HashSet<>();
+        for (String role : new String[] { ADMIN_ROLE, USER_ROLE }) {
+            if (sc.isCallerInRole(role)) {
+                roles.add(role);
+            }
+        }
+        LOG.debug("issuing bearer token for {}", sUser.getUsername());
+        String token = tokenService.issue(sUser, roles);
+        return Response.ok(new BearerTokenResponse(token, BearerTokenService.TOKEN_TYPE, tokenService.getTtlSeconds()))
+            .header(HttpHeaders.CACHE_CONTROL, "no-store")
+            .build();
+    }
+}
@@ -12,8 +12,16 @@
 
 package acmemedical.rest.resource;
 
+import java.util.concurrent.CompletionStage;
+
 import acmemedical.utility.EntityValidationUtil;
 import acmemedical.ejb.ACMEMedicalService;
+import acmemedical.rest.AsyncResourceExecutor;
+import acmemedical.rest.ConditionalGet;
+import acmemedical.rest.Idempotent;
+import acmemedical.rest.FieldSelection;
+import acmemedical.utility.KeysetPage;
+import acmemedical.utility.PaginationUtil;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
@@ -29,13 +37,21 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.Providers;
 import jakarta.security.enterprise.SecurityContext;
 
 import static acmemedical.utility.MyConstants.ADMIN_ROLE;
 import static acmemedical.utility.MyConstants.USER_ROLE;
 import static acmemedical.utility.MyConstants.MEDICAL_CERTIFICATE_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_PARAM;
+import static acmemedical.utility.MyConstants.FIELDS_PARAM;
 
-import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -53,27 +69,48 @@ public class MedicalCertificateResource {
 
     @EJB
     protected ACMEMedicalService service;
+
+    @Inject
+    protected AsyncResourceExecutor async;
     
     @Inject
     protected SecurityContext sc;
 
     private static final Logger LOG = LogManager.getLogger();
     
+    @Context
+    protected UriInfo uriInfo;
+
+    @Context
+    protected Providers providers;
+
+    @Context
+    protected HttpHeaders headers;
+
     @GET
     @RolesAllowed({ADMIN_ROLE})
-    public Response getMedicalCertificates() {
+    public CompletionStage<Response> getMedicalCertificates(@QueryParam(PAGE_AFTER_PARAM) String after, @QueryParam(PAGE_LIMIT_PARAM) Integer limit,
+                                                   @QueryParam(FIELDS_PARAM) String fields) {
         LOG.debug("Retrieving all MedicalCertificate...");
-        List<MedicalCertificate> medicalCertificates = service.getAllMedicalCertificates();
-        LOG.debug("MedicalCertificate found = {}", medicalCertificates);
-        Response response = Response.ok(medicalCertificates).build();
-        return response;
+        int afterId = PaginationUtil.parseAfterId(after);
+        int pageLimit = PaginationUtil.parseLimit(limit);
+        UriBuilder requestUri = uriInfo.getRequestUriBuilder();
+        FieldSelection view = FieldSelection.of(providers, MedicalCertificate.class, fields);
+        ConditionalGet conditional = ConditionalGet.of(headers);
+        return async.submit(MEDICAL_CERTIFICATE_RESOURCE_NAME, () -> conditional.collection(service.getCollectionStamp(MedicalCertificate.class), () -> {
+            KeysetPage<MedicalCertificate> page = service.getPage(MedicalCertificate.class, afterId, pageLimit, view.getFields());
+            LOG.debug("MedicalCertificate found = {}", page.getItems().size());
+            return view.paged(page, requestUri);
+        }));
     }
 
     @GET
     @Path("/{id}")
     @RolesAllowed({ADMIN_ROLE, USER_ROLE})
-    public Response getMedicalCertificateById(@PathParam("id") int id) {
+    public CompletionStage<Response> getMedicalCertificateById(@PathParam("id") int id, @QueryParam(FIELDS_PARAM) String fields) {
         LOG.debug("Fetching MedicalCertificate by ID: {}", id);
+        FieldSelection view = FieldSelection.of(providers, MedicalCertificate.class, fields);
+        ConditionalGet conditional = ConditionalGet.of(headers);
         
         if (sc.isCallerInRole(USER_ROLE)) {
             // USER_ROLE can only access related certificates
@@ -84,29 +121,33 @@ public class MedicalCertificateResource {
             if (userPhysician == null) {
                 throw new ForbiddenException("User has no associated physician");
             }
+            int userPhysicianId = userPhysician.getId();
             
-            MedicalCertificate result = service.getMedicalCertificateById(id);
-            if (result == null) {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity(new HttpErrorResponse(404, "MedicalCertificate not found"))
-                        .build();
-            }
-            
-            if (!result.getOwner().equals(userPhysician)) {
-                throw new ForbiddenException("User trying to access certificate not owned by them");
-            }
-            
-            return Response.ok(result).build();
+            return async.submit(MEDICAL_CERTIFICATE_RESOURCE_NAME, () -> {
+                MedicalCertificate result = service.getMedicalCertificateById(id);
+                if (result == null) {
+                    return Response.status(Response.Status.NOT_FOUND)
+                            .entity(new HttpErrorResponse(404, "MedicalCertificate not found"))
+                            .build();
+                }
+                
+                if (result.getOwner() == null || result.getOwner().getId() != userPhysicianId) {
+                    throw new ForbiddenException("User trying to access certificate not owned by them");
+                }
+                
+                // the owner check needs the whole entity, fields only trims the response
+                return conditional.loaded(service, result, view);
+            });
         } else {
             // ADMIN_ROLE can access all certificates
-            MedicalCertificate result = service.getMedicalCertificateById(id);
-            Response err = EntityValidationUtil.validateEntityExists("MedicalCertificate", id, result != null);
-            if (err != null) return err;
-            return Response.ok(result).build();
+            return async.submit(MEDICAL_CERTIFICATE_RESOURCE_NAME, () -> conditional.entity(service, MedicalCertificate.class, id, view,
+                () -> service.getMedicalCertificateById(id),
+                () -> EntityValidationUtil.validateEntityExists("MedicalCertificate", id, false)));
         }
     }
 
     @POST
+    @Idempotent
     @RolesAllowed({ADMIN_ROLE})
     public Response addMedicalCertificate(MedicalCertificate newMc) {
         return service.persistMedicalCertificate(newMc);
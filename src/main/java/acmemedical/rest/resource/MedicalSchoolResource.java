@@ -10,10 +10,17 @@
  */
 package acmemedical.rest.resource;
 
-import java.util.List;
+
+import java.util.concurrent.CompletionStage;
 
 import acmemedical.utility.EntityValidationUtil;
 import acmemedical.ejb.ACMEMedicalService;
+import acmemedical.rest.AsyncResourceExecutor;
+import acmemedical.rest.ConditionalGet;
+import acmemedical.rest.Idempotent;
+import acmemedical.rest.FieldSelection;
+import acmemedical.utility.KeysetPage;
+import acmemedical.utility.PaginationUtil;
 
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ejb.EJB;
@@ -31,10 +38,19 @@ import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.Providers;
 import static acmemedical.utility.MyConstants.ADMIN_ROLE;
 import static acmemedical.utility.MyConstants.USER_ROLE;
 import jakarta.ws.rs.core.Response.Status;
 import static acmemedical.utility.MyConstants.MEDICAL_SCHOOL_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_PARAM;
+import static acmemedical.utility.MyConstants.FIELDS_PARAM;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -52,27 +68,48 @@ public class MedicalSchoolResource {
     @EJB
     protected ACMEMedicalService service;
 
+    @Inject
+    protected AsyncResourceExecutor async;
+
     @Inject
     protected SecurityContext sc;
     
+    @Context
+    protected UriInfo uriInfo;
+
+    @Context
+    protected Providers providers;
+
+    @Context
+    protected HttpHeaders headers;
+
     @GET
-    public Response getMedicalSchools() {
+    public CompletionStage<Response> getMedicalSchools(@QueryParam(PAGE_AFTER_PARAM) String after, @QueryParam(PAGE_LIMIT_PARAM) Integer limit,
+                                                   @QueryParam(FIELDS_PARAM) String fields) {
         LOG.debug("Retrieving all medical schools...");
-        List<MedicalSchool> medicalSchools = service.getAllMedicalSchools();
-        LOG.debug("Medical schools found = {}", medicalSchools);
-        return Response.ok(medicalSchools).build();
+        int afterId = PaginationUtil.parseAfterId(after);
+        int pageLimit = PaginationUtil.parseLimit(limit);
+        UriBuilder requestUri = uriInfo.getRequestUriBuilder();
+        FieldSelection view = FieldSelection.of(providers, MedicalSchool.class, fields);
+        ConditionalGet conditional = ConditionalGet.of(headers);
+        return async.submit(MEDICAL_SCHOOL_RESOURCE_NAME, () -> conditional.collection(service.getCollectionStamp(MedicalSchool.class), () -> {
+            KeysetPage<MedicalSchool> page = service.getPage(MedicalSchool.class, afterId, pageLimit, view.getFields());
+            LOG.debug("Medical schools found = {}", page.getItems().size());
+            return view.paged(page, requestUri);
+        }));
     }
     
     @GET
     // TODO MSR01 - Specify the roles allowed for this method
     @Path("/{medicalSchoolId}")
     @RolesAllowed({ADMIN_ROLE, USER_ROLE})
-    public Response getMedicalSchoolById(@PathParam("medicalSchoolId") int medicalSchoolId) {
+    public CompletionStage<Response> getMedicalSchoolById(@PathParam("medicalSchoolId") int medicalSchoolId, @QueryParam(FIELDS_PARAM) String fields) {
         LOG.debug("Retrieving medical school with id = {}", medicalSchoolId);
-        MedicalSchool result = service.getMedicalSchoolById(medicalSchoolId);
-        Response err = EntityValidationUtil.validateEntityExists("MedicalSchool", medicalSchoolId, result != null);
-        if (err != null) return err;
-        return Response.ok(result).build();
+        FieldSelection view = FieldSelection.of(providers, MedicalSchool.class, fields);
+        ConditionalGet conditional = ConditionalGet.of(headers);
+        return async.submit(MEDICAL_SCHOOL_RESOURCE_NAME, () -> conditional.entity(service, MedicalSchool.class, medicalSchoolId, view,
+            () -> service.getMedicalSchoolById(medicalSchoolId),
+            () -> EntityValidationUtil.validateEntityExists("MedicalSchool", medicalSchoolId, false)));
     }
 
     @DELETE
@@ -92,6 +129,7 @@ public class MedicalSchoolResource {
     
     // Please try to understand and test the below methods:
     @POST
+    @Idempotent
     @RolesAllowed({ADMIN_ROLE})
     public Response addMedicalSchool(MedicalSchool newMedicalSchool) {
         LOG.debug("Adding a new medical school = {}", newMedicalSchool);
@@ -12,10 +12,18 @@
 
 package acmemedical.rest.resource;
 
+import java.util.concurrent.CompletionStage;
+
 import acmemedical.ejb.ACMEMedicalService;
+import acmemedical.rest.AsyncResourceExecutor;
+import acmemedical.rest.ConditionalGet;
+import acmemedical.rest.FieldSelection;
+import acmemedical.utility.KeysetPage;
+import acmemedical.utility.PaginationUtil;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
@@ -26,12 +34,20 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.Providers;
 
 import static acmemedical.utility.MyConstants.ADMIN_ROLE;
 import static acmemedical.utility.MyConstants.USER_ROLE;
 import static acmemedical.utility.MyConstants.MEDICAL_TRAINING_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_PARAM;
+import static acmemedical.utility.MyConstants.FIELDS_PARAM;
 
-import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -48,29 +64,48 @@ public class MedicalTrainingResource {
     @EJB
     protected ACMEMedicalService service;
 
+    @Inject
+    protected AsyncResourceExecutor async;
+
     private static final Logger LOG = LogManager.getLogger();
     
+    @Context
+    protected UriInfo uriInfo;
+
+    @Context
+    protected Providers providers;
+
+    @Context
+    protected HttpHeaders headers;
+
     @GET
-    public Response getMedicalTrainings() {
+    public CompletionStage<Response> getMedicalTrainings(@QueryParam(PAGE_AFTER_PARAM) String after, @QueryParam(PAGE_LIMIT_PARAM) Integer limit,
+                                                   @QueryParam(FIELDS_PARAM) String fields) {
         LOG.debug("Retrieving all MedicalTraining...");
-        List<MedicalTraining> medicalTrainings = service.getAllMedicalTrainings();
-        LOG.debug("MedicalTraining found = {}", medicalTrainings);
-        Response response = Response.ok(medicalTrainings).build();
-        return response;
+        int afterId = PaginationUtil.parseAfterId(after);
+        int pageLimit = PaginationUtil.parseLimit(limit);
+        UriBuilder requestUri = uriInfo.getRequestUriBuilder();
+        FieldSelection view = FieldSelection.of(providers, MedicalTraining.class, fields);
+        ConditionalGet conditional = ConditionalGet.of(headers);
+        return async.submit(MEDICAL_TRAINING_RESOURCE_NAME, () -> conditional.collection(service.getCollectionStamp(MedicalTraining.class), () -> {
+            KeysetPage<MedicalTraining> page = service.getPage(MedicalTraining.class, afterId, pageLimit, view.getFields());
+            LOG.debug("MedicalTraining found = {}", page.getItems().size());
+            return view.paged(page, requestUri);
+        }));
     }
 
     @GET
     @Path("/{id}")
     @RolesAllowed({ADMIN_ROLE, USER_ROLE})
-    public Response getMedicalTrainingById(@PathParam("id") int id) {
+    public CompletionStage<Response> getMedicalTrainingById(@PathParam("id") int id, @QueryParam(FIELDS_PARAM) String fields) {
         LOG.debug("Fetching MedicalTraining by ID: {}", id);
-        MedicalTraining mt = service.getMedicalTrainingById(id);
-        if (mt == null) {
-            return Response.status(Response.Status.NOT_FOUND)
-                    .entity(new HttpErrorResponse(404, "MedicalTraining not found"))
-                    .build();
-        }
-        return Response.ok(mt).build();
+        FieldSelection view = FieldSelection.of(providers, MedicalTraining.class, fields);
+        ConditionalGet conditional = ConditionalGet.of(headers);
+        return async.submit(MEDICAL_TRAINING_RESOURCE_NAME, () -> conditional.entity(service, MedicalTraining.class, id, view,
+            () -> service.getMedicalTrainingById(id),
+            () -> Response.status(Response.Status.NOT_FOUND)
+                        .entity(new HttpErrorResponse(404, "MedicalTraining not found"))
+                        .build()));
     }
 
     @POST
@@ -12,11 +12,26 @@
 
 package acmemedical.rest.resource;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 import acmemedical.utility.EntityValidationUtil;
 import acmemedical.ejb.ACMEMedicalService;
+import acmemedical.rest.AsyncResourceExecutor;
+import acmemedical.rest.ConditionalGet;
+import acmemedical.utility.VersionStamp;
+import acmemedical.rest.IfMatch;
+import acmemedical.rest.FieldSelection;
+import acmemedical.utility.ErrorResponseUtil;
+import acmemedical.utility.BulkDeleteResult;
+import acmemedical.utility.BatchItemResult;
+import acmemedical.utility.KeysetPage;
+import acmemedical.utility.PaginationUtil;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
@@ -27,12 +42,25 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.Providers;
 
 import static acmemedical.utility.MyConstants.ADMIN_ROLE;
 import static acmemedical.utility.MyConstants.USER_ROLE;
 import static acmemedical.utility.MyConstants.MEDICINE_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_PARAM;
+import static acmemedical.utility.MyConstants.FIELDS_PARAM;
+import static acmemedical.utility.MyConstants.MEDICINE_SEARCH_PATH;
+import static acmemedical.utility.MyConstants.SEARCH_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.BATCH_PATH;
+import static acmemedical.utility.MyConstants.MAX_BATCH_ITEMS;
 
-import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -49,27 +77,67 @@ public class MedicineResource {
     @EJB
     protected ACMEMedicalService service;
 
+    @Inject
+    protected AsyncResourceExecutor async;
+
+    @Context
+    protected UriInfo uriInfo;
+
+    @Context
+    protected Providers providers;
+
+    @Context
+    protected HttpHeaders headers;
+
     @GET
     @RolesAllowed({ADMIN_ROLE})
-    public Response getMedicines() {
+    public CompletionStage<Response> getMedicines(@QueryParam(PAGE_AFTER_PARAM) String after, @QueryParam(PAGE_LIMIT_PARAM) Integer limit,
+                                                   @QueryParam(FIELDS_PARAM) String fields) {
         LOG.debug("Retrieving all Medicine...");
-        List<Medicine> medicines = service.getAllMedicines();
-        LOG.debug("Medicine found = {}", medicines);
-        Response response = Response.ok(medicines).build();
-        return response;
+        int afterId = PaginationUtil.parseAfterId(after);
+        int pageLimit = PaginationUtil.parseLimit(limit);
+        UriBuilder requestUri = uriInfo.getRequestUriBuilder();
+        FieldSelection view = FieldSelection.of(providers, Medicine.class, fields);
+        ConditionalGet conditional = ConditionalGet.of(headers);
+        return async.submit(MEDICINE_RESOURCE_NAME, () -> conditional.collection(service.getCollectionStamp(Medicine.class), () -> {
+            KeysetPage<Medicine> page = service.getPage(Medicine.class, afterId, pageLimit, view.getFields());
+            LOG.debug("Medicine found = {}", page.getItems().size());
+            return view.paged(page, requestUri);
+        }));
+    }
+
+    @GET
+    @Path(MEDICINE_SEARCH_PATH)
+    @RolesAllowed({ADMIN_ROLE, USER_ROLE})
+    public CompletionStage<Response> searchMedicines(@QueryParam(SEARCH_QUERY_PARAM) String query, @QueryParam(PAGE_LIMIT_PARAM) Integer limit,
+                                                     @QueryParam(FIELDS_PARAM) String fields) {
+        String text = PaginationUtil.blankToNull(query);
+        if (text == null) {
+            return CompletableFuture.completedFuture(ErrorResponseUtil.badRequest("Query parameter " + SEARCH_QUERY_PARAM + " is required"));
+        }
+        int pageLimit = PaginationUtil.parseLimit(limit);
+        LOG.debug("Searching Medicine for: {}", text);
+        // the full-text query reads whole rows, fields only trims the response
+        FieldSelection view = FieldSelection.of(providers, Medicine.class, fields);
+        return async.submit(MEDICINE_RESOURCE_NAME, () -> {
+            // ranked by relevance, so a single page: no cursor
+            List<Medicine> found = service.searchMedicines(text, pageLimit);
+            LOG.debug("Medicine found = {}", found.size());
+            return view.ok(found).build();
+        });
     }
 
     @GET
     @Path("/{id}")
     @RolesAllowed({ADMIN_ROLE, USER_ROLE})
-    public Response getMedicineById(@PathParam("id") int id) {
+    public CompletionStage<Response> getMedicineById(@PathParam("id") int id, @QueryParam(FIELDS_PARAM) String fields) {
         LOG.debug("Fetching Medicine by ID: {}", id);
-        Medicine result = service.getMedicineById(id);
-        
-        Response err = EntityValidationUtil.validateEntityExists("Medicine", id, result != null);
-        if (err != null) return err;
-        
-        return Response.ok(result).build();
+        FieldSelection view = FieldSelection.of(providers, Medicine.class, fields);
+        ConditionalGet conditional = ConditionalGet.of(headers);
+        // Medicine is in the second-level cache: a cached row is revalidated without any SQL
+        return async.submit(MEDICINE_RESOURCE_NAME, () -> conditional.entity(service, Medicine.class, id, view,
+            () -> service.getMedicineById(id),
+            () -> EntityValidationUtil.validateEntityExists("Medicine", id, false)));
     }
 
     @POST
@@ -79,16 +147,36 @@ public class MedicineResource {
         return Response.ok(created).build();  // Or Response.status(201)...
     }
 
+    @POST
+    @Path(BATCH_PATH)
+    @RolesAllowed({ADMIN_ROLE})
+    public Response addMedicines(List<Medicine> newMedicines) {
+        if (newMedicines == null || newMedicines.isEmpty()) {
+            return ErrorResponseUtil.badRequest("Request body must be a non-empty array of Medicine");
+        }
+        if (newMedicines.size() > MAX_BATCH_ITEMS) {
+            return ErrorResponseUtil.payloadTooLarge("At most " + MAX_BATCH_ITEMS + " Medicine per request");
+        }
+        LOG.debug("Creating {} Medicine...", newMedicines.size());
+        // one result per element, in request order: a failed element does not prevent the others from being created
+        List<BatchItemResult> results = service.persistMedicines(newMedicines);
+        return Response.ok(results).build();
+    }
+
     @PUT
     @Path("/{id}")
     @RolesAllowed({ADMIN_ROLE})
-    public Response updateMedicine(@PathParam("id") int id, Medicine updatedMed) {
-        Medicine result = service.updateMedicine(id, updatedMed);
+    public Response updateMedicine(@PathParam("id") int id, @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch, Medicine updatedMed) {
+        if (updatedMed == null) {
+            return ErrorResponseUtil.badRequest("Request body must be a Medicine");
+        }
+        // 412 if someone else changed the medicine since the client read it
+        Medicine result = service.updateMedicineIfMatch(id, IfMatch.versions(ifMatch, VersionStamp.key(id), updatedMed.getVersion()), updatedMed);
         
         Response err = EntityValidationUtil.validateEntityExists("Medicine", id, result != null);
         if (err != null) return err;
         
-        return Response.ok(result).build();
+        return Response.ok(result).tag(service.versionStampOf(result).getEntityTag()).build();
     }
 
     @DELETE
@@ -102,5 +190,21 @@ public class MedicineResource {
         
         return Response.ok(deleted).build();
     }
+
+    @DELETE
+    @Path(BATCH_PATH)
+    @RolesAllowed({ADMIN_ROLE})
+    public Response deleteMedicines(List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return ErrorResponseUtil.badRequest("Request body must be a non-empty array of Medicine ids");
+        }
+        if (ids.size() > MAX_BATCH_ITEMS) {
+            return ErrorResponseUtil.payloadTooLarge("At most " + MAX_BATCH_ITEMS + " Medicine ids per request");
+        }
+        LOG.debug("Deleting {} Medicine...", ids.size());
+        // ids deleted, not found and still prescribed, with the rows affected
+        BulkDeleteResult result = service.deleteMedicines(ids);
+        return Response.ok(result).build();
+    }
 }
  
\ No newline at end of file
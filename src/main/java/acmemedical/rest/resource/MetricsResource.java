@@ -0,0 +1,55 @@
+/********************************************************************************************************
+ * File:  MetricsResource.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: REST API resource class serving the application's metrics to a Prometheus scraper.
+ */
+package acmemedical.rest.resource;
+
+import static acmemedical.utility.MyConstants.ADMIN_ROLE;
+import static acmemedical.utility.MyConstants.METRICS_RESOURCE_NAME;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+import acmemedical.rest.PrometheusTextFormat;
+
+/**
+ * <code>GET /api/v1/metrics</code>: every application-scope metric (REST requests, service calls, locks,
+ * JDBC connection wait, caches...) in the Prometheus text format, for scrapers that can only reach the application.
+ */
+@Path(METRICS_RESOURCE_NAME)
+public class MetricsResource {
+
+    @Inject
+    protected MetricRegistry metricRegistry;
+
+    @GET
+    @RolesAllowed({ADMIN_ROLE})
+    @Produces(PrometheusTextFormat.CONTENT_TYPE)
+    public Response scrape() {
+        StreamingOutput body = output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            PrometheusTextFormat.write(metricRegistry, writer);
+            writer.flush();
+        };
+        return Response.ok(body).build();
+    }
+}
@@ -12,11 +12,27 @@
 
 package acmemedical.rest.resource;
 
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
 import acmemedical.ejb.ACMEMedicalService;
+import acmemedical.rest.AsyncResourceExecutor;
+import acmemedical.rest.ConditionalGet;
+import acmemedical.utility.VersionStamp;
+import acmemedical.rest.IfMatch;
+import acmemedical.rest.FieldSelection;
+import acmemedical.utility.ErrorResponseUtil;
+import acmemedical.utility.BulkDeleteResult;
+import acmemedical.utility.BatchItemResult;
+import acmemedical.utility.KeysetPage;
+import acmemedical.utility.PaginationUtil;
+import acmemedical.rest.JsonArrayStreamingOutput;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
@@ -26,12 +42,29 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.ext.Providers;
 
 import static acmemedical.utility.MyConstants.ADMIN_ROLE;
 import static acmemedical.utility.MyConstants.USER_ROLE;
 import static acmemedical.utility.MyConstants.PATIENT_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_PARAM;
+import static acmemedical.utility.MyConstants.FIELDS_PARAM;
+import static acmemedical.utility.MyConstants.PATIENT_LAST_NAME_PARAM;
+import static acmemedical.utility.MyConstants.PATIENT_BORN_FROM_PARAM;
+import static acmemedical.utility.MyConstants.PATIENT_BORN_TO_PARAM;
+import static acmemedical.utility.MyConstants.PATIENT_SMOKER_PARAM;
+import static acmemedical.utility.MyConstants.EXPORT_PATH;
+import static acmemedical.utility.MyConstants.BATCH_PATH;
+import static acmemedical.utility.MyConstants.MAX_BATCH_ITEMS;
 
-import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -49,28 +82,66 @@ public class PatientResource {
     @EJB
     protected ACMEMedicalService service;
 
+    @Inject
+    protected AsyncResourceExecutor async;
+
+    @Context
+    protected UriInfo uriInfo;
+
+    @Context
+    protected Providers providers;
+
+    @Context
+    protected HttpHeaders headers;
+
+    @GET
+    @RolesAllowed({ADMIN_ROLE})
+    public CompletionStage<Response> getPatients(@QueryParam(PAGE_AFTER_PARAM) String after, @QueryParam(PAGE_LIMIT_PARAM) Integer limit,
+                                                 @QueryParam(PATIENT_LAST_NAME_PARAM) String lastName,
+                                                 @QueryParam(PATIENT_BORN_FROM_PARAM) Integer bornFrom,
+                                                 @QueryParam(PATIENT_BORN_TO_PARAM) Integer bornTo,
+                                                 @QueryParam(PATIENT_SMOKER_PARAM) Boolean smoker,
+                                                 @QueryParam(FIELDS_PARAM) String fields) {
+        LOG.debug("Retrieving Patient lastName={}, bornFrom={}, bornTo={}, smoker={}...", lastName, bornFrom, bornTo, smoker);
+        if (bornFrom != null && bornTo != null && bornFrom > bornTo) {
+            throw new BadRequestException(PATIENT_BORN_FROM_PARAM + " is after " + PATIENT_BORN_TO_PARAM);
+        }
+        String lastNamePrefix = PaginationUtil.blankToNull(lastName);
+        int afterId = PaginationUtil.parseAfterId(after);
+        int pageLimit = PaginationUtil.parseLimit(limit);
+        UriBuilder requestUri = uriInfo.getRequestUriBuilder();
+        FieldSelection view = FieldSelection.of(providers, Patient.class, fields);
+        ConditionalGet conditional = ConditionalGet.of(headers);
+        return async.submit(PATIENT_RESOURCE_NAME, () -> conditional.collection(service.getCollectionStamp(Patient.class), () -> {
+            KeysetPage<Patient> page = service.searchPatients(lastNamePrefix, bornFrom, bornTo, smoker, afterId, pageLimit, view.getFields());
+            LOG.debug("Patient found = {}", page.getItems().size());
+            return view.paged(page, requestUri);
+        }));
+    }
+
     @GET
+    @Path(EXPORT_PATH)
     @RolesAllowed({ADMIN_ROLE})
-    public Response getPatients() {
-        LOG.debug("Retrieving all Patient...");
-        List<Patient> patients = service.getAllPatients();
-        LOG.debug("Patient found = {}", patients);
-        Response response = Response.ok(patients).build();
-        return response;
+    public Response exportPatients(@QueryParam(FIELDS_PARAM) String fields) {
+        LOG.debug("Exporting all Patient...");
+        // rows are serialized as they come off the JDBC cursor, heap use does not grow with the table
+        StreamingOutput body = FieldSelection.of(providers, Patient.class, fields)
+            .array(providers, Patient.class, sink -> service.streamPatients(sink));
+        return Response.ok(body).build();
     }
 
     @GET
     @Path("/{id}")
     @RolesAllowed({ADMIN_ROLE, USER_ROLE})
-    public Response getPatientById(@PathParam("id") int id) {
+    public CompletionStage<Response> getPatientById(@PathParam("id") int id, @QueryParam(FIELDS_PARAM) String fields) {
         LOG.debug("Fetching Patient by ID: {}", id);
-        Patient pat = service.getPatientById(id);
-        if (pat == null) {
-            return Response.status(Response.Status.NOT_FOUND)
-                    .entity(new HttpErrorResponse(404, "Patient not found"))
-                    .build();
-        }
-        return Response.ok(pat).build();
+        FieldSelection view = FieldSelection.of(providers, Patient.class, fields);
+        ConditionalGet conditional = ConditionalGet.of(headers);
+        return async.submit(PATIENT_RESOURCE_NAME, () -> conditional.entity(service, Patient.class, id, view,
+            () -> service.getPatientById(id),
+            () -> Response.status(Response.Status.NOT_FOUND)
+                        .entity(new HttpErrorResponse(404, "Patient not found"))
+                        .build()));
     }
 
     @POST
@@ -80,17 +151,37 @@ public class PatientResource {
         return Response.ok(created).build();  // Or Response.status(201)...
     }
 
+    @POST
+    @Path(BATCH_PATH)
+    @RolesAllowed({ADMIN_ROLE})
+    public Response addPatients(List<Patient> newPatients) {
+        if (newPatients == null || newPatients.isEmpty()) {
+            return ErrorResponseUtil.badRequest("Request body must be a non-empty array of Patient");
+        }
+        if (newPatients.size() > MAX_BATCH_ITEMS) {
+            return ErrorResponseUtil.payloadTooLarge("At most " + MAX_BATCH_ITEMS + " Patient per request");
+        }
+        LOG.debug("Creating {} Patient...", newPatients.size());
+        // one result per element, in request order: a failed element does not prevent the others from being created
+        List<BatchItemResult> results = service.persistPatients(newPatients);
+        return Response.ok(results).build();
+    }
+
     @PUT
     @Path("/{id}")
     @RolesAllowed({ADMIN_ROLE})
-    public Response updatePatient(@PathParam("id") int id, Patient updatedPat) {
-    	Patient result = service.updatePatient(id, updatedPat);
+    public Response updatePatient(@PathParam("id") int id, @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch, Patient updatedPat) {
+        if (updatedPat == null) {
+            return ErrorResponseUtil.badRequest("Request body must be a Patient");
+        }
+        // one UPDATE ... WHERE id = ? AND version = ?, 412 if someone else changed the patient since the client read it
+    	Patient result = service.updatePatientIfMatch(id, IfMatch.versions(ifMatch, VersionStamp.key(id), updatedPat.getVersion()), updatedPat);
         if (result == null) {
             return Response.status(Response.Status.NOT_FOUND)
                 .entity(new HttpErrorResponse(404, "Patient not found"))
                 .build();
         }
-        return Response.ok(result).build();
+        return Response.ok(result).tag(service.versionStampOf(result).getEntityTag()).build();
     }
 
     @DELETE
@@ -105,5 +196,21 @@ public class PatientResource {
         }
         return Response.ok(deleted).build();
     }
+
+    @DELETE
+    @Path(BATCH_PATH)
+    @RolesAllowed({ADMIN_ROLE})
+    public Response deletePatients(List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return ErrorResponseUtil.badRequest("Request body must be a non-empty array of Patient ids");
+        }
+        if (ids.size() > MAX_BATCH_ITEMS) {
+            return ErrorResponseUtil.payloadTooLarge("At most " + MAX_BATCH_ITEMS + " Patient ids per request");
+        }
+        LOG.debug("Deleting {} Patient...", ids.size());
+        // ids deleted and not found, with the rows affected per table
+        BulkDeleteResult result = service.deletePatients(ids);
+        return Response.ok(result).build();
+    }
 }
  
\ No newline at end of file
@@ -12,14 +12,23 @@
  */
 package acmemedical.rest.resource;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 import static acmemedical.utility.MyConstants.ADMIN_ROLE;
+import static acmemedical.utility.MyConstants.BATCH_PATH;
+import static acmemedical.utility.MyConstants.MAX_BATCH_ITEMS;
 import static acmemedical.utility.MyConstants.PHYSICIAN_PATIENT_MEDICINE_RESOURCE_PATH;
 import static acmemedical.utility.MyConstants.PHYSICIAN_RESOURCE_NAME;
 import static acmemedical.utility.MyConstants.RESOURCE_PATH_ID_ELEMENT;
 import static acmemedical.utility.MyConstants.RESOURCE_PATH_ID_PATH;
 import static acmemedical.utility.MyConstants.USER_ROLE;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_PARAM;
+import static acmemedical.utility.MyConstants.FIELDS_PARAM;
+import static acmemedical.utility.MyConstants.PHYSICIAN_NAME_PARAM;
 
-import java.util.List;
 
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ejb.EJB;
@@ -36,6 +45,13 @@ import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.Providers;
 import jakarta.ws.rs.core.Response.Status;
 
 import org.apache.logging.log4j.LogManager;
@@ -43,6 +59,17 @@ import org.apache.logging.log4j.Logger;
 import org.glassfish.soteria.WrappingCallerPrincipal;
 
 import acmemedical.ejb.ACMEMedicalService;
+import acmemedical.rest.AsyncResourceExecutor;
+import acmemedical.rest.ConditionalGet;
+import acmemedical.rest.Idempotent;
+import acmemedical.utility.VersionStamp;
+import acmemedical.rest.IfMatch;
+import acmemedical.rest.FieldSelection;
+import acmemedical.utility.KeysetPage;
+import acmemedical.utility.PaginationUtil;
+import acmemedical.utility.ErrorResponseUtil;
+import acmemedical.utility.BulkDeleteResult;
+import acmemedical.utility.BatchItemResult;
 import acmemedical.entity.Medicine;
 import acmemedical.entity.SecurityUser;
 import acmemedical.entity.Physician;
@@ -58,59 +85,97 @@ public class PhysicianResource {
     @EJB
     protected ACMEMedicalService service;
 
+    @Inject
+    protected AsyncResourceExecutor async;
+
     @Inject
     protected SecurityContext sc;
     
+    @Context
+    protected UriInfo uriInfo;
+
+    @Context
+    protected Providers providers;
+
+    @Context
+    protected HttpHeaders headers;
+
     @GET
     //Only a user with the SecurityRole ‘ADMIN_ROLE’ can get the list of all physicians.
     @RolesAllowed({ADMIN_ROLE})
-    public Response getPhysicians() {
-        LOG.debug("retrieving all physicians ...");
-        List<Physician> physicians = service.getAllPhysicians();
-        Response response = Response.ok(physicians).build();
-        return response;
+    public CompletionStage<Response> getPhysicians(@QueryParam(PAGE_AFTER_PARAM) String after, @QueryParam(PAGE_LIMIT_PARAM) Integer limit,
+                                                   @QueryParam(PHYSICIAN_NAME_PARAM) String name,
+                                                   @QueryParam(FIELDS_PARAM) String fields) {
+        LOG.debug("retrieving physicians name={} ...", name);
+        String namePrefix = PaginationUtil.blankToNull(name);
+        int afterId = PaginationUtil.parseAfterId(after);
+        int pageLimit = PaginationUtil.parseLimit(limit);
+        UriBuilder requestUri = uriInfo.getRequestUriBuilder();
+        FieldSelection view = FieldSelection.of(providers, Physician.class, fields);
+        ConditionalGet conditional = ConditionalGet.of(headers);
+        return async.submit(PHYSICIAN_RESOURCE_NAME, () -> conditional.collection(service.getCollectionStamp(Physician.class), () -> {
+            KeysetPage<Physician> page = service.searchPhysicians(namePrefix, afterId, pageLimit, view.getFields());
+            LOG.debug("Physician found = {}", page.getItems().size());
+            return view.paged(page, requestUri);
+        }));
     }
 
     @GET
     //A user with either the role ‘ADMIN_ROLE’ or ‘USER_ROLE’ can get a specific physician.
     @RolesAllowed({ADMIN_ROLE, USER_ROLE})
     @Path(RESOURCE_PATH_ID_PATH)
-    public Response getPhysicianById(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id) {
-        LOG.debug("try to retrieve specific physician " + id);
-        Response response = null;
-        Physician physician = null;
+    public CompletionStage<Response> getPhysicianById(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id, @QueryParam(FIELDS_PARAM) String fields) {
+        LOG.debug("try to retrieve specific physician {}", id);
+        FieldSelection view = FieldSelection.of(providers, Physician.class, fields);
+        ConditionalGet conditional = ConditionalGet.of(headers);
 
         if (sc.isCallerInRole(ADMIN_ROLE)) {
-        	physician = service.getPhysicianById(id);
-            response = Response.status(physician == null ? Status.NOT_FOUND : Status.OK).entity(physician).build();
+            // allowed any physician
         } else if (sc.isCallerInRole(USER_ROLE)) {
             WrappingCallerPrincipal wCallerPrincipal = (WrappingCallerPrincipal) sc.getCallerPrincipal();
             SecurityUser sUser = (SecurityUser) wCallerPrincipal.getWrapped();
-            physician = sUser.getPhysician();
-            if (physician != null && physician.getId() == id) {
-                response = Response.status(Status.OK).entity(physician).build();
-            } else {
+            Physician ownPhysician = sUser.getPhysician();
+            if (ownPhysician == null || ownPhysician.getId() != id) {
             	//disallows a ‘USER_ROLE’ user from getting a physician that is not linked to the SecurityUser.
                 throw new ForbiddenException("User trying to access resource it does not own (wrong userid)");
             }
         } else {
-            response = Response.status(Status.BAD_REQUEST).build();
+            return CompletableFuture.completedFuture(Response.status(Status.BAD_REQUEST).build());
         }
-        return response;
+        // the principal may come from the credential cache, so only trust it for the id and read the row fresh
+        return async.submit(PHYSICIAN_RESOURCE_NAME, () -> conditional.entity(service, Physician.class, id, view,
+            () -> service.getPhysicianById(id),
+            () -> Response.status(Status.NOT_FOUND).build()));
     }
 
     @POST
+    @Idempotent
     //Only a user with the SecurityRole ‘ADMIN_ROLE’ can add a new physician.
     @RolesAllowed({ADMIN_ROLE})
     public Response addPhysician(Physician newPhysician) {
         Response response = null;
-        Physician newPhysicianWithIdTimestamps = service.persistPhysician(newPhysician);
-        // Build a SecurityUser linked to the new physician
-        service.buildUserForNewPhysician(newPhysicianWithIdTimestamps);
+        // the physician and its SecurityUser, in one transaction; 409 if the username is taken
+        Physician newPhysicianWithIdTimestamps = service.onboardPhysician(newPhysician);
         response = Response.ok(newPhysicianWithIdTimestamps).build();
         return response;
     }
 
+    @POST
+    @Path(BATCH_PATH)
+    @RolesAllowed({ADMIN_ROLE})
+    public Response addPhysicians(List<Physician> newPhysicians) {
+        if (newPhysicians == null || newPhysicians.isEmpty()) {
+            return ErrorResponseUtil.badRequest("Request body must be a non-empty array of Physician");
+        }
+        if (newPhysicians.size() > MAX_BATCH_ITEMS) {
+            return ErrorResponseUtil.payloadTooLarge("At most " + MAX_BATCH_ITEMS + " Physician per request");
+        }
+        LOG.debug("Onboarding {} Physician...", newPhysicians.size());
+        // one result per element, in request order: a taken username does not prevent the others from being created
+        List<BatchItemResult> results = service.onboardPhysicians(newPhysicians);
+        return Response.ok(results).build();
+    }
+
     @PUT
     //Only an ‘ADMIN_ROLE’ user can associate a Medicine and/or Patient to a Physician.
     @RolesAllowed({ADMIN_ROLE})
@@ -126,14 +191,19 @@ public class PhysicianResource {
     @PUT
     @Path("/{id}")
     @RolesAllowed({ADMIN_ROLE})
-    public Response updatePhysician(@PathParam("id") int id, Physician updatedPhysician) {
-        Physician updated = service.updatePhysicianById(id, updatedPhysician);
+    public Response updatePhysician(@PathParam("id") int id, @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch, Physician updatedPhysician) {
+        if (updatedPhysician == null) {
+            return ErrorResponseUtil.badRequest("Request body must be a Physician");
+        }
+        // one UPDATE ... WHERE id = ? AND version = ?, 412 if someone else changed the physician since the client read it
+        Physician updated = service.updatePhysicianIfMatch(id, IfMatch.versions(ifMatch, VersionStamp.key(id), updatedPhysician.getVersion()),
+            updatedPhysician);
         if (updated == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new HttpErrorResponse(404, "Physician not found"))
                     .build();
         }
-        return Response.ok(updated).build();
+        return Response.ok(updated).tag(service.versionStampOf(updated).getEntityTag()).build();
     }
     
     // DEELTE, added by Rayn
@@ -141,15 +211,30 @@ public class PhysicianResource {
     @Path("/{id}")
     @RolesAllowed({ADMIN_ROLE})
     public Response deletePhysician(@PathParam("id") int id) {
-    	Physician target = service.getPhysicianById(id);
-        if (target == null) {
+        // no pre-load: the service finds out from the rows it deleted whether the physician existed
+        BulkDeleteResult result = service.deletePhysicianById(id);
+        if (!result.getNotFound().isEmpty()) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new HttpErrorResponse(404, "Physician not found"))
                     .build();
         }
-        
-        service.deletePhysicianById(id);	//void
-        return Response.ok(target).build();
+        return Response.ok(result).build();
+    }
+
+    @DELETE
+    @Path(BATCH_PATH)
+    @RolesAllowed({ADMIN_ROLE})
+    public Response deletePhysicians(List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return ErrorResponseUtil.badRequest("Request body must be a non-empty array of Physician ids");
+        }
+        if (ids.size() > MAX_BATCH_ITEMS) {
+            return ErrorResponseUtil.payloadTooLarge("At most " + MAX_BATCH_ITEMS + " Physician ids per request");
+        }
+        LOG.debug("Deleting {} Physician...", ids.size());
+        // ids deleted and not found, with the rows affected per table
+        BulkDeleteResult result = service.deletePhysicians(ids);
+        return Response.ok(result).build();
     }
     
 }
\ No newline at end of file
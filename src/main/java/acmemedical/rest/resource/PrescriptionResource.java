@@ -12,12 +12,26 @@
 
 package acmemedical.rest.resource;
 
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
 import acmemedical.utility.EntityValidationUtil;
 import acmemedical.utility.ErrorResponseUtil;
 import acmemedical.ejb.ACMEMedicalService;
+import acmemedical.rest.AsyncResourceExecutor;
+import acmemedical.rest.ConditionalGet;
+import acmemedical.rest.Idempotent;
+import acmemedical.utility.VersionStamp;
+import acmemedical.rest.IfMatch;
+import acmemedical.rest.FieldSelection;
+import acmemedical.utility.BatchItemResult;
+import acmemedical.utility.KeysetPage;
+import acmemedical.utility.PaginationUtil;
+import acmemedical.rest.JsonArrayStreamingOutput;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
+import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.PersistenceException;
@@ -32,18 +46,32 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.ext.Providers;
 
 import static acmemedical.utility.MyConstants.ADMIN_ROLE;
 import static acmemedical.utility.MyConstants.USER_ROLE;
 import static acmemedical.utility.MyConstants.PRESCRIPTION_RESOURCE_NAME;
 import static acmemedical.utility.MyConstants.PU_NAME;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_PARAM;
+import static acmemedical.utility.MyConstants.FIELDS_PARAM;
+import static acmemedical.utility.MyConstants.EXPORT_PATH;
+import static acmemedical.utility.MyConstants.BATCH_PATH;
+import static acmemedical.utility.MyConstants.MAX_BATCH_ITEMS;
 
-import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import acmemedical.entity.Prescription;
+import acmemedical.entity.PrescriptionPK;
 
 @Path(PRESCRIPTION_RESOURCE_NAME)
 @Consumes(MediaType.APPLICATION_JSON)
@@ -55,39 +83,75 @@ public class PrescriptionResource {
     @EJB
     protected ACMEMedicalService service;
 
+    @Inject
+    protected AsyncResourceExecutor async;
+
     @PersistenceContext(name = PU_NAME)
     protected EntityManager em;
     
+    @Context
+    protected UriInfo uriInfo;
+
+    @Context
+    protected Providers providers;
+
+    @Context
+    protected HttpHeaders headers;
+
     @GET
     @RolesAllowed({ADMIN_ROLE})
-    public Response getPrescriptions() {
+    public CompletionStage<Response> getPrescriptions(@QueryParam(PAGE_AFTER_PARAM) String after, @QueryParam(PAGE_LIMIT_PARAM) Integer limit,
+                                                      @QueryParam(FIELDS_PARAM) String fields) {
         LOG.debug("Retrieving all Prescription...");
-        List<Prescription> patients = service.getAllPrescriptions();
-        LOG.debug("Prescription found = {}", patients);
-        Response response = Response.ok(patients).build();
-        return response;
+        int[] afterId = PaginationUtil.parseAfterCompositeId(after);
+        int pageLimit = PaginationUtil.parseLimit(limit);
+        UriBuilder requestUri = uriInfo.getRequestUriBuilder();
+        FieldSelection view = FieldSelection.of(providers, Prescription.class, fields);
+        ConditionalGet conditional = ConditionalGet.of(headers);
+        return async.submit(PRESCRIPTION_RESOURCE_NAME, () -> conditional.collection(service.getCollectionStamp(Prescription.class), () -> {
+            KeysetPage<Prescription> page = service.getPrescriptionPage(afterId[0], afterId[1], pageLimit, view.getFields());
+            LOG.debug("Prescription found = {}", page.getItems().size());
+            return view.paged(page, requestUri);
+        }));
+    }
+
+    @GET
+    @Path(EXPORT_PATH)
+    @RolesAllowed({ADMIN_ROLE})
+    public Response exportPrescriptions(@QueryParam(FIELDS_PARAM) String fields) {
+        LOG.debug("Exporting all Prescription...");
+        // rows are serialized as they come off the JDBC cursor, heap use does not grow with the table
+        StreamingOutput body = FieldSelection.of(providers, Prescription.class, fields)
+            .array(providers, Prescription.class, sink -> service.streamPrescriptions(sink));
+        return Response.ok(body).build();
     }
 
     @GET
     @Path("/{physicianId}/{patientId}")
     @RolesAllowed({ADMIN_ROLE, USER_ROLE})
-    public Response getPrescriptionByIds(@PathParam("physicianId") int physicianId,
-                                         @PathParam("patientId") int patientId) {
-        Prescription prescription = service.getPrescriptionByIds(physicianId, patientId);
-        if (prescription == null) {
-        	HttpErrorResponse error = new HttpErrorResponse(
-        		    404,
-        		    "Prescription not found for Physician ID " + physicianId + " and Patient ID " + patientId
-        		);
-            return Response.status(Response.Status.NOT_FOUND)
-                           .entity(error)
-                           .type(MediaType.APPLICATION_JSON)
-                           .build();
-        }
-        return Response.ok(prescription).build();
+    public CompletionStage<Response> getPrescriptionByIds(@PathParam("physicianId") int physicianId,
+                                                          @PathParam("patientId") int patientId,
+                                                          @QueryParam(FIELDS_PARAM) String fields) {
+        FieldSelection view = FieldSelection.of(providers, Prescription.class, fields);
+        ConditionalGet conditional = ConditionalGet.of(headers);
+        // the ETag also covers the embedded physician, patient and medicine
+        return async.submit(PRESCRIPTION_RESOURCE_NAME, () -> conditional.entity(service, Prescription.class,
+            new PrescriptionPK(physicianId, patientId), view,
+            () -> service.getPrescriptionByIds(physicianId, patientId),
+            () -> {
+                HttpErrorResponse error = new HttpErrorResponse(
+                    404,
+                    "Prescription not found for Physician ID " + physicianId + " and Patient ID " + patientId
+                );
+                return Response.status(Response.Status.NOT_FOUND)
+                               .entity(error)
+                               .type(MediaType.APPLICATION_JSON)
+                               .build();
+            }));
     }
 
     @POST
+    @Idempotent
     @RolesAllowed({ADMIN_ROLE})
     public Response createPrescription(Prescription prescription) {
         try {
@@ -125,18 +189,39 @@ public class PrescriptionResource {
         }
     }
 
+    @POST
+    @Path(BATCH_PATH)
+    @RolesAllowed({ADMIN_ROLE})
+    public Response addPrescriptions(List<Prescription> newPrescriptions) {
+        if (newPrescriptions == null || newPrescriptions.isEmpty()) {
+            return ErrorResponseUtil.badRequest("Request body must be a non-empty array of Prescription");
+        }
+        if (newPrescriptions.size() > MAX_BATCH_ITEMS) {
+            return ErrorResponseUtil.payloadTooLarge("At most " + MAX_BATCH_ITEMS + " Prescription per request");
+        }
+        LOG.debug("Creating {} Prescription...", newPrescriptions.size());
+        // one result per element, in request order: a failed element does not prevent the others from being created
+        List<BatchItemResult> results = service.persistPrescriptions(newPrescriptions);
+        return Response.ok(results).build();
+    }
+
     @PUT
     @Path("/{physicianId}/{patientId}")
     @RolesAllowed({ADMIN_ROLE})
     public Response updatePrescription(@PathParam("physicianId") int physicianId,
-            @PathParam("patientId") int patientId, Prescription updatedPs) {
-    	Prescription result = service.updatePrescription(physicianId, patientId, updatedPs);
+            @PathParam("patientId") int patientId, @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch, Prescription updatedPs) {
+        if (updatedPs == null) {
+            return ErrorResponseUtil.badRequest("Request body must be a Prescription");
+        }
+        // one UPDATE ... WHERE id = ? AND version = ?, 412 if someone else changed the prescription since the client read it
+    	Prescription result = service.updatePrescriptionIfMatch(physicianId, patientId,
+    	    IfMatch.versions(ifMatch, VersionStamp.key(physicianId, patientId), updatedPs.getVersion()), updatedPs);
         if (result == null) {
             return Response.status(Response.Status.NOT_FOUND)
                 .entity(new HttpErrorResponse(404, "Prescription not found"))
                 .build();
         }
-        return Response.ok(result).build();
+        return Response.ok(result).tag(service.versionStampOf(result).getEntityTag()).build();
     }
 
     @DELETE
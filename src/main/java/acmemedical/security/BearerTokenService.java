@@ -0,0 +1,195 @@
+/********************************************************************************************************
+ * File:  BearerTokenService.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Issues and verifies locally signed, short-lived bearer tokens.
+ */
+package acmemedical.security;
+
+import static acmemedical.utility.MyConstants.BEARER_TOKEN_SIGNING_KEY_PROPNAME;
+import static acmemedical.utility.MyConstants.BEARER_TOKEN_TTL_SECONDS_PROPNAME;
+import static acmemedical.utility.MyConstants.DEFAULT_BEARER_TOKEN_TTL_SECONDS;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.security.enterprise.identitystore.CredentialValidationResult;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.glassfish.soteria.WrappingCallerPrincipal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import acmemedical.entity.Physician;
+import acmemedical.entity.SecurityUser;
+
+/**
+ * A token is <code>base64url(claims-json) + "." + base64url(HMAC-SHA256(claims-json))</code>.
+ * <p>
+ * The claims carry everything needed to rebuild the caller (username, user id, physician id, roles and expiry),
+ * so a token is verified with one HMAC and no database access.
+ * <p>
+ * The signing key is read from MicroProfile Config ({@value acmemedical.utility.MyConstants#BEARER_TOKEN_SIGNING_KEY_PROPNAME},
+ * base64, at least 32 bytes).  If it is not configured a random key is generated at startup: tokens then only verify
+ * on the node that issued them and become invalid on restart, so every node of a cluster must share the configured key.
+ */
+@ApplicationScoped
+public class BearerTokenService {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int MIN_KEY_BYTES = 32;
+
+    public static final String TOKEN_TYPE = "Bearer";
+
+    @Inject
+    @ConfigProperty(name = BEARER_TOKEN_SIGNING_KEY_PROPNAME)
+    protected Optional<String> configuredSigningKey;
+
+    @Inject
+    @ConfigProperty(name = BEARER_TOKEN_TTL_SECONDS_PROPNAME, defaultValue = DEFAULT_BEARER_TOKEN_TTL_SECONDS)
+    protected long ttlSeconds;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private SecretKeySpec signingKey;
+    private ThreadLocal<Mac> macs;
+
+    /**
+     * What the token says about its caller
+     */
+    public static class Claims {
+        public String sub;
+        public int uid;
+        public int pid;
+        public Set<String> roles;
+        public long exp;
+    }
+
+    @PostConstruct
+    public void init() {
+        byte[] keyBytes = configuredSigningKey
+            .filter(k -> !k.isBlank())
+            .map(k -> Base64.getDecoder().decode(k.trim()))
+            .orElse(null);
+        if (keyBytes == null) {
+            LOG.warn("{} not configured, using a random per-node key: bearer tokens will not be accepted by other nodes",
+                BEARER_TOKEN_SIGNING_KEY_PROPNAME);
+            keyBytes = new byte[MIN_KEY_BYTES];
+            new SecureRandom().nextBytes(keyBytes);
+        } else if (keyBytes.length < MIN_KEY_BYTES) {
+            throw new IllegalStateException(BEARER_TOKEN_SIGNING_KEY_PROPNAME + " must be at least " + MIN_KEY_BYTES + " bytes");
+        }
+        signingKey = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+        macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    /**
+     * Issue a token for a caller that was just authenticated
+     *
+     * @param user - authenticated user
+     * @param roles - its role names
+     * @return signed token
+     */
+    public String issue(SecurityUser user, Set<String> roles) {
+        Claims claims = new Claims();
+        claims.sub = user.getUsername();
+        claims.uid = user.getId();
+        claims.pid = user.getPhysician() == null ? 0 : user.getPhysician().getId();
+        claims.roles = roles;
+        claims.exp = Instant.now().getEpochSecond() + ttlSeconds;
+        try {
+            byte[] payload = mapper.writeValueAsBytes(claims);
+            Base64.Encoder b64 = Base64.getUrlEncoder().withoutPadding();
+            return b64.encodeToString(payload) + "." + b64.encodeToString(sign(payload));
+        }
+        catch (Exception e) {
+            throw new IllegalStateException("Unable to issue bearer token", e);
+        }
+    }
+
+    /**
+     * Verify a token: signature, then expiry
+     *
+     * @param token - token as sent in the Authorization header
+     * @return VALID result with a hollow SecurityUser principal, or INVALID_RESULT
+     */
+    public CredentialValidationResult verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            return CredentialValidationResult.INVALID_RESULT;
+        }
+        try {
+            Base64.Decoder b64 = Base64.getUrlDecoder();
+            byte[] payload = b64.decode(token.substring(0, dot));
+            byte[] signature = b64.decode(token.substring(dot + 1));
+            // constant-time comparison
+            if (!MessageDigest.isEqual(sign(payload), signature)) {
+                return CredentialValidationResult.INVALID_RESULT;
+            }
+            Claims claims = mapper.readValue(payload, Claims.class);
+            if (claims.exp <= Instant.now().getEpochSecond()) {
+                return CredentialValidationResult.INVALID_RESULT;
+            }
+            return new CredentialValidationResult(new WrappingCallerPrincipal(toUser(claims)),
+                claims.roles == null ? Set.of() : new HashSet<>(claims.roles));
+        }
+        catch (Exception e) {
+            LOG.debug("rejecting malformed bearer token: {}", e.getMessage());
+            return CredentialValidationResult.INVALID_RESULT;
+        }
+    }
+
+    /**
+     * The principal rebuilt from a token only carries ids; resources must load anything else they need
+     */
+    protected SecurityUser toUser(Claims claims) {
+        SecurityUser user = new SecurityUser();
+        user.setId(claims.uid);
+        user.setUsername(claims.sub);
+        if (claims.pid != 0) {
+            Physician physician = new Physician();
+            physician.setId(claims.pid);
+            user.setPhysician(physician);
+        }
+        return user;
+    }
+
+    protected byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            return mac;
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize " + HMAC_ALGORITHM, e);
+        }
+    }
+}
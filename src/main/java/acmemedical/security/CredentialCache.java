@@ -0,0 +1,229 @@
+/********************************************************************************************************
+ * File:  CredentialCache.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Bounded, TTL-based cache of successful credential validations.
+ */
+package acmemedical.security;
+
+import static acmemedical.utility.MyConstants.CREDENTIAL_CACHE_MAX_SIZE_PROPNAME;
+import static acmemedical.utility.MyConstants.CREDENTIAL_CACHE_TTL_SECONDS_PROPNAME;
+import static acmemedical.utility.MyConstants.DEFAULT_CREDENTIAL_CACHE_MAX_SIZE;
+import static acmemedical.utility.MyConstants.DEFAULT_CREDENTIAL_CACHE_TTL_SECONDS;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.security.enterprise.identitystore.CredentialValidationResult;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/**
+ * Remembers successful {@link CredentialValidationResult}s so that a repeated Basic-auth request
+ * does not pay for the user lookup and the PBKDF2 verification again.
+ * <p>
+ * Entries are keyed on an HMAC-SHA256 of username and password under a random per-process key,
+ * so neither the password nor an offline-attackable hash of it is kept in memory.
+ * Only VALID results are cached; a wrong password always goes through the real check.
+ * The cache is bounded (least-recently-used entries are evicted) and every entry expires after a TTL.
+ * <p>
+ * A validation reads the user before it is cached, so an invalidation can happen in between: every invalidation
+ * starts a new {@link #generation()}, and a result computed in an older one is not cached at all.
+ */
+@ApplicationScoped
+public class CredentialCache {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    public static final String HITS_GAUGE_NAME = "acmemedical.security.credential-cache.hits";
+    public static final String MISSES_GAUGE_NAME = "acmemedical.security.credential-cache.misses";
+    public static final String EVICTIONS_GAUGE_NAME = "acmemedical.security.credential-cache.evictions";
+    public static final String SIZE_GAUGE_NAME = "acmemedical.security.credential-cache.size";
+
+    @Inject
+    @ConfigProperty(name = CREDENTIAL_CACHE_MAX_SIZE_PROPNAME, defaultValue = DEFAULT_CREDENTIAL_CACHE_MAX_SIZE)
+    protected int maxSize;
+
+    @Inject
+    @ConfigProperty(name = CREDENTIAL_CACHE_TTL_SECONDS_PROPNAME, defaultValue = DEFAULT_CREDENTIAL_CACHE_TTL_SECONDS)
+    protected long ttlSeconds;
+
+    @Inject
+    protected MetricRegistry metricRegistry;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private SecretKeySpec digestKey;
+    private ThreadLocal<Mac> macs;
+    private Map<String, Entry> entries;
+    // guarded by entries, like the map
+    private long generation;
+
+    private record Entry(String username, CredentialValidationResult result, long expiresAtNanos) {
+    }
+
+    @PostConstruct
+    public void init() {
+        byte[] keyBytes = new byte[32];
+        new SecureRandom().nextBytes(keyBytes);
+        digestKey = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+        macs = ThreadLocal.withInitial(this::newMac);
+        // access-ordered LinkedHashMap == LRU
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        if (metricRegistry != null) {
+            metricRegistry.gauge(HITS_GAUGE_NAME, this::getHits);
+            metricRegistry.gauge(MISSES_GAUGE_NAME, this::getMisses);
+            metricRegistry.gauge(EVICTIONS_GAUGE_NAME, this::getEvictions);
+            metricRegistry.gauge(SIZE_GAUGE_NAME, this::size);
+        }
+        LOG.debug("credential cache maxSize={}, ttlSeconds={}", maxSize, ttlSeconds);
+    }
+
+    /**
+     * @return the cached result for this username/password, or null if absent or expired
+     */
+    public CredentialValidationResult get(String username, String password) {
+        String key = keyFor(username, password);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAtNanos() - System.nanoTime() <= 0) {
+                entries.remove(key);
+                evictions.increment();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.result();
+    }
+
+    /**
+     * @return the current generation, to be read before the user is looked up and passed to
+     *         {@link #put(String, String, CredentialValidationResult, long)}
+     */
+    public long generation() {
+        synchronized (entries) {
+            return generation;
+        }
+    }
+
+    /**
+     * Caches <code>result</code>, unless an invalidation happened since <code>generation</code> was read: the result
+     * may then carry an old password hash or roles
+     */
+    public void put(String username, String password, CredentialValidationResult result, long generation) {
+        if (result == null || result.getStatus() != CredentialValidationResult.Status.VALID) {
+            return;
+        }
+        Entry entry = new Entry(username, result, System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds));
+        String key = keyFor(username, password);
+        synchronized (entries) {
+            if (generation != this.generation) {
+                LOG.debug("credentials of {} changed while they were validated, not cached", username);
+                return;
+            }
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Drop every entry of one user, e.g. after its password hash or roles changed
+     */
+    public void invalidate(String username) {
+        if (username == null) {
+            return;
+        }
+        synchronized (entries) {
+            generation++;
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+                if (username.equals(it.next().username())) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation++;
+            entries.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    protected String keyFor(String username, String password) {
+        Mac mac = macs.get();
+        mac.update(username.getBytes(StandardCharsets.UTF_8));
+        // separator so that ("ab", "c") and ("a", "bc") do not collide
+        mac.update((byte) 0);
+        return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(digestKey);
+            return mac;
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize " + HMAC_ALGORITHM, e);
+        }
+    }
+}
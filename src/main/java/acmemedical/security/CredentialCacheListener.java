@@ -0,0 +1,56 @@
+/********************************************************************************************************
+ * File:  CredentialCacheListener.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: JPA entity listener keeping CredentialCache in sync with SecurityUser/SecurityRole changes.
+ */
+package acmemedical.security;
+
+import jakarta.enterprise.inject.spi.CDI;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import acmemedical.entity.SecurityRole;
+import acmemedical.entity.SecurityUser;
+
+public class CredentialCacheListener {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void securityEntityChanged(Object entity) {
+        CredentialCache cache = lookupCache();
+        if (cache == null) {
+            return;
+        }
+        if (entity instanceof SecurityUser user) {
+            // password hash, roles or the user itself changed
+            cache.invalidate(user.getUsername());
+        } else if (entity instanceof SecurityRole) {
+            // a role may be shared by many users, simplest is to start over
+            cache.invalidateAll();
+        }
+    }
+
+    protected CredentialCache lookupCache() {
+        try {
+            return CDI.current().select(CredentialCache.class).get();
+        }
+        catch (IllegalStateException e) {
+            // no CDI container, e.g. plain JPA in the tests: nothing is cached either
+            LOG.trace("no CDI container, credential cache not available");
+            return null;
+        }
+    }
+}
@@ -22,49 +22,45 @@ import jakarta.security.enterprise.authentication.mechanism.http.HttpAuthenticat
 import jakarta.security.enterprise.authentication.mechanism.http.HttpMessageContext;
 import jakarta.security.enterprise.credential.UsernamePasswordCredential;
 import jakarta.security.enterprise.identitystore.CredentialValidationResult;
-import jakarta.servlet.ServletContext;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.HttpHeaders;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 @ApplicationScoped
 public class CustomAuthenticationMechanism implements HttpAuthenticationMechanism {
 
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final String BEARER_PREFIX = BearerTokenService.TOKEN_TYPE + " ";
+
     @Inject
     protected CustomIdentityStore identityStore;
 
-    @Context
-    protected ServletContext servletContext;
+    @Inject
+    protected BearerTokenService tokenService;
 
     @Override
     public AuthenticationStatus validateRequest(HttpServletRequest request, HttpServletResponse response, HttpMessageContext httpMessageContext) throws AuthenticationException {
 
         AuthenticationStatus result = httpMessageContext.doNothing();
-        //Parse BasicAuth header
-        String name = null;
-        String password = null;
         String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
-        if (authHeader != null) {
-            boolean startsWithBasic = authHeader.toLowerCase().startsWith(BASIC_AUTH.toLowerCase());
-            if (startsWithBasic) {
-                String b64Token = authHeader.substring(BASIC_AUTH.length() + 1, authHeader.length());
-                //                                              ^^^^^^^^^^^ account for space between BASIC and base64-string
-                byte[] token = Base64.getDecoder().decode(b64Token);
-                String tmp = new String(token);
-                String[] tokenFields = tmp.split(":");
-                if (tokenFields.length == 2) {
-                    name = tokenFields[0];
-                    password = tokenFields[1];
-                }
+        //Bearer tokens (issued by CredentialResource) are verified statelessly: no DB, no PBKDF2
+        if (authHeader != null && authHeader.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            CredentialValidationResult validationResult = tokenService.verify(authHeader.substring(BEARER_PREFIX.length()).trim());
+            if (validationResult.getStatus() == VALID) {
+                return httpMessageContext.notifyContainerAboutLogin(validationResult);
             }
+            return httpMessageContext.responseUnauthorized();
         }
-        if (name != null && password != null) {
-            CredentialValidationResult validationResult = identityStore.validate(new UsernamePasswordCredential(name, password));
+        UsernamePasswordCredential credential = parseBasicCredentials(authHeader);
+        if (credential != null) {
+            CredentialValidationResult validationResult = identityStore.validate(credential);
             if (validationResult.getStatus() == VALID) {
-                String validationResultStr = String.format("valid result: callerGroups=%s, callerPrincipal=%s",
+                LOG.debug("valid result: callerGroups={}, callerPrincipal={}",
                     validationResult.getCallerGroups(), validationResult.getCallerPrincipal().getName());
-                servletContext.log(validationResultStr);
                 result = httpMessageContext.notifyContainerAboutLogin(validationResult);
             }
             else {
@@ -73,4 +69,25 @@ public class CustomAuthenticationMechanism implements HttpAuthenticationMechanis
         }
         return result;
     }
-}
\ No newline at end of file
+
+    /**
+     * Parse a BasicAuth header
+     *
+     * @param authHeader - value of the Authorization header, may be null
+     * @return the username/password it carries, or null if it is not a well-formed Basic header
+     */
+    public static UsernamePasswordCredential parseBasicCredentials(String authHeader) {
+        if (authHeader == null || !authHeader.toLowerCase().startsWith(BASIC_AUTH.toLowerCase())) {
+            return null;
+        }
+        String b64Token = authHeader.substring(BASIC_AUTH.length() + 1, authHeader.length());
+        //                                              ^^^^^^^^^^^ account for space between BASIC and base64-string
+        byte[] token = Base64.getDecoder().decode(b64Token);
+        String tmp = new String(token);
+        String[] tokenFields = tmp.split(":");
+        if (tokenFields.length != 2) {
+            return null;
+        }
+        return new UsernamePasswordCredential(tokenFields[0], tokenFields[1]);
+    }
+}
@@ -38,6 +38,9 @@ public class CustomIdentityStore implements IdentityStore {
     @Inject
     protected Pbkdf2PasswordHash pbAndjPasswordHash;
 
+    @Inject
+    protected CredentialCache credentialCache;
+
     @Override
     public CredentialValidationResult validate(Credential credential) {
 
@@ -46,6 +49,13 @@ public class CustomIdentityStore implements IdentityStore {
         if (credential instanceof UsernamePasswordCredential) {
             String callerName = ((UsernamePasswordCredential)credential).getCaller();
             String credentialPassword = ((UsernamePasswordCredential)credential).getPasswordAsString();
+            // Skip the user lookup and the (deliberately slow) PBKDF2 verify for recently validated credentials
+            CredentialValidationResult cached = credentialCache.get(callerName, credentialPassword);
+            if (cached != null) {
+                return cached;
+            }
+            // before the lookup: a change of the user from now on keeps this result out of the cache
+            long generation = credentialCache.generation();
             SecurityUser user = jpaHelper.findUserByName(callerName);
             if (user != null) {
                 String pwHash = user.getPwHash();
@@ -70,6 +80,7 @@ public class CustomIdentityStore implements IdentityStore {
                     if (verified) {
                         Set<String> rolesForUser = jpaHelper.findRoleNamesForUser(callerName);
                         result = new CredentialValidationResult(new WrappingCallerPrincipal(user), rolesForUser);
+                        credentialCache.put(callerName, credentialPassword, result, generation);
                     }
                 }
                 catch (Exception e) {
@@ -0,0 +1,75 @@
+/********************************************************************************************************
+ * File:  BatchItemResult.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Outcome of one element of a bulk create request.
+ */
+
+package acmemedical.utility;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one element of a bulk create request, in the same position as the element in the request array.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String CREATED = "created";
+    public static final String FAILED = "failed";
+
+    private int index;
+    private String status;
+    private Object id;
+    private String error;
+
+    public BatchItemResult() {
+    }
+
+    public static BatchItemResult created(int index, Object id) {
+        BatchItemResult result = new BatchItemResult();
+        result.index = index;
+        result.status = CREATED;
+        result.id = id;
+        return result;
+    }
+
+    public static BatchItemResult failed(int index, String error) {
+        BatchItemResult result = new BatchItemResult();
+        result.index = index;
+        result.status = FAILED;
+        result.error = error;
+        return result;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return primary key of the created row (an int, or the composite key of a prescription)
+     */
+    public Object getId() {
+        return id;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isCreated() {
+        return CREATED.equals(status);
+    }
+}
@@ -0,0 +1,81 @@
+/********************************************************************************************************
+ * File:  BulkDeleteResult.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Outcome of a bulk delete: which ids were deleted, which were not, and the rows affected per table.
+ */
+package acmemedical.utility;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of a bulk delete request.  Every requested id is in exactly one of {@link #getDeleted()},
+ * {@link #getNotFound()} and {@link #getConflicts()}.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class BulkDeleteResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Integer> deleted = new ArrayList<>();
+    private final List<Integer> notFound = new ArrayList<>();
+    private final List<Integer> conflicts = new ArrayList<>();
+    private final Map<String, Integer> rowsAffected = new LinkedHashMap<>();
+
+    public BulkDeleteResult() {
+    }
+
+    public void deleted(Collection<Integer> ids) {
+        deleted.addAll(ids);
+    }
+
+    public void notFound(int id) {
+        notFound.add(id);
+    }
+
+    public void conflict(int id) {
+        conflicts.add(id);
+    }
+
+    /**
+     * @param table - table the statement changed
+     * @param rows - rows it deleted (or, for a link, updated)
+     */
+    public void rows(String table, int rows) {
+        rowsAffected.merge(table, rows, Integer::sum);
+    }
+
+    public List<Integer> getDeleted() {
+        return deleted;
+    }
+
+    public List<Integer> getNotFound() {
+        return notFound;
+    }
+
+    /**
+     * @return ids that exist but cannot be deleted, e.g. a medicine that is still prescribed
+     */
+    public List<Integer> getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * @return rows deleted per table, dependent tables first; <code>security_user</code> counts the users unlinked
+     *         from a deleted physician
+     */
+    public Map<String, Integer> getRowsAffected() {
+        return rowsAffected;
+    }
+}
@@ -0,0 +1,53 @@
+/********************************************************************************************************
+ * File:  ConstraintViolationUtil.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Tells which unique key a failed insert collided with.
+ */
+
+package acmemedical.utility;
+
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Hibernate reports every integrity failure (duplicate key, NOT NULL, foreign key) as the same
+ * <code>ConstraintViolationException</code>, and its MySQL dialect does not extract the constraint name.  The
+ * {@link SQLException} underneath does tell them apart: MySQL answers a duplicate with error 1062 and
+ * <code>Duplicate entry '...' for key '[table.]key'</code>; other databases with the standard SQLState 23505.
+ */
+public class ConstraintViolationUtil {
+
+    /** MySQL's ER_DUP_ENTRY */
+    public static final int MYSQL_DUPLICATE_KEY_ERROR = 1062;
+    /** Unique violation in the SQL standard (H2, PostgreSQL, ...) */
+    public static final String UNIQUE_VIOLATION_SQL_STATE = "23505";
+    /** What MySQL calls every primary key */
+    public static final String PRIMARY_KEY = "PRIMARY";
+
+    /**
+     * @param e - exception thrown by a flush or commit, with its causes
+     * @param key - name of the unique key (or {@value #PRIMARY_KEY}) as in the DDL
+     * @return true if <code>e</code> is caused by a duplicate value of <code>key</code>, false for any other failure
+     */
+    public static boolean isDuplicateKey(Throwable e, String key) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                String message = sqlException.getMessage() == null ? "" : sqlException.getMessage();
+                if (sqlException.getErrorCode() == MYSQL_DUPLICATE_KEY_ERROR) {
+                    // MySQL 8.0.19 and later prefix the key with its table
+                    return message.endsWith("for key '" + key + "'") || message.endsWith("." + key + "'");
+                }
+                if (UNIQUE_VIOLATION_SQL_STATE.equals(sqlException.getSQLState())) {
+                    return message.toUpperCase(Locale.ROOT).contains(key.toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        return false;
+    }
+}
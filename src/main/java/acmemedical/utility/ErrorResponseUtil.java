@@ -12,6 +12,7 @@
 
 package acmemedical.utility;
 
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 import acmemedical.rest.resource.HttpErrorResponse;
@@ -30,6 +31,25 @@ public class ErrorResponseUtil {
                        .build();
     }
 
+    public static Response badRequest(String message) {
+        return Response.status(Status.BAD_REQUEST)
+                       .entity(new HttpErrorResponse(400, message))
+                       .build();
+    }
+
+    public static Response payloadTooLarge(String message) {
+        return Response.status(Status.REQUEST_ENTITY_TOO_LARGE)
+                       .entity(new HttpErrorResponse(413, message))
+                       .build();
+    }
+
+    public static Response serviceUnavailable(String message, long retryAfterSeconds) {
+        return Response.status(Status.SERVICE_UNAVAILABLE)
+                       .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                       .entity(new HttpErrorResponse(503, message))
+                       .build();
+    }
+
     public static Response internalServerError(String message) {
         return Response.status(Status.INTERNAL_SERVER_ERROR)
                        .entity(new HttpErrorResponse(500, message))
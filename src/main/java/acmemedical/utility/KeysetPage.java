@@ -0,0 +1,46 @@
+/********************************************************************************************************
+ * File:  KeysetPage.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: One page of a keyset-paginated collection plus the cursor of the next page.
+ */
+
+package acmemedical.utility;
+
+import java.util.List;
+
+/**
+ * One page of a collection read in primary-key order.
+ *
+ * @param <T> entity type
+ */
+public class KeysetPage<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public KeysetPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return value to pass as <code>after</code> to get the next page, null on the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
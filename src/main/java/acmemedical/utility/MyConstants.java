@@ -35,6 +35,7 @@ public interface MyConstants {
     public static final String RESOURCE_PATH_ID_ELEMENT =  "id";
     public static final String RESOURCE_PATH_ID_PATH =  "/{" + RESOURCE_PATH_ID_ELEMENT + "}";
     public static final String CREDENTIAL_RESOURCE_NAME = "credential";
+    public static final String METRICS_RESOURCE_NAME = "metrics";
     public static final String PHYSICIAN_RESOURCE_NAME =  "physician";
     public static final String PATIENT_RESOURCE_NAME = "patient";
     public static final String MEDICAL_CERTIFICATE_RESOURCE_NAME = "medicalcertificate";
@@ -59,6 +60,36 @@ public interface MyConstants {
     public static final String PRESCRIPTION_RESOURCE_PATH_ID_PATH = "physician/{physician_id}/patient/{patient_id}";
     public static final String PRESCRIPTION_RESOURCE_PATH_CREATE_PATH = "physician/{physician_id}/patient/{patient_id}/medicine/{medicine_id}";
 
+    //Keyset pagination of collection GETs
+    public static final String PAGE_AFTER_PARAM = "after";
+    public static final String PAGE_LIMIT_PARAM = "limit";
+    public static final int DEFAULT_PAGE_LIMIT = 100;
+    public static final int MAX_PAGE_LIMIT = 1000;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    //Sparse fieldsets of the GETs: ?fields=firstName,lastName
+    public static final String FIELDS_PARAM = "fields";
+    //Search criteria of the patient and physician collection GETs
+    public static final String PATIENT_LAST_NAME_PARAM = "lastName";
+    public static final String PATIENT_BORN_FROM_PARAM = "bornFrom";
+    public static final String PATIENT_BORN_TO_PARAM = "bornTo";
+    public static final String PATIENT_SMOKER_PARAM = "smoker";
+    public static final String PHYSICIAN_NAME_PARAM = "name";
+    //Medicine search: relevance-ranked full-text, single words answered from the type-ahead index
+    public static final String MEDICINE_SEARCH_PATH = "/search";
+    public static final String SEARCH_QUERY_PARAM = "q";
+    public static final int FULLTEXT_MIN_TOKEN_LENGTH = 3;
+    //Full dumps streamed straight from the JDBC cursor
+    public static final String EXPORT_PATH = "/export";
+    //Bulk create: POST an array, one result per element
+    public static final String BATCH_PATH = "/batch";
+    public static final int MAX_BATCH_ITEMS = 10000;
+    //Retries of POSTs: Idempotency-Key request header, Idempotent-Replayed on a stored response
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    public static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    // bodies are buffered to be hashed: a single entity, never a batch
+    public static final int MAX_IDEMPOTENT_REQUEST_BYTES = 1024 * 1024;
+
     //Security constants
     public static final String USER_ROLE = "USER_ROLE";
     public static final String ADMIN_ROLE = "ADMIN_ROLE";
@@ -74,6 +105,35 @@ public interface MyConstants {
     public static final String DEFAULT_USER = "cst8277";
     public static final String DEFAULT_USER_PASSWORD = "8277";
     public static final String DEFAULT_USER_PREFIX = "user";
+    public static final String CREDENTIAL_CACHE_MAX_SIZE_PROPNAME = "credential-cache-max-size";
+    public static final String DEFAULT_CREDENTIAL_CACHE_MAX_SIZE = "1024";
+    public static final String CREDENTIAL_CACHE_TTL_SECONDS_PROPNAME = "credential-cache-ttl-seconds";
+    public static final String DEFAULT_CREDENTIAL_CACHE_TTL_SECONDS = "300";
+    public static final String BEARER_TOKEN_SIGNING_KEY_PROPNAME = "bearer-token-signing-key";
+    public static final String BEARER_TOKEN_TTL_SECONDS_PROPNAME = "bearer-token-ttl-seconds";
+    public static final String DEFAULT_BEARER_TOKEN_TTL_SECONDS = "900";
+    public static final String ASYNC_RESOURCES_ENABLED_PROPNAME = "async-resources-enabled";
+    public static final String DEFAULT_ASYNC_RESOURCES_ENABLED = "true";
+    public static final String ASYNC_MAX_CONCURRENCY_PROPNAME = "async-max-concurrency";
+    public static final String DEFAULT_ASYNC_MAX_CONCURRENCY = "16";
+    public static final String ASYNC_ACQUIRE_TIMEOUT_MILLIS_PROPNAME = "async-acquire-timeout-millis";
+    public static final String DEFAULT_ASYNC_ACQUIRE_TIMEOUT_MILLIS = "2000";
+    public static final String JDBC_POOL_MAX_SIZE_PROPNAME = "jdbc-pool-max-size";
+    public static final String DEFAULT_JDBC_POOL_MAX_SIZE = "32";
+    public static final String JDBC_POOL_MBEAN_PROPNAME = "jdbc-pool-mbean";
+    public static final String DEFAULT_JDBC_POOL_MBEAN = "amx:pp=/mon/server-mon[server],type=jdbc-connection-pool-mon,name=resources/acmemedicalDB";
+    public static final String SLOW_QUERY_THRESHOLD_MILLIS_PROPNAME = "slow-query-threshold-millis";
+    public static final String DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS = "200";
+    public static final String SQL_SAMPLE_RATE_PROPNAME = "sql-sample-rate";
+    public static final String DEFAULT_SQL_SAMPLE_RATE = "0.01";
+    public static final String SQL_STATEMENTS_WARN_THRESHOLD_PROPNAME = "sql-statements-warn-threshold";
+    public static final String DEFAULT_SQL_STATEMENTS_WARN_THRESHOLD = "100";
+    public static final String MEDICINE_TYPEAHEAD_TTL_SECONDS_PROPNAME = "medicine-typeahead-ttl-seconds";
+    public static final String DEFAULT_MEDICINE_TYPEAHEAD_TTL_SECONDS = "300";
+    public static final String IDEMPOTENCY_TTL_SECONDS_PROPNAME = "idempotency-ttl-seconds";
+    public static final String DEFAULT_IDEMPOTENCY_TTL_SECONDS = "86400";
+    public static final String IDEMPOTENCY_CACHE_MAX_SIZE_PROPNAME = "idempotency-cache-max-size";
+    public static final String DEFAULT_IDEMPOTENCY_CACHE_MAX_SIZE = "1024";
 
     // The nickname of this hash algorithm is 'PBandJ' (Peanut-Butter-And-Jam, like the sandwich!)
     // I would like to use the constants from org.glassfish.soteria.identitystores.hash.Pbkdf2PasswordHashImpl
@@ -0,0 +1,110 @@
+/********************************************************************************************************
+ * File:  PaginationUtil.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Parsing of keyset pagination parameters and building of paged responses.
+ */
+
+package acmemedical.utility;
+
+import static acmemedical.utility.MyConstants.DEFAULT_PAGE_LIMIT;
+import static acmemedical.utility.MyConstants.MAX_PAGE_LIMIT;
+import static acmemedical.utility.MyConstants.NEXT_CURSOR_HEADER;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_PARAM;
+
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.UriInfo;
+
+/**
+ * Collection GETs accept <code>?after=&lt;cursor&gt;&amp;limit=&lt;n&gt;</code>.
+ * The body stays a JSON array so existing clients keep working; the cursor of the next page
+ * is returned in the {@value MyConstants#NEXT_CURSOR_HEADER} header and as a <code>Link: &lt;...&gt;; rel="next"</code> header.
+ */
+public class PaginationUtil {
+
+    public static int parseLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_LIMIT;
+        }
+        if (limit < 1) {
+            throw new BadRequestException("limit must be positive");
+        }
+        return Math.min(limit, MAX_PAGE_LIMIT);
+    }
+
+    /**
+     * @param after - cursor of a single int primary key, null or empty for the first page
+     * @return id to continue after, 0 for the first page
+     */
+    public static int parseAfterId(String after) {
+        if (after == null || after.isBlank()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(after.trim());
+        }
+        catch (NumberFormatException e) {
+            throw new BadRequestException("invalid cursor: " + after);
+        }
+    }
+
+    /**
+     * @param after - cursor of a composite primary key, "a:b"
+     * @return both key parts, {0, 0} for the first page
+     */
+    public static int[] parseAfterCompositeId(String after) {
+        if (after == null || after.isBlank()) {
+            return new int[] { 0, 0 };
+        }
+        String[] parts = after.trim().split(":");
+        if (parts.length != 2) {
+            throw new BadRequestException("invalid cursor: " + after);
+        }
+        try {
+            return new int[] { Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) };
+        }
+        catch (NumberFormatException e) {
+            throw new BadRequestException("invalid cursor: " + after);
+        }
+    }
+
+    /**
+     * @return the trimmed search criterion, null if absent or blank
+     */
+    public static String blankToNull(String criterion) {
+        return criterion == null || criterion.isBlank() ? null : criterion.trim();
+    }
+
+    public static String compositeCursor(int first, int second) {
+        return first + ":" + second;
+    }
+
+    public static Response pagedResponse(KeysetPage<?> page, UriInfo uriInfo) {
+        return pagedResponse(page, uriInfo.getRequestUriBuilder());
+    }
+
+    /**
+     * @param requestUri - builder of the request URI, taken on the request thread when the page is built asynchronously
+     */
+    public static Response pagedResponse(KeysetPage<?> page, UriBuilder requestUri) {
+        return pagedResponse(Response.ok(page.getItems()), page, requestUri);
+    }
+
+    /**
+     * @param builder - response whose body is the page's items, in whatever representation
+     */
+    public static Response pagedResponse(Response.ResponseBuilder builder, KeysetPage<?> page, UriBuilder requestUri) {
+        if (page.hasNext()) {
+            builder.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+            builder.link(requestUri.replaceQueryParam(PAGE_AFTER_PARAM, page.getNextCursor()).build(), "next");
+        }
+        return builder.build();
+    }
+}
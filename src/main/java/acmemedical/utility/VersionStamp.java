@@ -0,0 +1,126 @@
+/********************************************************************************************************
+ * File:  VersionStamp.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: HTTP validators (ETag and Last-Modified) of an entity or of an entity collection.
+ */
+
+package acmemedical.utility;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import jakarta.ws.rs.core.EntityTag;
+
+/**
+ * What a conditional GET compares against: an entity tag and the last modification time.
+ * <p>
+ * One entity gets a strong tag, <code>"&lt;id&gt;-&lt;version&gt;"</code>, with the versions of the entities its
+ * response embeds appended (<code>"3:7-2.5.1.4"</code> for a prescription); any change to any of them makes a new tag.
+ * A collection gets a weak tag, <code>W/"&lt;count&gt;-&lt;latest update&gt;"</code>: it changes with every insert,
+ * update and delete, but does not identify the exact bytes of a page.
+ */
+public class VersionStamp {
+
+    private final EntityTag entityTag;
+    private final LocalDateTime updated;
+
+    protected VersionStamp(EntityTag entityTag, LocalDateTime updated) {
+        this.entityTag = entityTag;
+        this.updated = updated;
+    }
+
+    /**
+     * @param key - the entity's id
+     * @param versions - the entity's version, then the version of each embedded entity (null if absent)
+     * @param updated - latest <code>updated</code> of all of them, may be null
+     * @return strong validators of one entity
+     */
+    public static VersionStamp of(String key, List<?> versions, LocalDateTime updated) {
+        String version = versions.stream().map(v -> Objects.toString(v, "0")).collect(Collectors.joining("."));
+        return new VersionStamp(new EntityTag(key + "-" + version), updated);
+    }
+
+    /**
+     * @param count - number of rows
+     * @param updated - latest <code>updated</code> of the rows (and of the entities they embed), null if there are none
+     * @return weak validators of a collection
+     */
+    public static VersionStamp ofCollection(long count, LocalDateTime updated) {
+        long millis = updated == null ? 0 : toDate(updated).getTime();
+        return new VersionStamp(new EntityTag(count + "-" + millis, true), updated);
+    }
+
+    /**
+     * @param ids - the id, or the parts of a composite id
+     * @return id part of the entity tag, e.g. <code>3:7</code> for a prescription
+     */
+    public static String key(int... ids) {
+        return Arrays.stream(ids).mapToObj(String::valueOf).collect(Collectors.joining(":"));
+    }
+
+    /**
+     * @param tag - an entity tag made by {@link #of(String, List, LocalDateTime)}
+     * @param key - {@link #key(int...)} of the entity
+     * @return the entity's own version in <code>tag</code>, null if <code>tag</code> is weak or not a tag of this entity
+     */
+    public static Long versionOf(EntityTag tag, String key) {
+        String prefix = key + "-";
+        if (tag.isWeak() || !tag.getValue().startsWith(prefix)) {
+            return null;
+        }
+        String versions = tag.getValue().substring(prefix.length());
+        int end = versions.indexOf('.');
+        try {
+            return Long.valueOf(end < 0 ? versions : versions.substring(0, end));
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the later of two timestamps, either may be null
+     */
+    public static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isAfter(b) ? a : b;
+    }
+
+    public EntityTag getEntityTag() {
+        return entityTag;
+    }
+
+    public LocalDateTime getUpdated() {
+        return updated;
+    }
+
+    /**
+     * @return value of the <code>Last-Modified</code> header, null if not known
+     */
+    public Date getLastModified() {
+        return updated == null ? null : toDate(updated);
+    }
+
+    // updated is written by PojoListener with LocalDateTime.now(), i.e. in the server's time zone
+    private static Date toDate(LocalDateTime time) {
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    @Override
+    public String toString() {
+        return "VersionStamp [entityTag=" + entityTag + ", updated=" + updated + "]";
+    }
+}
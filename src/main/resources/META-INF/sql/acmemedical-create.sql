@@ -27,7 +27,10 @@ CREATE TABLE IF NOT EXISTS `physician` (
   `created` DATETIME NULL,
   `updated` DATETIME NULL,
   `version` BIGINT NOT NULL DEFAULT 1,
-  PRIMARY KEY (`id`)
+  PRIMARY KEY (`id`),
+  INDEX `idx_physician_last_first` (`last_name` ASC, `first_name` ASC) VISIBLE,
+  INDEX `idx_physician_first` (`first_name` ASC) VISIBLE,
+  INDEX `idx_physician_updated` (`updated` ASC) VISIBLE
 );
 
 -- -----------------------------------------------------
@@ -41,7 +44,8 @@ CREATE TABLE IF NOT EXISTS `medical_school` (
   `updated` DATETIME NULL,
   `version` BIGINT NOT NULL DEFAULT 1,
   PRIMARY KEY (`school_id`),
-  UNIQUE INDEX `name_UNIQUE` (`name` ASC) VISIBLE
+  UNIQUE INDEX `name_UNIQUE` (`name` ASC) VISIBLE,
+  INDEX `idx_medical_school_updated` (`updated` ASC) VISIBLE
 );
 
 -- -----------------------------------------------------
@@ -58,6 +62,7 @@ CREATE TABLE IF NOT EXISTS `medical_training` (
   `version` BIGINT NOT NULL DEFAULT 1,
   PRIMARY KEY (`training_id`),
   INDEX `fk_medical_training_medical_school_idx` (`school_id` ASC) VISIBLE,
+  INDEX `idx_medical_training_updated` (`updated` ASC) VISIBLE,
   CONSTRAINT `fk_medical_training_medical_school1`
     FOREIGN KEY (`school_id`) REFERENCES `medical_school` (`school_id`) ON DELETE NO ACTION ON UPDATE NO ACTION
 );
@@ -77,6 +82,7 @@ CREATE TABLE IF NOT EXISTS `medical_certificate` (
   INDEX `fk_medical_certificate_medical_training_idx` (`training_id` ASC) VISIBLE,
   UNIQUE INDEX `certificate_id_UNIQUE` (`certificate_id` ASC) VISIBLE,
   PRIMARY KEY (`certificate_id`),
+  INDEX `idx_medical_certificate_updated` (`updated` ASC) VISIBLE,
   CONSTRAINT `fk_medical_certificate_physician1`
     FOREIGN KEY (`physician_id`)
     REFERENCES `physician` (`id`)
@@ -100,7 +106,9 @@ CREATE TABLE IF NOT EXISTS `medicine` (
   `created` DATETIME NULL,
   `updated` DATETIME NULL,
   `version` BIGINT NOT NULL DEFAULT 1,
-  PRIMARY KEY (`medicine_id`)
+  PRIMARY KEY (`medicine_id`),
+  FULLTEXT INDEX `ft_medicine_search` (`drug_name`, `manufacturer_name`, `dosage_information`),
+  INDEX `idx_medicine_updated` (`updated` ASC) VISIBLE
 );
 
 -- -----------------------------------------------------
@@ -118,7 +126,10 @@ CREATE TABLE IF NOT EXISTS `patient` (
   `created` DATETIME NULL,
   `updated` DATETIME NULL,
   `version` BIGINT NOT NULL DEFAULT 1,
-  PRIMARY KEY (`patient_id`)
+  PRIMARY KEY (`patient_id`),
+  INDEX `idx_patient_last_first` (`last_name` ASC, `first_name` ASC) VISIBLE,
+  INDEX `idx_patient_year_of_birth` (`year_of_birth` ASC) VISIBLE,
+  INDEX `idx_patient_updated` (`updated` ASC) VISIBLE
 );
 
 -- -----------------------------------------------------
@@ -136,6 +147,7 @@ CREATE TABLE IF NOT EXISTS `prescription` (
   PRIMARY KEY (`physician_id`, `patient_id`),
   INDEX `fk_prescription_patient1_idx` (`patient_id` ASC) VISIBLE,
   INDEX `fk_prescription_physician1_idx` (`physician_id` ASC) VISIBLE,
+  INDEX `idx_prescription_updated` (`updated` ASC) VISIBLE,
   CONSTRAINT `fk_prescription_medicine1`
     FOREIGN KEY (`medicine_id`)
     REFERENCES `medicine` (`medicine_id`)
@@ -160,6 +172,7 @@ CREATE TABLE IF NOT EXISTS `security_user` (
   `password_hash` VARCHAR(256) NOT NULL,
   `username` VARCHAR(100) NOT NULL,
   `physician_id` INT NULL DEFAULT NULL,
+  `version` BIGINT NOT NULL DEFAULT 1,
   PRIMARY KEY (`user_id`),
   UNIQUE INDEX `user_id_UNIQUE` (`user_id` ASC) VISIBLE,
   UNIQUE INDEX `username_UNIQUE` (`username` ASC) VISIBLE,
@@ -202,6 +215,34 @@ CREATE TABLE IF NOT EXISTS `user_has_role` (
     ON UPDATE NO ACTION
 );
 
+-- -----------------------------------------------------
+-- Table `id_generator`
+-- Sequence emulation for PojoBase ids (PooledTableIdGenerator): one row per entity table,
+-- `next_val` is the first id of the next block handed out.  Rows are seeded in acmemedical-data.sql.
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `id_generator` (
+  `table_name` VARCHAR(255) NOT NULL,
+  `next_val` BIGINT NOT NULL,
+  PRIMARY KEY (`table_name`)
+);
+
+-- -----------------------------------------------------
+-- Table `idempotency_key`
+-- Responses of POSTs sent with an Idempotency-Key header (IdempotencyStore), replayed to retries of the request.
+-- `record_key` is a SHA-256 of user, method, path and key; `status` 0 marks a request still running.
+-- Expired rows are purged by the application, through `idx_idempotency_key_expires`.
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `idempotency_key` (
+  `record_key` CHAR(64) NOT NULL,
+  `request_hash` CHAR(64) NOT NULL,
+  `status` INT NOT NULL,
+  `content_type` VARCHAR(100) NULL,
+  `body` MEDIUMTEXT NULL,
+  `expires` DATETIME NOT NULL,
+  PRIMARY KEY (`record_key`),
+  INDEX `idx_idempotency_key_expires` (`expires` ASC) VISIBLE
+);
+
 -- Copied from Scripts/reset auto increment.sql
 USE `acmemedical`;
 ALTER TABLE physician AUTO_INCREMENT = 1;
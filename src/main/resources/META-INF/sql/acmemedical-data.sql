@@ -44,4 +44,13 @@ INSERT INTO `security_user` (`user_id`, `password_hash`, `username`, `physician_
 --  data for table `user_has_role`
 INSERT INTO `user_has_role` (`user_id`, `role_id`)
   VALUES (1,1), (2,2);
+
+-- seed `id_generator` past the ids inserted above (see PooledTableIdGenerator)
+INSERT INTO `id_generator` (`table_name`, `next_val`)
+  SELECT 'physician', COALESCE(MAX(`id`), 0) + 1 FROM `physician`
+  UNION ALL SELECT 'medical_school', COALESCE(MAX(`school_id`), 0) + 1 FROM `medical_school`
+  UNION ALL SELECT 'medical_training', COALESCE(MAX(`training_id`), 0) + 1 FROM `medical_training`
+  UNION ALL SELECT 'medical_certificate', COALESCE(MAX(`certificate_id`), 0) + 1 FROM `medical_certificate`
+  UNION ALL SELECT 'medicine', COALESCE(MAX(`medicine_id`), 0) + 1 FROM `medicine`
+  UNION ALL SELECT 'patient', COALESCE(MAX(`patient_id`), 0) + 1 FROM `patient`;
 -------------------------------
\ No newline at end of file
@@ -0,0 +1,28 @@
+-- -----------------------------------------------------
+-- Migrate an existing ACMEMedical database from AUTO_INCREMENT keys to PooledTableIdGenerator
+--
+-- Run once, with the application stopped, before deploying the version that generates PojoBase ids
+-- from `id_generator`.  Each entity table gets a row whose `next_val` is one past its current highest id.
+-- Re-running it is harmless: existing rows are moved forward, never backward.
+--
+-- The AUTO_INCREMENT attribute of the id columns is left in place; rows inserted by hand without an id still work,
+-- but any such insert must be followed by re-running this script before the application inserts again.
+-- -----------------------------------------------------
+USE `acmemedical`;
+
+CREATE TABLE IF NOT EXISTS `id_generator` (
+  `table_name` VARCHAR(255) NOT NULL,
+  `next_val` BIGINT NOT NULL,
+  PRIMARY KEY (`table_name`)
+);
+
+INSERT INTO `id_generator` (`table_name`, `next_val`)
+  SELECT * FROM (
+    SELECT 'physician' AS `table_name`, COALESCE(MAX(`id`), 0) + 1 AS `next_val` FROM `physician`
+    UNION ALL SELECT 'medical_school', COALESCE(MAX(`school_id`), 0) + 1 FROM `medical_school`
+    UNION ALL SELECT 'medical_training', COALESCE(MAX(`training_id`), 0) + 1 FROM `medical_training`
+    UNION ALL SELECT 'medical_certificate', COALESCE(MAX(`certificate_id`), 0) + 1 FROM `medical_certificate`
+    UNION ALL SELECT 'medicine', COALESCE(MAX(`medicine_id`), 0) + 1 FROM `medicine`
+    UNION ALL SELECT 'patient', COALESCE(MAX(`patient_id`), 0) + 1 FROM `patient`
+  ) AS `current_max`
+ON DUPLICATE KEY UPDATE `next_val` = GREATEST(`id_generator`.`next_val`, `current_max`.`next_val`);
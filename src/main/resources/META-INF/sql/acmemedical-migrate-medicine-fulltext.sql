@@ -0,0 +1,19 @@
+-- -----------------------------------------------------
+-- Add the FULLTEXT index of the medicine search to an existing ACMEMedical database
+--
+-- acmemedical-create.sql already has it; run this once on a database created before, ahead of deploying the
+-- version with GET /medicine/search (the Medicine.fulltextSearch query fails without the index).  If the index is
+-- already there nothing is done, so re-running it is harmless.
+--
+-- The first FULLTEXT index of an InnoDB table rebuilds the table and only allows reads while it is built: run it
+-- with the application stopped or at a quiet time.  Words shorter than innodb_ft_min_token_size (3 by default,
+-- FULLTEXT_MIN_TOKEN_LENGTH in the application) are not indexed.
+-- -----------------------------------------------------
+USE `acmemedical`;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'medicine' AND index_name = 'ft_medicine_search') = 0,
+  'CREATE FULLTEXT INDEX `ft_medicine_search` ON `medicine` (`drug_name`, `manufacturer_name`, `dosage_information`)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -0,0 +1,40 @@
+-- -----------------------------------------------------
+-- Add the indexes of the patient and physician searches to an existing ACMEMedical database
+--
+-- acmemedical-create.sql already has them; run this once on a database created before, e.g. while deploying the
+-- version with GET /patient?lastName=&bornFrom=&bornTo=&smoker= and GET /physician?name=.  An index that is
+-- already there is skipped, so re-running it is harmless.  InnoDB builds the indexes online: the tables stay
+-- readable and writable meanwhile.
+-- -----------------------------------------------------
+USE `acmemedical`;
+
+-- patient(last_name, first_name): lastName prefix
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'patient' AND index_name = 'idx_patient_last_first') = 0,
+  'CREATE INDEX `idx_patient_last_first` ON `patient` (`last_name` ASC, `first_name` ASC)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- patient(year_of_birth): bornFrom/bornTo range
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'patient' AND index_name = 'idx_patient_year_of_birth') = 0,
+  'CREATE INDEX `idx_patient_year_of_birth` ON `patient` (`year_of_birth` ASC)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- physician(last_name, first_name) and physician(first_name): name prefix of either column
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'physician' AND index_name = 'idx_physician_last_first') = 0,
+  'CREATE INDEX `idx_physician_last_first` ON `physician` (`last_name` ASC, `first_name` ASC)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'physician' AND index_name = 'idx_physician_first') = 0,
+  'CREATE INDEX `idx_physician_first` ON `physician` (`first_name` ASC)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
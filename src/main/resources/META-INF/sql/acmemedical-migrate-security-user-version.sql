@@ -0,0 +1,15 @@
+-- -----------------------------------------------------
+-- Add the version column of security_user to an existing ACMEMedical database
+--
+-- acmemedical-create.sql already has it; run this once on a database created before, ahead of deploying the
+-- version where SecurityUser is versioned (its roles changing alone then invalidates the cached credentials).
+-- Existing users start at version 1.  If the column is already there nothing is done, so re-running it is harmless.
+-- -----------------------------------------------------
+USE `acmemedical`;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'security_user' AND column_name = 'version') = 0,
+  'ALTER TABLE `security_user` ADD COLUMN `version` BIGINT NOT NULL DEFAULT 1', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
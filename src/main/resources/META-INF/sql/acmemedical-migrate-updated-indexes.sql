@@ -0,0 +1,59 @@
+-- -----------------------------------------------------
+-- Add the `updated` indexes of the collection stamps to an existing ACMEMedical database
+--
+-- acmemedical-create.sql already has them; run this once on a database created before, e.g. while deploying the
+-- version with conditional collection GETs (ETag/Last-Modified of GET /physician, /patient, ...).  Without them
+-- every MAX(updated) of ACMEMedicalService.getCollectionStamp scans its table.  An index that is already there is
+-- skipped, so re-running it is harmless.  InnoDB builds the indexes online: the tables stay readable and writable
+-- meanwhile.
+-- -----------------------------------------------------
+USE `acmemedical`;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'physician' AND index_name = 'idx_physician_updated') = 0,
+  'CREATE INDEX `idx_physician_updated` ON `physician` (`updated` ASC)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'medical_school' AND index_name = 'idx_medical_school_updated') = 0,
+  'CREATE INDEX `idx_medical_school_updated` ON `medical_school` (`updated` ASC)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'medical_training' AND index_name = 'idx_medical_training_updated') = 0,
+  'CREATE INDEX `idx_medical_training_updated` ON `medical_training` (`updated` ASC)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'medical_certificate' AND index_name = 'idx_medical_certificate_updated') = 0,
+  'CREATE INDEX `idx_medical_certificate_updated` ON `medical_certificate` (`updated` ASC)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'medicine' AND index_name = 'idx_medicine_updated') = 0,
+  'CREATE INDEX `idx_medicine_updated` ON `medicine` (`updated` ASC)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'patient' AND index_name = 'idx_patient_updated') = 0,
+  'CREATE INDEX `idx_patient_updated` ON `patient` (`updated` ASC)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'prescription' AND index_name = 'idx_prescription_updated') = 0,
+  'CREATE INDEX `idx_prescription_updated` ON `prescription` (`updated` ASC)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -0,0 +1,185 @@
+/********************************************************************************************************
+ * File:  EntityLockTest.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Tests of the striped per-entity write locks (no database needed).
+ */
+package acmemedical.ejb;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import jakarta.interceptor.InvocationContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import acmemedical.entity.Patient;
+import acmemedical.entity.Physician;
+import acmemedical.entity.Prescription;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class EntityLockTest {
+
+    // stand-ins for ACMEMedicalService methods
+    static class Target {
+        @WriteLock(Patient.class)
+        public void updatePatient(int id, Patient updates) {
+        }
+
+        @WriteLock(Prescription.class)
+        public void updatePrescription(int physicianId, int patientId, Prescription updates) {
+        }
+
+        public void getPatient(int id) {
+        }
+    }
+
+    private static Method method(String name) {
+        for (Method m : Target.class.getMethods()) {
+            if (m.getName().equals(name)) {
+                return m;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    /**
+     * An InvocationContext for <code>method(params)</code> whose proceed() runs <code>body</code>
+     */
+    private static InvocationContext invocation(Method method, Object[] params, Runnable body) {
+        return (InvocationContext) Proxy.newProxyInstance(EntityLockTest.class.getClassLoader(),
+            new Class<?>[] { InvocationContext.class }, (proxy, m, args) -> switch (m.getName()) {
+                case "getMethod" -> method;
+                case "getParameters" -> params;
+                case "proceed" -> {
+                    body.run();
+                    yield null;
+                }
+                default -> throw new UnsupportedOperationException(m.getName());
+            });
+    }
+
+    @Test
+    @Order(1)
+    public void test01_SameKey_sameStripe() {
+        EntityLockManager locks = new EntityLockManager();
+        assertSame(locks.stripeFor(Patient.class, 42), locks.stripeFor(Patient.class, 42));
+        assertSame(locks.stripeFor(Prescription.class, 1, 2), locks.stripeFor(Prescription.class, 1, 2));
+    }
+
+    @Test
+    @Order(2)
+    public void test02_SequentialIds_spreadOverStripes() {
+        EntityLockManager locks = new EntityLockManager();
+        Set<ReentrantLock> used = new HashSet<>();
+        for (int id = 1; id <= 1000; id++) {
+            used.add(locks.stripeFor(Physician.class, id));
+        }
+        // a fixed number of locks, most of them in use
+        assertTrue(used.size() <= EntityLockManager.DEFAULT_STRIPES);
+        assertTrue(used.size() > EntityLockManager.DEFAULT_STRIPES * 3 / 4, "only " + used.size() + " stripes used");
+    }
+
+    @Test
+    @Order(3)
+    public void test03_SameRow_secondWriterWaits() throws Exception {
+        EntityLockManager locks = new EntityLockManager();
+        ReentrantLock held = locks.lock(Patient.class, 7);
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            locks.unlock(locks.lock(Patient.class, 7));
+            acquired.countDown();
+        });
+        writer.start();
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS), "second writer got the row while it was locked");
+        locks.unlock(held);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        writer.join();
+        assertEquals(2, locks.getAcquisitions());
+        assertEquals(1, locks.getContended());
+        assertTrue(locks.getTotalWaitNanos() > 0);
+    }
+
+    @Test
+    @Order(4)
+    public void test04_Interceptor_keyFromLeadingIntParameters() {
+        EntityLockInterceptor interceptor = new EntityLockInterceptor();
+        assertArrayEquals(new int[] { 3 }, interceptor.keyOf(new Object[] { 3, new Patient() }));
+        assertArrayEquals(new int[] { 3, 4 }, interceptor.keyOf(new Object[] { 3, 4, new Prescription() }));
+        Patient patient = new Patient();
+        patient.setId(9);
+        assertArrayEquals(new int[] { 9 }, interceptor.keyOf(new Object[] { patient }));
+    }
+
+    @Test
+    @Order(5)
+    public void test05_Interceptor_releasesLockOnException() throws Exception {
+        EntityLockInterceptor interceptor = new EntityLockInterceptor();
+        ReentrantLock stripe = interceptor.getLockManager().stripeFor(Patient.class, 5);
+        AtomicBoolean heldDuringCall = new AtomicBoolean();
+        InvocationContext failing = invocation(method("updatePatient"), new Object[] { 5, new Patient() }, () -> {
+            heldDuringCall.set(stripe.isHeldByCurrentThread());
+            throw new IllegalStateException("update failed");
+        });
+        assertThrows(IllegalStateException.class, () -> interceptor.lockEntity(failing));
+        assertTrue(heldDuringCall.get());
+        assertFalse(stripe.isLocked(), "lock still held after the method threw");
+    }
+
+    @Test
+    @Order(6)
+    public void test06_Interceptor_readsTakeNoLock() throws Exception {
+        EntityLockInterceptor interceptor = new EntityLockInterceptor();
+        ReentrantLock stripe = interceptor.getLockManager().stripeFor(Patient.class, 5);
+        AtomicBoolean held = new AtomicBoolean();
+        interceptor.lockEntity(invocation(method("getPatient"), new Object[] { 5 }, () -> held.set(stripe.isLocked())));
+        assertFalse(held.get());
+        assertEquals(0, interceptor.getLockManager().getAcquisitions());
+    }
+
+    @Test
+    @Order(7)
+    public void test07_Interceptor_holdsLockUntilTransactionCompletes() throws Exception {
+        List<Synchronization> registered = new ArrayList<>();
+        EntityLockInterceptor interceptor = new EntityLockInterceptor();
+        interceptor.transactionRegistry = (TransactionSynchronizationRegistry) Proxy.newProxyInstance(
+            EntityLockTest.class.getClassLoader(), new Class<?>[] { TransactionSynchronizationRegistry.class },
+            (proxy, m, args) -> switch (m.getName()) {
+                case "getTransactionStatus" -> Status.STATUS_ACTIVE;
+                case "registerInterposedSynchronization" -> {
+                    registered.add((Synchronization) args[0]);
+                    yield null;
+                }
+                default -> throw new UnsupportedOperationException(m.getName());
+            });
+        ReentrantLock stripe = interceptor.getLockManager().stripeFor(Patient.class, 5);
+        interceptor.lockEntity(invocation(method("updatePatient"), new Object[] { 5, new Patient() }, () -> { }));
+
+        // the method returned, its changes are not committed yet
+        assertTrue(stripe.isHeldByCurrentThread());
+        assertEquals(1, registered.size());
+        registered.get(0).afterCompletion(Status.STATUS_COMMITTED);
+        assertFalse(stripe.isLocked(), "lock still held after the transaction completed");
+    }
+}
@@ -0,0 +1,230 @@
+/********************************************************************************************************
+ * File:  JdbcPoolMetricsTest.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Tests of the connection pool gauges and the metered connection provider (no server or database needed).
+ */
+package acmemedical.ejb;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Timer;
+import org.hibernate.cfg.AvailableSettings;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class JdbcPoolMetricsTest {
+
+    private static final String POOL = "amx:pp=/mon/server-mon[server],type=jdbc-connection-pool-mon,name=resources/testPool";
+
+    /**
+     * Stand-in for Payara's pool monitoring MBean: statistics as composite data, like AMX exposes them
+     */
+    static class PoolMBean implements DynamicMBean {
+        final Map<String, Object> attributes = new HashMap<>();
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            if (!attributes.containsKey(attribute)) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return attributes.get(attribute);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            return new MBeanInfo(PoolMBean.class.getName(), "pool", null, null, null, null);
+        }
+    }
+
+    private static CompositeData statistic(String key, long value) throws Exception {
+        CompositeType type = new CompositeType("Statistic", "Statistic", new String[] { key, "name" },
+            new String[] { key, "name" }, new OpenType<?>[] { SimpleType.LONG, SimpleType.STRING });
+        return new CompositeDataSupport(type, new String[] { key, "name" }, new Object[] { value, key });
+    }
+
+    /**
+     * Statistics of a pool with 3 connections in use, 5 idle and 2 requests waiting
+     */
+    private static JdbcPoolStatistics busyPool() throws Exception {
+        PoolMBean mbean = new PoolMBean();
+        mbean.attributes.put(JdbcPoolStatistics.NUM_CONN_USED, statistic("current", 3));
+        mbean.attributes.put(JdbcPoolStatistics.NUM_CONN_FREE, statistic("current", 5));
+        mbean.attributes.put(JdbcPoolStatistics.WAIT_QUEUE_LENGTH, statistic("count", 2));
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        server.registerMBean(mbean, new ObjectName(POOL));
+        return new JdbcPoolStatistics(server, new ObjectName(POOL));
+    }
+
+    /**
+     * JdbcPoolMetrics whose registry keeps the gauges in <code>gauges</code>
+     */
+    private static JdbcPoolMetrics metricsInto(Map<String, Supplier<?>> gauges) {
+        JdbcPoolMetrics metrics = new JdbcPoolMetrics();
+        metrics.maxPoolSize = 32;
+        metrics.metricRegistry = (MetricRegistry) Proxy.newProxyInstance(JdbcPoolMetricsTest.class.getClassLoader(),
+            new Class<?>[] { MetricRegistry.class }, (proxy, m, args) -> {
+                if (m.getName().equals("gauge") && args.length == 3 && args[1] instanceof Supplier<?> supplier) {
+                    gauges.put((String) args[0], supplier);
+                    return null;
+                }
+                throw new UnsupportedOperationException(m.getName());
+            });
+        return metrics;
+    }
+
+    private static double gauge(Map<String, Supplier<?>> gauges, String name) {
+        return ((Number) gauges.get(JdbcPoolMetrics.POOL_METRIC_PREFIX + name).get()).doubleValue();
+    }
+
+    /**
+     * A timer counting its updates
+     */
+    private static Timer countingTimer(AtomicInteger updates) {
+        return (Timer) Proxy.newProxyInstance(JdbcPoolMetricsTest.class.getClassLoader(), new Class<?>[] { Timer.class },
+            (proxy, m, args) -> {
+                if (m.getName().equals("update")) {
+                    updates.incrementAndGet();
+                    return null;
+                }
+                throw new UnsupportedOperationException(m.getName());
+            });
+    }
+
+    @Test
+    @Order(1)
+    public void test01_Statistics_readFromPoolMBean() throws Exception {
+        JdbcPoolStatistics pool = busyPool();
+        assertEquals(3, pool.getUsed());
+        assertEquals(5, pool.getFree());
+        assertEquals(2, pool.getWaiting());
+    }
+
+    @Test
+    @Order(2)
+    public void test02_Statistics_nanWithoutMonitoring() throws Exception {
+        // monitoring off: no MBean at all
+        JdbcPoolStatistics off = new JdbcPoolStatistics(MBeanServerFactory.newMBeanServer(), new ObjectName(POOL));
+        assertTrue(Double.isNaN(off.getUsed()));
+        assertTrue(Double.isNaN(off.getWaiting()));
+
+        // an MBean without the attribute, or with a value that is no statistic
+        PoolMBean mbean = new PoolMBean();
+        mbean.attributes.put(JdbcPoolStatistics.NUM_CONN_FREE, "five");
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        server.registerMBean(mbean, new ObjectName(POOL));
+        JdbcPoolStatistics partial = new JdbcPoolStatistics(server, new ObjectName(POOL));
+        assertTrue(Double.isNaN(partial.getUsed()));
+        assertTrue(Double.isNaN(partial.getFree()));
+    }
+
+    @Test
+    @Order(3)
+    public void test03_Gauges_fromPoolStatistics() throws Exception {
+        Map<String, Supplier<?>> gauges = new HashMap<>();
+        metricsInto(gauges).registerGauges(busyPool());
+        assertEquals(3, gauge(gauges, "active"));
+        assertEquals(5, gauge(gauges, "idle"));
+        assertEquals(2, gauge(gauges, "waiters"));
+        assertEquals(32, gauge(gauges, "max"));
+        assertEquals(29, gauge(gauges, "available"));
+    }
+
+    @Test
+    @Order(4)
+    public void test04_Gauges_unknownWithoutMonitoring() throws Exception {
+        Map<String, Supplier<?>> gauges = new HashMap<>();
+        metricsInto(gauges).registerGauges(new JdbcPoolStatistics(MBeanServerFactory.newMBeanServer(), new ObjectName(POOL)));
+        // not "32 available" while nothing is known about the pool
+        assertTrue(Double.isNaN(gauge(gauges, "available")));
+        assertTrue(Double.isNaN(gauge(gauges, "active")));
+        assertEquals(32, gauge(gauges, "max"));
+    }
+
+    @Test
+    @Order(5)
+    public void test05_Provider_timesEveryCheckout() throws Exception {
+        AtomicInteger checkouts = new AtomicInteger();
+        Connection connection = (Connection) Proxy.newProxyInstance(JdbcPoolMetricsTest.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, (proxy, m, args) -> null);
+        // the second checkout times out on a full pool
+        DataSource dataSource = (DataSource) Proxy.newProxyInstance(JdbcPoolMetricsTest.class.getClassLoader(),
+            new Class<?>[] { DataSource.class }, (proxy, m, args) -> {
+                if (m.getName().equals("getConnection")) {
+                    if (checkouts.incrementAndGet() > 1) {
+                        throw new SQLException("pool exhausted");
+                    }
+                    return connection;
+                }
+                throw new UnsupportedOperationException(m.getName());
+            });
+        MeteredConnectionProvider provider = new MeteredConnectionProvider();
+        provider.configure(Map.of(AvailableSettings.DATASOURCE, dataSource));
+
+        AtomicInteger updates = new AtomicInteger();
+        MeteredConnectionProvider.setAcquisitionTimer(countingTimer(updates));
+        try {
+            assertSame(connection, provider.getConnection());
+            assertEquals(1, updates.get());
+            provider.closeConnection(connection);
+            assertThrows(SQLException.class, provider::getConnection);
+            assertEquals(2, updates.get());
+        }
+        finally {
+            MeteredConnectionProvider.setAcquisitionTimer(null);
+        }
+    }
+}
@@ -13,7 +13,14 @@ package acmemedical.ejb;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
@@ -23,19 +30,46 @@ import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
 
+import jakarta.ejb.SessionContext;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.NoResultException;
 import jakarta.persistence.Persistence;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.ClientErrorException;
 import jakarta.ws.rs.core.Response;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.glassfish.soteria.identitystores.hash.Pbkdf2PasswordHashImpl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
 import acmemedical.ejb.ACMEMedicalService;
+import acmemedical.ejb.IdempotencyStore.Claim;
+import acmemedical.ejb.IdempotencyStore.Outcome;
 import acmemedical.entity.Physician;
 import acmemedical.entity.Patient;
 import acmemedical.entity.Medicine;
 import acmemedical.entity.Prescription;
 import acmemedical.entity.MedicalTraining;
 import acmemedical.entity.MedicalCertificate;
+import acmemedical.entity.MedicalSchool;
+import acmemedical.entity.PublicSchool;
+import acmemedical.entity.DurationAndStatus;
+import acmemedical.entity.PrescriptionPK;
+import acmemedical.entity.SecurityRole;
+import acmemedical.entity.SecurityUser;
+import acmemedical.rest.ConfigureJacksonObjectMapper;
+import acmemedical.security.CredentialCache;
+import acmemedical.utility.BatchItemResult;
+import acmemedical.utility.BulkDeleteResult;
+import acmemedical.utility.KeysetPage;
+import acmemedical.utility.VersionStamp;
 
 
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
@@ -151,14 +185,7 @@ public class ServiceTest {
     public void test07_CreateAndFindPatient() {
         em.getTransaction().begin();
 
-        Patient p = new Patient();
-        p.setFirstName("Alice");
-        p.setLastName("Smith");
-        p.setYear(1990);
-        p.setAddress("789 Maple Avenue");
-        p.setHeight(165);
-        p.setWeight(60);
-        p.setSmoker((byte) 0); 
+        Patient p = newPatient("Alice", "Smith", 1990, "789 Maple Avenue");
 
         em.persist(p);
         em.flush();
@@ -202,13 +229,930 @@ public class ServiceTest {
         
         // Delete Physician
         em.getTransaction().begin();
-        service.deletePhysicianById(id);
+        BulkDeleteResult result = service.deletePhysicianById(id);
         em.getTransaction().commit();
+        assertEquals(List.of(id), result.getDeleted());
+        assertEquals(1, result.getRowsAffected().get("physician"));
 
         // Clear cache
         em.clear();
         assertNull(service.getPhysicianById(id));
+
+        // gone now: reported, not an error
+        em.getTransaction().begin();
+        result = service.deletePhysicianById(id);
+        em.getTransaction().commit();
+        assertEquals(List.of(id), result.getNotFound());
+        assertTrue(result.getDeleted().isEmpty());
+    }
+
+    @Test
+    @Order(11)
+    public void test11_GetPage_followsCursorInIdOrder() {
+        List<Patient> seeded = new ArrayList<>();
+        em.getTransaction().begin();
+        for (int i = 0; i < 2; i++) {
+            Patient p = newPatient("Cursor" + i, "Page", 1970 + i, "2 Cursor Road");
+            em.persist(p);
+            seeded.add(p);
+        }
+        em.getTransaction().commit();
+
+        // starting just before the seeded rows, there is always a next page
+        KeysetPage<Patient> first = service.getPage(Patient.class, seeded.get(0).getId() - 1, 1);
+        assertEquals(1, first.getItems().size());
+        assertEquals(seeded.get(0).getId(), first.getItems().get(0).getId());
+        assertTrue(first.hasNext());
+        KeysetPage<Patient> second = service.getPage(Patient.class, Integer.parseInt(first.getNextCursor()), 1);
+        assertEquals(1, second.getItems().size());
+        assertEquals(seeded.get(1).getId(), second.getItems().get(0).getId());
+    }
+
+    @Test
+    @Order(12)
+    public void test12_GetPrescriptionPage_compositeCursor() {
+        KeysetPage<Prescription> page = service.getPrescriptionPage(0, 0, 1000);
+        assertTrue(page.getItems().size() <= 1000);
+        for (int i = 1; i < page.getItems().size(); i++) {
+            PrescriptionPK prev = page.getItems().get(i - 1).getId();
+            PrescriptionPK cur = page.getItems().get(i).getId();
+            assertTrue(prev.getPhysicianId() < cur.getPhysicianId()
+                || (prev.getPhysicianId() == cur.getPhysicianId() && prev.getPatientId() < cur.getPatientId()));
+        }
+    }
+
+    @Test
+    @Order(13)
+    public void test13_StreamPatients_visitsEveryRow() {
+        int[] count = { 0 };
+        service.streamPatients(p -> count[0]++);
+        assertEquals(service.getAllPatients().size(), count[0]);
+    }
+
+    /**
+     * N+1 guard: reading a page and serializing it like the REST layer does must not issue
+     * more than a fixed number of SQL statements, whatever the number of rows.
+     */
+    private static final long MAX_STATEMENTS_PER_REQUEST = 3;
+
+    private long statementsFor(Runnable request) {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        em.clear();
+        statistics.clear();
+        request.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * Like {@link #statementsFor(Runnable)}, but <code>request</code> gets its own persistence context and service, as
+     * every REST request does: only a new persistence context reads what earlier ones put in the second-level cache.
+     */
+    private long statementsForNewRequest(Consumer<ACMEMedicalService> request) {
+        EntityManager requestEm = emf.createEntityManager();
+        try {
+            ACMEMedicalService requestService = new ACMEMedicalService();
+            requestService.em = requestEm;
+            Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+            statistics.clear();
+            request.accept(requestService);
+            return statistics.getPrepareStatementCount();
+        }
+        finally {
+            requestEm.close();
+        }
+    }
+
+    private void serialize(Object response) {
+        try {
+            new ConfigureJacksonObjectMapper().getContext(Object.class).writeValueAsString(response);
+        }
+        catch (JsonProcessingException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    @Order(14)
+    public void test14_PrescriptionPage_boundedStatements() {
+        long count = statementsFor(() -> serialize(service.getPrescriptionPage(0, 0, 100).getItems()));
+        assertTrue(count <= MAX_STATEMENTS_PER_REQUEST, "prescription page issued " + count + " statements");
+    }
+
+    @Test
+    @Order(15)
+    public void test15_PhysicianPage_boundedStatements() {
+        long count = statementsFor(() -> serialize(service.getPage(Physician.class, 0, 100).getItems()));
+        assertTrue(count <= MAX_STATEMENTS_PER_REQUEST, "physician page issued " + count + " statements");
+    }
+
+    @Test
+    @Order(16)
+    public void test16_MedicalCertificatePage_boundedStatements() {
+        long count = statementsFor(() -> serialize(service.getPage(MedicalCertificate.class, 0, 100).getItems()));
+        assertTrue(count <= MAX_STATEMENTS_PER_REQUEST, "medical certificate page issued " + count + " statements");
+    }
+
+    @Test
+    @Order(17)
+    public void test17_MedicalTrainingPage_boundedStatements() {
+        long count = statementsFor(() -> serialize(service.getPage(MedicalTraining.class, 0, 100).getItems()));
+        assertTrue(count <= MAX_STATEMENTS_PER_REQUEST, "medical training page issued " + count + " statements");
+    }
+
+    @Test
+    @Order(18)
+    public void test18_PersistPatients_perItemResults() {
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Patient p = newPatient("Bulk" + i, "Import", 1980 + i, "1 Batch Street");
+            patients.add(p);
+        }
+        patients.add(1, null);
+
+        em.getTransaction().begin();
+        List<BatchItemResult> results = service.persistPatients(patients);
+        em.getTransaction().commit();
+
+        assertEquals(patients.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).getIndex());
+        }
+        assertFalse(results.get(1).isCreated());
+        for (int i : new int[] { 0, 2, 3 }) {
+            assertTrue(results.get(i).isCreated());
+            assertNotNull(em.find(Patient.class, results.get(i).getId()));
+        }
+    }
+
+    @Test
+    @Order(19)
+    public void test19_SqlStatementStatistics_countsBoundThread() {
+        SqlStatementStatistics statistics = new SqlStatementStatistics("ServiceTest.test19");
+        SqlStatementStatistics.bind(statistics);
+        try {
+            service.getPage(Patient.class, 0, 10);
+        }
+        finally {
+            SqlStatementStatistics.bind(null);
+        }
+        assertTrue(statistics.getStatements() >= 1, "no statement recorded");
+        assertTrue(statistics.getNanos() > 0);
+
+        assertEquals("select * from patient where first_name=? and patient_id>? limit ?",
+            SqlStatementListener.redact("select * from patient where first_name='O''Brien' and patient_id>42 limit ?"));
+    }
+
+    @Test
+    @Order(20)
+    public void test20_SearchPatients_appliesEveryCriterion() {
+        String prefix = "Search" + System.nanoTime();
+        em.getTransaction().begin();
+        Patient match = searchablePatient(prefix + "Match", 1985, 0);
+        Patient tooOld = searchablePatient(prefix + "Old", 1975, 0);
+        Patient smoker = searchablePatient(prefix + "Smoker", 1985, 1);
+        Patient percent = searchablePatient(prefix + "%Percent", 1985, 0);
+        Patient percentLookAlike = searchablePatient(prefix + "APercent", 1985, 0);
+        Patient underscore = searchablePatient(prefix + "_Underscore", 1985, 0);
+        Patient underscoreLookAlike = searchablePatient(prefix + "BUnderscore", 1985, 0);
+        em.getTransaction().commit();
+
+        assertEquals(List.of(match.getId(), percent.getId(), percentLookAlike.getId(), underscore.getId(), underscoreLookAlike.getId()),
+            idsOf(service.searchPatients(prefix, 1981, null, false, 0, 100, null)));
+        assertEquals(List.of(tooOld.getId()), idsOf(service.searchPatients(prefix, null, 1980, null, 0, 100, null)));
+        assertEquals(List.of(smoker.getId()), idsOf(service.searchPatients(prefix, null, null, true, 0, 100, null)));
+        // LIKE wildcards in the prefix match literally
+        assertEquals(List.of(percent.getId()), idsOf(service.searchPatients(prefix + "%", null, null, null, 0, 100, null)));
+        assertEquals(List.of(underscore.getId()), idsOf(service.searchPatients(prefix + "_", null, null, null, 0, 100, null)));
+    }
+
+    /**
+     * A new, not yet persisted, non-smoking patient; tests only care about the name, year and address
+     */
+    private static Patient newPatient(String firstName, String lastName, int year, String address) {
+        Patient p = new Patient();
+        p.setFirstName(firstName);
+        p.setLastName(lastName);
+        p.setYear(year);
+        p.setAddress(address);
+        p.setHeight(170);
+        p.setWeight(70);
+        p.setSmoker((byte) 0);
+        return p;
+    }
+
+    private Patient searchablePatient(String lastName, int year, int smoker) {
+        Patient p = newPatient("Searchable", lastName, year, "3 Search Lane");
+        p.setSmoker((byte) smoker);
+        em.persist(p);
+        return p;
+    }
+
+    private static List<Integer> idsOf(KeysetPage<Patient> page) {
+        List<Integer> ids = new ArrayList<>();
+        for (Patient p : page.getItems()) {
+            ids.add(p.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    @Order(21)
+    public void test21_SearchPhysicians_matchesFirstOrLastName() {
+        Physician first = service.getPage(Physician.class, 0, 1).getItems().get(0);
+        String prefix = first.getLastName().substring(0, 1);
+        KeysetPage<Physician> page = service.searchPhysicians(prefix, 0, 100, null);
+        assertTrue(page.getItems().stream().anyMatch(p -> p.getId() == first.getId()));
+        for (Physician p : page.getItems()) {
+            assertTrue(p.getLastName().startsWith(prefix) || p.getFirstName().startsWith(prefix));
+        }
+    }
+
+
+    @Test
+    @Order(22)
+    public void test22_MedicineTypeAheadIndex_prefixLookup() {
+        MedicineTypeAheadIndex index = new MedicineTypeAheadIndex();
+        index.ttlSeconds = 300;
+        assertNull(index.lookup("amox", 10), "lookup before the first build");
+        index.rebuild(sink -> {
+            sink.accept(new Object[] { 1, "Amoxicillin", "Pfizer" });
+            sink.accept(new Object[] { 2, "Amox", "Generic Labs" });
+            sink.accept(new Object[] { 3, "Ibuprofen", "Amoxa-Pharm" });
+        });
+        assertFalse(index.isStale());
+        // exact word first, then longer words alphabetically
+        assertEquals(List.of(2, 3, 1), index.lookup("AMOX", 10));
+        assertEquals(List.of(2), index.lookup("amox", 1));
+        assertEquals(List.of(2), index.lookup("gen", 10));
+
+        index.put(2, "Paracetamol", "Generic Labs");
+        index.remove(3);
+        assertEquals(List.of(1), index.lookup("amox", 10));
+        assertEquals(List.of(2), index.lookup("para", 10));
+        assertEquals(2, index.size());
+
+        assertEquals(List.of("500mg", "twice", "a", "day"), MedicineTypeAheadIndex.terms(" 500mg +twice* a-day "));
+
+        // lookups during a rebuild see the previous generation, and a failed rebuild keeps it
+        index.rebuild(sink -> {
+            sink.accept(new Object[] { 4, "Cetirizine", "Allergy Co" });
+            assertEquals(List.of(1), index.lookup("amox", 10));
+            assertEquals(List.of(), index.lookup("ceti", 10));
+        });
+        assertEquals(List.of(4), index.lookup("ceti", 10));
+        assertThrows(IllegalStateException.class, () -> index.rebuild(sink -> {
+            sink.accept(new Object[] { 5, "Doxycycline", "Pfizer" });
+            throw new IllegalStateException("connection lost");
+        }));
+        assertEquals(List.of(4), index.lookup("ceti", 10));
+        assertEquals(List.of(), index.lookup("doxy", 10));
+    }
+
+    @Test
+    @Order(23)
+    public void test23_SearchMedicines_typeAheadAndFullText() {
+        Medicine typeAhead = new Medicine();
+        typeAhead.setMedicine("Zylotestin", "Searchtest Pharma", "One tablet with meals");
+        Medicine fullText = new Medicine();
+        fullText.setMedicine("Qirotestol", "Searchtest Pharma", "Twice daily, dissolved in water");
+        // InnoDB full-text search only sees committed rows
+        em.getTransaction().begin();
+        service.persistMedicine(typeAhead);
+        service.persistMedicine(fullText);
+        em.getTransaction().commit();
+
+        service.medicineTypeAhead = new MedicineTypeAheadIndex();
+        service.medicineTypeAhead.ttlSeconds = 300;
+        // before the first build a single word is a LIKE prefix match
+        assertTrue(service.searchMedicines("zylo", 10).stream().anyMatch(m -> m.getId() == typeAhead.getId()));
+        assertEquals(0, service.medicineTypeAhead.size());
+        service.rebuildMedicineTypeAhead();
+        // single word: answered by the type-ahead index
+        assertTrue(service.searchMedicines("zylo", 10).stream().anyMatch(m -> m.getId() == typeAhead.getId()));
+        assertTrue(service.medicineTypeAhead.size() > 0);
+        // several words: full-text, every word required
+        List<Medicine> both = service.searchMedicines("searchtest pharma", 10);
+        assertTrue(both.stream().anyMatch(m -> m.getId() == typeAhead.getId()));
+        assertTrue(both.stream().anyMatch(m -> m.getId() == fullText.getId()));
+        List<Medicine> one = service.searchMedicines("searchtest dissolved", 10);
+        assertTrue(one.stream().anyMatch(m -> m.getId() == fullText.getId()));
+        assertTrue(one.stream().noneMatch(m -> m.getId() == typeAhead.getId()));
+        // a word only found in the dosage information falls through to full-text
+        assertTrue(service.searchMedicines("dissolved", 10).stream().anyMatch(m -> m.getId() == fullText.getId()));
+        // operators are not words
+        assertTrue(service.searchMedicines("+-*()", 10).isEmpty());
+    }
+
+
+    @Test
+    @Order(24)
+    public void test24_ProjectedPage_readsOnlySelectedFields() throws JsonProcessingException {
+        Set<String> fields = Set.of("lastName");
+        KeysetPage<Patient> page = service.getPage(Patient.class, 0, 10, fields);
+        assertFalse(page.getItems().isEmpty());
+        Patient first = page.getItems().get(0);
+        assertFalse(em.contains(first), "projected rows must not be managed");
+        assertNotNull(first.getLastName());
+        assertNull(first.getFirstName());
+
+        String json = ConfigureJacksonObjectMapper.fieldsWriter(new ConfigureJacksonObjectMapper().getContext(Object.class), fields)
+            .writeValueAsString(first);
+        assertEquals("{\"id\":" + first.getId() + ",\"lastName\":\"" + first.getLastName() + "\"}", json);
+
+        assertEquals(first.getLastName(), service.getProjectedById(Patient.class, first.getId(), fields).getLastName());
+        assertThrows(BadRequestException.class, () -> service.getPage(Patient.class, 0, 10, Set.of("prescriptions")));
+        assertThrows(BadRequestException.class, () -> service.getPage(Patient.class, 0, 10, Set.of("noSuchField")));
+    }
+
+    @Test
+    @Order(25)
+    public void test25_VersionStamp_changesWithEntityAndEmbeddedEntities() {
+        Patient patient = service.getAllPatients().get(0);
+        VersionStamp stamp = service.getVersionStamp(Patient.class, patient.getId());
+        assertNotNull(stamp);
+        assertFalse(stamp.getEntityTag().isWeak());
+        assertEquals(patient.getId() + "-" + patient.getVersion(), stamp.getEntityTag().getValue());
+        assertEquals(stamp.getEntityTag(), service.versionStampOf(patient).getEntityTag());
+        assertNull(service.getVersionStamp(Patient.class, -1));
+
+        // a prescription's tag also carries the versions of its physician, patient and medicine
+        Prescription prescription = service.getAllPrescriptions().get(0);
+        VersionStamp prescriptionStamp = service.getVersionStamp(Prescription.class, prescription.getId());
+        assertEquals(prescriptionStamp.getEntityTag(), service.versionStampOf(prescription).getEntityTag());
+        assertEquals(4, prescriptionStamp.getEntityTag().getValue().split("-")[1].split("\\.").length);
+
+        VersionStamp collection = service.getCollectionStamp(Patient.class);
+        assertTrue(collection.getEntityTag().isWeak());
+        assertTrue(collection.getEntityTag().getValue().startsWith(service.getAllPatients().size() + "-"));
+
+        em.getTransaction().begin();
+        em.find(Patient.class, patient.getId()).setFirstName("Stamped");
+        em.getTransaction().commit();
+        assertNotEquals(stamp.getEntityTag(), service.getVersionStamp(Patient.class, patient.getId()).getEntityTag());
+    }
+
+    @Test
+    @Order(26)
+    public void test26_UpdateIfMatch_appliesOnlyToTheExpectedVersion() {
+        Patient patient = service.getAllPatients().get(0);
+        long version = patient.getVersion();
+        Patient changes = new Patient();
+        changes.setFirstName("Matched");
+        changes.setLastName(patient.getLastName());
+        changes.setYear(patient.getYear());
+        changes.setAddress(patient.getAddress());
+        changes.setHeight(patient.getHeight());
+        changes.setWeight(patient.getWeight());
+        changes.setSmoker(patient.getSmoker());
+
+        em.getTransaction().begin();
+        Patient updated = service.updatePatientIfMatch(patient.getId(), Set.of(version), changes);
+        em.getTransaction().commit();
+        assertEquals("Matched", updated.getFirstName());
+        assertEquals(version + 1, updated.getVersion());
+
+        // the version the client read is now stale
+        em.getTransaction().begin();
+        ClientErrorException conflict = assertThrows(ClientErrorException.class,
+            () -> service.updatePatientIfMatch(patient.getId(), Set.of(version), changes));
+        em.getTransaction().rollback();
+        assertEquals(Response.Status.PRECONDITION_FAILED.getStatusCode(), conflict.getResponse().getStatus());
+
+        em.getTransaction().begin();
+        assertNull(service.updatePatientIfMatch(-1, Set.of(version), changes));
+        em.getTransaction().commit();
+    }
+
+    /**
+     * Statements of setting the medicine of one prescription of a new physician who has <code>prescriptions</code> of
+     * them, one per patient
+     */
+    private long setMedicineStatements(int prescriptions) {
+        Physician physician = new Physician();
+        physician.setFirstName("Prescribing");
+        physician.setLastName("Physician" + prescriptions);
+        Medicine medicine = new Medicine();
+        medicine.setMedicine("SetDrug", "SetPharma", "Twice daily");
+        List<Patient> patients = new ArrayList<>();
+        em.getTransaction().begin();
+        em.persist(physician);
+        em.persist(medicine);
+        for (int i = 0; i < prescriptions; i++) {
+            Patient patient = newPatient("Medicated", "Patient" + i, 1985, "1 Pharmacy Road");
+            em.persist(patient);
+            patients.add(patient);
+            Prescription prescription = new Prescription();
+            prescription.setPhysician(physician);
+            prescription.setPatient(patient);
+            prescription.setMedicine(medicine);
+            prescription.setNumberOfRefills(1);
+            prescription.setPrescriptionInformation("Set medicine");
+            em.persist(prescription);
+        }
+        em.getTransaction().commit();
+
+        Medicine newMedicine = new Medicine();
+        newMedicine.setMedicine("ReplacedDrug", "ReplacedPharma", "Once daily");
+        long count = statementsFor(() -> {
+            em.getTransaction().begin();
+            service.setMedicineForPhysicianPatient(physician.getId(), patients.get(0).getId(), newMedicine);
+            em.getTransaction().commit();
+        });
+        em.clear();
+        assertEquals("ReplacedDrug", em.find(Medicine.class, medicine.getId()).getDrugName());
+        return count;
+    }
+
+    @Test
+    @Order(27)
+    public void test27_SetMedicineForPhysicianPatient_constantStatements() {
+        Physician physician = service.getAllPhysicians().get(0);
+        Patient patient = newPatient("Unmedicated", "Patient", 1985, "1 Pharmacy Road");
+        em.getTransaction().begin();
+        em.persist(patient);
+        em.getTransaction().commit();
+
+        Medicine newMedicine = new Medicine();
+        newMedicine.setMedicine("ReplacedDrug", "ReplacedPharma", "Once daily");
+        // no prescription for the patient yet: nothing changes
+        assertSame(newMedicine, service.setMedicineForPhysicianPatient(physician.getId(), patient.getId(), newMedicine));
+        assertNull(service.setMedicineForPhysicianPatient(-1, patient.getId(), newMedicine));
+
+        // one select of the prescription with its medicine and one update, whatever the physician's prescription count
+        long single = setMedicineStatements(1);
+        assertTrue(single <= MAX_STATEMENTS_PER_REQUEST, "setting the medicine issued " + single + " statements");
+        assertEquals(single, setMedicineStatements(10));
+    }
+
+    @Test
+    @Order(28)
+    public void test28_DeleteMedicalSchool_bulkStatements() {
+        Physician physician = service.getAllPhysicians().get(0);
+        MedicalSchool school = new PublicSchool();
+        school.setName("Bulk Delete School");
+        em.getTransaction().begin();
+        em.persist(school);
+        List<MedicalCertificate> certificates = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            MedicalTraining training = new MedicalTraining();
+            training.setMedicalSchool(school);
+            DurationAndStatus durationAndStatus = new DurationAndStatus();
+            durationAndStatus.setDurationAndStatus(LocalDateTime.now(), LocalDateTime.now().plusYears(1), "+");
+            training.setDurationAndStatus(durationAndStatus);
+            em.persist(training);
+            MedicalCertificate certificate = new MedicalCertificate(training, em.find(Physician.class, physician.getId()), (byte) 1);
+            em.persist(certificate);
+            certificates.add(certificate);
+        }
+        em.getTransaction().commit();
+
+        // training ids select, certificate update, training delete, school select, (empty) trainings select, school delete
+        List<MedicalSchool> deleted = new ArrayList<>();
+        long count = statementsFor(() -> {
+            em.getTransaction().begin();
+            deleted.add(service.deleteMedicalSchool(school.getId()));
+            em.getTransaction().commit();
+        });
+        assertTrue(count <= 6, "deleting a school with 20 trainings issued " + count + " statements");
+        assertEquals(school.getId(), deleted.get(0).getId());
+        assertEquals("Bulk Delete School", deleted.get(0).getName());
+
+        em.clear();
+        assertNull(em.find(MedicalSchool.class, school.getId()));
+        for (MedicalCertificate certificate : certificates) {
+            MedicalCertificate detached = em.find(MedicalCertificate.class, certificate.getId());
+            assertNull(detached.getMedicalTraining());
+            assertEquals(certificate.getVersion() + 1, detached.getVersion());
+        }
+
+        // only the managed copies of the deleted training and its certificate are detached
+        MedicalSchool other = new PublicSchool();
+        other.setName("Detach Only School");
+        MedicalTraining training = new MedicalTraining();
+        training.setMedicalSchool(other);
+        DurationAndStatus durationAndStatus = new DurationAndStatus();
+        durationAndStatus.setDurationAndStatus(LocalDateTime.now(), LocalDateTime.now().plusYears(1), "+");
+        training.setDurationAndStatus(durationAndStatus);
+        Physician owner = em.find(Physician.class, physician.getId());
+        MedicalCertificate certificate = new MedicalCertificate(training, owner, (byte) 1);
+        em.getTransaction().begin();
+        em.persist(other);
+        em.persist(training);
+        em.persist(certificate);
+        service.deleteMedicalSchool(other.getId());
+        em.getTransaction().commit();
+        assertFalse(em.contains(training));
+        assertFalse(em.contains(certificate));
+        assertTrue(em.contains(owner));
+        em.getTransaction().begin();
+        assertThrows(NoResultException.class, () -> service.deleteMedicalSchool(other.getId()));
+        em.getTransaction().rollback();
     }
 
-}  
+    @Test
+    @Order(29)
+    public void test29_BulkDelete_setBasedStatements() {
+        Physician physician = new Physician();
+        physician.setFirstName("Retired");
+        physician.setLastName("Physician");
+        Medicine medicine = new Medicine();
+        medicine.setMedicine("RetiredDrug", "RetiredPharma", "Once daily");
+        Medicine unused = new Medicine();
+        unused.setMedicine("UnusedDrug", "UnusedPharma", "Once daily");
+        List<Integer> patientIds = new ArrayList<>();
+        em.getTransaction().begin();
+        em.persist(physician);
+        em.persist(medicine);
+        em.persist(unused);
+        for (int i = 0; i < 10; i++) {
+            Patient patient = newPatient("Retired", "Patient" + i, 1970, "2 Archive Lane");
+            em.persist(patient);
+            Prescription prescription = new Prescription();
+            prescription.setPhysician(physician);
+            prescription.setPatient(patient);
+            prescription.setMedicine(medicine);
+            prescription.setNumberOfRefills(0);
+            prescription.setPrescriptionInformation("Retired");
+            em.persist(prescription);
+            patientIds.add(patient.getId());
+        }
+        em.getTransaction().commit();
+
+        // a prescribed medicine is not deleted
+        em.getTransaction().begin();
+        BulkDeleteResult medicines = service.deleteMedicines(List.of(medicine.getId(), unused.getId(), -1));
+        em.getTransaction().commit();
+        assertEquals(List.of(unused.getId()), medicines.getDeleted());
+        assertEquals(List.of(medicine.getId()), medicines.getConflicts());
+        assertEquals(List.of(-1), medicines.getNotFound());
+
+        // one statement per table, not one per prescription
+        BulkDeleteResult[] physicians = new BulkDeleteResult[1];
+        long count = statementsFor(() -> {
+            em.getTransaction().begin();
+            physicians[0] = service.deletePhysicians(List.of(physician.getId(), -1));
+            em.getTransaction().commit();
+        });
+        assertTrue(count <= 5, "deleting a physician with 10 prescriptions issued " + count + " statements");
+        assertEquals(List.of(physician.getId()), physicians[0].getDeleted());
+        assertEquals(List.of(-1), physicians[0].getNotFound());
+        assertEquals(10, physicians[0].getRowsAffected().get("prescription"));
+
+        em.getTransaction().begin();
+        BulkDeleteResult patients = service.deletePatients(patientIds);
+        em.getTransaction().commit();
+        assertEquals(patientIds, patients.getDeleted());
+        assertEquals(0, patients.getRowsAffected().get("prescription"));
+        em.clear();
+        assertNull(em.find(Physician.class, physician.getId()));
+        assertNull(em.find(Patient.class, patientIds.get(0)));
+    }
+
+    @Test
+    @Order(30)
+    public void test30_IdempotencyStore_replaysCompletedResponse() {
+        IdempotencyStore store = new IdempotencyStore();
+        store.em = em;
+        store.ttlSeconds = 60;
+        store.maxSize = 16;
+        store.init();
+        String scope = "admin POST physician " + System.nanoTime();
+        byte[] body = "{\"firstName\":\"Idem\",\"lastName\":\"Potent\"}".getBytes();
+
+        em.getTransaction().begin();
+        Claim first = store.claim(scope, "key-1", body);
+        em.getTransaction().commit();
+        assertEquals(Outcome.PROCEED, first.getOutcome());
+
+        em.getTransaction().begin();
+        assertEquals(Outcome.IN_PROGRESS, store.claim(scope, "key-1", body).getOutcome());
+        store.complete(first.getRecordKey(), 200, "application/json", "{\"id\":42}");
+        em.getTransaction().commit();
+
+        // answered from memory, no statement at all
+        Claim[] replay = new Claim[1];
+        long count = statementsFor(() -> replay[0] = store.claim(scope, "key-1", body));
+        assertEquals(0, count);
+        assertEquals(Outcome.REPLAY, replay[0].getOutcome());
+        assertEquals(200, replay[0].getResponse().getStatus());
+        assertEquals("{\"id\":42}", replay[0].getResponse().getBody());
+        assertEquals(Outcome.MISMATCH, store.claim(scope, "key-1", "{}".getBytes()).getOutcome());
+
+        // a failed request releases its key, the retry runs again
+        em.getTransaction().begin();
+        Claim failed = store.claim(scope, "key-2", body);
+        store.release(failed.getRecordKey());
+        Claim retry = store.claim(scope, "key-2", body);
+        store.release(retry.getRecordKey());
+        em.getTransaction().commit();
+        assertEquals(Outcome.PROCEED, retry.getOutcome());
+    }
+
+    @Test
+    @Order(31)
+    public void test31_OnboardPhysician_oneTransaction() {
+        service.pbAndjPasswordHash = new Pbkdf2PasswordHashImpl();
+        service.initPasswordHash();
+        String lastName = "Onboarded" + System.nanoTime();
+        Physician physician = new Physician();
+        physician.setFirstName("New");
+        physician.setLastName(lastName);
+
+        // physician, security user and its role: no lookups before the inserts
+        long count = statementsFor(() -> {
+            em.getTransaction().begin();
+            service.onboardPhysician(physician);
+            em.getTransaction().commit();
+        });
+        assertTrue(count <= 4, "onboarding a physician issued " + count + " statements");
+        em.clear();
+        SecurityUser user = em.createNamedQuery("SecurityUser.userByName", SecurityUser.class)
+            .setParameter("param1", "user_New." + lastName)
+            .getSingleResult();
+        assertEquals(physician.getId(), user.getPhysician().getId());
+        assertEquals("USER_ROLE", user.getRoles().iterator().next().getRoleName());
+
+        // the unique username index rejects a second one, and the new physician is not kept
+        Physician duplicate = new Physician();
+        duplicate.setFirstName("New");
+        duplicate.setLastName(lastName);
+        em.getTransaction().begin();
+        ClientErrorException conflict = assertThrows(ClientErrorException.class, () -> service.onboardPhysician(duplicate));
+        em.getTransaction().rollback();
+        assertEquals(409, conflict.getResponse().getStatus());
+        em.clear();
+        assertEquals(1L, em.createQuery("SELECT COUNT(p) FROM Physician p WHERE p.lastName = :lastName", Long.class)
+            .setParameter("lastName", lastName)
+            .getSingleResult());
+
+        // a physician the database refuses by itself is not reported as a taken username
+        Physician invalid = new Physician();
+        invalid.setFirstName("New");
+        em.getTransaction().begin();
+        RuntimeException failure = assertThrows(RuntimeException.class, () -> service.onboardPhysician(invalid));
+        em.getTransaction().rollback();
+        em.clear();
+        assertFalse(failure instanceof ClientErrorException, "reported as " + failure);
+    }
+
+    @Test
+    @Order(32)
+    public void test32_SecondLevelCache_medicineAndRoleWithoutStatements() {
+        Medicine medicine = new Medicine();
+        medicine.setMedicine("CachedDrug", "CachePharma", "Twice daily");
+        em.getTransaction().begin();
+        service.persistMedicine(medicine);
+        em.getTransaction().commit();
+
+        // the insert is written through, later requests read the medicine from the cache
+        statementsForNewRequest(requestService -> requestService.getMedicineById(medicine.getId()));
+        assertEquals(0, statementsForNewRequest(requestService ->
+            assertEquals("CachedDrug", requestService.getMedicineById(medicine.getId()).getDrugName())));
+
+        // an update replaces the cache entry instead of leaving a stale one
+        Medicine updates = new Medicine();
+        updates.setMedicine("RenamedDrug", "CachePharma", "Twice daily");
+        em.getTransaction().begin();
+        service.updateMedicine(medicine.getId(), updates);
+        em.getTransaction().commit();
+        assertEquals(0, statementsForNewRequest(requestService ->
+            assertEquals("RenamedDrug", requestService.getMedicineById(medicine.getId()).getDrugName())));
+
+        // the role lookup is a cacheable query over a cached entity
+        statementsForNewRequest(requestService -> requestService.userRole().getRoleName());
+        assertEquals(0, statementsForNewRequest(requestService -> assertEquals("USER_ROLE",
+            requestService.em.createNamedQuery(SecurityRole.FIND_BY_NAME, SecurityRole.class)
+                .setParameter("param1", "USER_ROLE")
+                .getSingleResult()
+                .getRoleName())));
+    }
+
+    private static Arguments read(String name, Function<ACMEMedicalService, Object> request) {
+        return Arguments.of(name, request);
+    }
+
+    /**
+     * The other reads the REST layer serves, for the N+1 guard of test33; ids are those of acmemedical-data.sql
+     */
+    static Stream<Arguments> readRequests() {
+        return Stream.of(
+            read("patient page", s -> s.getPage(Patient.class, 0, 100).getItems()),
+            read("medicine page", s -> s.getPage(Medicine.class, 0, 100).getItems()),
+            read("school page", s -> s.getPage(MedicalSchool.class, 0, 100).getItems()),
+            read("patient search", s -> s.searchPatients("B", 1900, 2100, false, 0, 100, null).getItems()),
+            read("physician search", s -> s.searchPhysicians("S", 0, 100, null).getItems()),
+            read("medicine type-ahead", s -> s.searchMedicines("Ty", 100)),
+            read("medicine full-text search", s -> s.searchMedicines("Tylenol tablets", 100)),
+            read("physician by id", s -> s.getPhysicianById(1)),
+            read("patient by id", s -> s.getPatientById(1)),
+            read("medicine by id", s -> s.getMedicineById(1)),
+            read("school by id", s -> s.getMedicalSchoolById(1)),
+            read("training by id", s -> s.getMedicalTrainingById(1)),
+            read("certificate by id", s -> s.getMedicalCertificateById(1)),
+            read("prescription by ids", s -> s.getPrescriptionByIds(1, 1)));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("readRequests")
+    @Order(33)
+    public void test33_ReadRequests_boundedStatements(String name, Function<ACMEMedicalService, Object> request) {
+        long count = statementsFor(() -> serialize(request.apply(service)));
+        assertTrue(count <= MAX_STATEMENTS_PER_REQUEST, name + " issued " + count + " statements");
+    }
+
+    @Test
+    @Order(34)
+    public void test34_MedicineFullTextQuery_requiredPrefixesByRelevance() {
+        // a word no other row has; the FULLTEXT index only sees committed rows
+        String word = "ftw" + Long.toString(System.nanoTime(), 36);
+        Medicine everywhere = new Medicine();
+        everywhere.setMedicine(word + "ol", word + " Labs", "One " + word + " tablet daily");
+        Medicine once = new Medicine();
+        once.setMedicine("Plainol", word + " Labs", "Twice weekly");
+        Medicine neither = new Medicine();
+        neither.setMedicine("Plainol", "Other Labs", "Twice daily");
+        em.getTransaction().begin();
+        service.persistMedicine(once);
+        service.persistMedicine(everywhere);
+        service.persistMedicine(neither);
+        em.getTransaction().commit();
+        em.clear();
+
+        // word prefix, most occurrences first although inserted last
+        List<Integer> ranked = new ArrayList<>();
+        for (Medicine m : em.createNamedQuery(Medicine.FULLTEXT_SEARCH_QUERY_NAME, Medicine.class)
+            .setParameter(1, "+" + word + "*")
+            .getResultList()) {
+            ranked.add(m.getId());
+        }
+        assertEquals(List.of(everywhere.getId(), once.getId()), ranked);
+
+        // every word is required
+        List<Medicine> both = em.createNamedQuery(Medicine.FULLTEXT_SEARCH_QUERY_NAME, Medicine.class)
+            .setParameter(1, "+" + word + "* +dai*")
+            .getResultList();
+        assertEquals(1, both.size());
+        assertEquals(everywhere.getId(), both.get(0).getId());
+    }
+
+    @Test
+    @Order(35)
+    public void test35_CollectionStamp_cachedUntilTableChanges() {
+        List<VersionStamp> stamps = new ArrayList<>();
+        statementsForNewRequest(requestService -> stamps.add(requestService.getCollectionStamp(Medicine.class)));
+        assertEquals(0, statementsForNewRequest(requestService ->
+            stamps.add(requestService.getCollectionStamp(Medicine.class))));
+        assertEquals(stamps.get(0).getEntityTag(), stamps.get(1).getEntityTag());
+
+        // an insert invalidates the cached aggregates: one more row in the tag
+        Medicine medicine = new Medicine();
+        medicine.setMedicine("StampDrug", "StampPharma", "Once daily");
+        em.getTransaction().begin();
+        service.persistMedicine(medicine);
+        em.getTransaction().commit();
+        assertTrue(statementsForNewRequest(requestService ->
+            stamps.add(requestService.getCollectionStamp(Medicine.class))) > 0);
+        assertNotEquals(stamps.get(1).getEntityTag(), stamps.get(2).getEntityTag());
+    }
+
+    @Test
+    @Order(36)
+    public void test36_DeletePhysicians_dropsUnlinkedCredentials() {
+        List<String> invalidations = new ArrayList<>();
+        service.credentialCache = new CredentialCache() {
+            @Override
+            public void invalidate(String username) {
+                invalidations.add(username);
+            }
+
+            @Override
+            public void invalidateAll() {
+                invalidations.add("*");
+            }
+        };
+        Physician withLogin = new Physician();
+        withLogin.setFirstName("Logged");
+        withLogin.setLastName("In");
+        Physician withoutLogin = new Physician();
+        withoutLogin.setFirstName("Never");
+        withoutLogin.setLastName("LoggedIn");
+        SecurityUser user = new SecurityUser();
+        user.setUsername("unlinked" + Long.toString(System.nanoTime(), 36));
+        user.setPwHash("not-a-hash");
+        user.setPhysician(withLogin);
+        em.getTransaction().begin();
+        em.persist(withLogin);
+        em.persist(withoutLogin);
+        em.persist(user);
+        em.getTransaction().commit();
+
+        // no login unlinked, nothing to invalidate
+        em.getTransaction().begin();
+        service.deletePhysicians(List.of(withoutLogin.getId()));
+        em.getTransaction().commit();
+        assertEquals(List.of(), invalidations);
+
+        em.getTransaction().begin();
+        BulkDeleteResult result = service.deletePhysicians(List.of(withLogin.getId()));
+        em.getTransaction().commit();
+        assertEquals(1, result.getRowsAffected().get("security_user"));
+        assertEquals(List.of("*"), invalidations);
+        // the user stays, without its physician
+        SecurityUser unlinked = em.find(SecurityUser.class, user.getId());
+        assertNull(unlinked.getPhysician());
+
+        em.getTransaction().begin();
+        em.remove(unlinked);
+        em.getTransaction().commit();
+    }
+
+    @Test
+    @Order(37)
+    public void test37_OnboardPhysicians_duplicateUsernameFailsOnlyItsElement() {
+        service.pbAndjPasswordHash = new Pbkdf2PasswordHashImpl();
+        service.initPasswordHash();
+        // the container would run every persistChunk in a new transaction, and drop its persistence context on rollback
+        ACMEMedicalService container = new ACMEMedicalService() {
+            @Override
+            public <T> List<BatchItemResult> persistChunk(List<T> items, List<Integer> indexes, Function<? super T, ?> persist) {
+                em.getTransaction().begin();
+                try {
+                    List<BatchItemResult> results = super.persistChunk(items, indexes, persist);
+                    em.getTransaction().commit();
+                    return results;
+                }
+                catch (RuntimeException e) {
+                    if (em.getTransaction().isActive()) {
+                        em.getTransaction().rollback();
+                    }
+                    em.clear();
+                    throw e;
+                }
+            }
+        };
+        container.em = em;
+        service.sessionContext = (SessionContext) Proxy.newProxyInstance(ServiceTest.class.getClassLoader(),
+            new Class<?>[] { SessionContext.class }, (proxy, m, args) -> {
+                if (m.getName().equals("getBusinessObject")) {
+                    return container;
+                }
+                throw new UnsupportedOperationException(m.getName());
+            });
+
+        String lastName = "Batch" + System.nanoTime();
+        Physician taken = new Physician();
+        taken.setFirstName("Taken");
+        taken.setLastName(lastName);
+        em.getTransaction().begin();
+        service.onboardPhysician(taken);
+        em.getTransaction().commit();
+
+        List<Physician> physicians = new ArrayList<>();
+        for (String firstName : new String[] { "First", "Taken", "Third" }) {
+            Physician physician = new Physician();
+            physician.setFirstName(firstName);
+            physician.setLastName(lastName);
+            physicians.add(physician);
+        }
+        List<BatchItemResult> results = service.onboardPhysicians(physicians);
+
+        assertTrue(results.get(0).isCreated());
+        assertFalse(results.get(1).isCreated());
+        assertTrue(results.get(2).isCreated());
+        // the other physicians of the chunk are kept with their users, the duplicate is not kept at all
+        em.clear();
+        for (int i : new int[] { 0, 2 }) {
+            SecurityUser user = em.createNamedQuery("SecurityUser.userByName", SecurityUser.class)
+                .setParameter("param1", "user_" + physicians.get(i).getFirstName() + "." + lastName)
+                .getSingleResult();
+            assertEquals(results.get(i).getId(), user.getPhysician().getId());
+        }
+        assertEquals(3L, em.createQuery("SELECT COUNT(p) FROM Physician p WHERE p.lastName = :lastName", Long.class)
+            .setParameter("lastName", lastName)
+            .getSingleResult());
+    }
+
+    @Test
+    @Order(38)
+    public void test38_SecurityUser_roleChangeBumpsVersion() {
+        SecurityUser user = new SecurityUser();
+        user.setUsername("roles" + Long.toString(System.nanoTime(), 36));
+        user.setPwHash("not-a-hash");
+        user.getRoles().add(service.userRole());
+        em.getTransaction().begin();
+        em.persist(user);
+        em.getTransaction().commit();
+        long version = user.getVersion();
+
+        // only the join table changes, yet the owner is updated: CredentialCacheListener gets its @PostUpdate
+        em.getTransaction().begin();
+        user.getRoles().clear();
+        em.getTransaction().commit();
+        assertEquals(version + 1, user.getVersion());
+
+        em.getTransaction().begin();
+        em.remove(user);
+        em.getTransaction().commit();
+    }
 
+}
@@ -0,0 +1,170 @@
+/********************************************************************************************************
+ * File:  IdempotencyFilterTest.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Tests of the Idempotency-Key request filter around a failing or unused store (no server or database needed).
+ */
+package acmemedical.rest;
+
+import static acmemedical.utility.MyConstants.IDEMPOTENCY_KEY_HEADER;
+import static acmemedical.utility.MyConstants.MAX_IDEMPOTENT_REQUEST_BYTES;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import jakarta.persistence.PersistenceException;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.SecurityContext;
+import jakarta.ws.rs.core.UriInfo;
+
+import org.hibernate.exception.ConstraintViolationException;
+
+import acmemedical.ejb.IdempotencyStore;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class IdempotencyFilterTest {
+
+    /**
+     * A POST with an Idempotency-Key; the response it is aborted with, if any, ends up in <code>aborted</code>
+     */
+    private static ContainerRequestContext post(int contentLength, InputStream body, AtomicReference<Response> aborted) {
+        SecurityContext security = (SecurityContext) Proxy.newProxyInstance(IdempotencyFilterTest.class.getClassLoader(),
+            new Class<?>[] { SecurityContext.class }, (proxy, m, args) -> null);
+        UriInfo uriInfo = (UriInfo) Proxy.newProxyInstance(IdempotencyFilterTest.class.getClassLoader(),
+            new Class<?>[] { UriInfo.class }, (proxy, m, args) -> {
+                if (m.getName().equals("getPath")) {
+                    return "physician";
+                }
+                throw new UnsupportedOperationException(m.getName());
+            });
+        return (ContainerRequestContext) Proxy.newProxyInstance(IdempotencyFilterTest.class.getClassLoader(),
+            new Class<?>[] { ContainerRequestContext.class }, (proxy, m, args) -> {
+                switch (m.getName()) {
+                    case "getHeaderString":
+                        return IDEMPOTENCY_KEY_HEADER.equals(args[0]) ? "key-1" : null;
+                    case "getLength":
+                        return contentLength;
+                    case "getEntityStream":
+                        return body;
+                    case "getMethod":
+                        return "POST";
+                    case "getSecurityContext":
+                        return security;
+                    case "getUriInfo":
+                        return uriInfo;
+                    case "abortWith":
+                        aborted.set((Response) args[0]);
+                        return null;
+                    case "setEntityStream":
+                    case "setProperty":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(m.getName());
+                }
+            });
+    }
+
+    /**
+     * A filter whose store counts its claims and fails them with <code>failure</code>
+     */
+    private static IdempotencyFilter filterFailingWith(RuntimeException failure, AtomicInteger claims) {
+        IdempotencyFilter filter = new IdempotencyFilter();
+        filter.store = new IdempotencyStore() {
+            @Override
+            public Claim claim(String scope, String key, byte[] requestBody) {
+                claims.incrementAndGet();
+                throw failure;
+            }
+        };
+        return filter;
+    }
+
+    private static InputStream bytes(int length) {
+        return new ByteArrayInputStream(new byte[length]);
+    }
+
+    @Test
+    @Order(1)
+    public void test01_ConcurrentClaim_conflict() throws Exception {
+        // what the flush of a second insert of the same new key throws
+        PersistenceException duplicateKey = new PersistenceException(new ConstraintViolationException("could not execute statement",
+            new SQLException("Duplicate entry for key 'PRIMARY'", "23000", 1062), "PRIMARY"));
+        AtomicReference<Response> aborted = new AtomicReference<>();
+        AtomicInteger claims = new AtomicInteger();
+        filterFailingWith(duplicateKey, claims).filter(post(2, bytes(2), aborted));
+        assertEquals(1, claims.get());
+        assertEquals(Response.Status.CONFLICT.getStatusCode(), aborted.get().getStatus());
+    }
+
+    @Test
+    @Order(2)
+    public void test02_OtherStoreFailure_propagates() {
+        PersistenceException lockTimeout = new PersistenceException("Lock wait timeout exceeded",
+            new SQLException("Lock wait timeout exceeded", "HY000", 1205));
+        AtomicReference<Response> aborted = new AtomicReference<>();
+        AtomicInteger claims = new AtomicInteger();
+        IdempotencyFilter filter = filterFailingWith(lockTimeout, claims);
+        // left to the exception mappers, a server error instead of a 409 the client would read as "in progress"
+        assertSame(lockTimeout, assertThrows(PersistenceException.class, () -> filter.filter(post(2, bytes(2), aborted))));
+        assertNull(aborted.get());
+    }
+
+    @Test
+    @Order(3)
+    public void test03_OtherConstraintViolation_propagates() {
+        // also a ConstraintViolationException from the claim's insert, but not the key of another claim
+        PersistenceException notNull = new PersistenceException(new ConstraintViolationException("could not execute statement",
+            new SQLException("Column 'request_hash' cannot be null", "23000", 1048), null));
+        PersistenceException otherKey = new PersistenceException(new ConstraintViolationException("could not execute statement",
+            new SQLException("Duplicate entry 'x' for key 'idempotency_key.idx_other'", "23000", 1062), null));
+        AtomicReference<Response> aborted = new AtomicReference<>();
+        for (PersistenceException failure : new PersistenceException[] { notNull, otherKey }) {
+            IdempotencyFilter filter = filterFailingWith(failure, new AtomicInteger());
+            assertSame(failure, assertThrows(PersistenceException.class, () -> filter.filter(post(2, bytes(2), aborted))));
+        }
+        assertNull(aborted.get());
+        // MySQL 8.0.19 and later name the primary key with its table
+        assertTrue(IdempotencyStore.isConcurrentClaim(new PersistenceException(new ConstraintViolationException("could not execute statement",
+            new SQLException("Duplicate entry 'x' for key 'idempotency_key.PRIMARY'", "23000", 1062), null))));
+    }
+
+    @Test
+    @Order(4)
+    public void test04_BodyOverLimit_payloadTooLarge() throws Exception {
+        AtomicInteger claims = new AtomicInteger();
+        IdempotencyFilter filter = filterFailingWith(new IllegalStateException("not claimed"), claims);
+
+        // announced by Content-Length: refused before reading
+        AtomicReference<Response> announced = new AtomicReference<>();
+        InputStream unread = bytes(1);
+        filter.filter(post(MAX_IDEMPOTENT_REQUEST_BYTES + 1, unread, announced));
+        assertEquals(Response.Status.REQUEST_ENTITY_TOO_LARGE.getStatusCode(), announced.get().getStatus());
+        assertEquals(1, unread.available());
+
+        // chunked, no Content-Length: refused one byte past the limit
+        AtomicReference<Response> chunked = new AtomicReference<>();
+        filter.filter(post(-1, bytes(MAX_IDEMPOTENT_REQUEST_BYTES + 1), chunked));
+        assertEquals(Response.Status.REQUEST_ENTITY_TOO_LARGE.getStatusCode(), chunked.get().getStatus());
+        assertEquals(0, claims.get());
+
+        // exactly at the limit the key is claimed
+        assertThrows(IllegalStateException.class, () -> filter.filter(post(-1, bytes(MAX_IDEMPOTENT_REQUEST_BYTES), chunked)));
+        assertEquals(1, claims.get());
+    }
+}
@@ -0,0 +1,192 @@
+/********************************************************************************************************
+ * File:  MetricsTest.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Tests of the Prometheus text format of the metrics endpoint (no server needed).
+ */
+package acmemedical.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.Metric;
+import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Snapshot;
+import org.eclipse.microprofile.metrics.Tag;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class MetricsTest {
+
+    /**
+     * A registry holding <code>metrics</code>; the format only reads getMetrics()
+     */
+    private static String write(Map<MetricID, Metric> metrics) throws IOException {
+        MetricRegistry registry = (MetricRegistry) Proxy.newProxyInstance(MetricsTest.class.getClassLoader(),
+            new Class<?>[] { MetricRegistry.class }, (proxy, m, args) -> {
+                if (m.getName().equals("getMetrics")) {
+                    return new TreeMap<>(metrics);
+                }
+                throw new UnsupportedOperationException(m.getName());
+            });
+        StringWriter out = new StringWriter();
+        PrometheusTextFormat.write(registry, out);
+        return out.toString();
+    }
+
+    private static Counter counter(long count) {
+        return new Counter() {
+            @Override
+            public void inc() {
+            }
+
+            @Override
+            public void inc(long n) {
+            }
+
+            @Override
+            public long getCount() {
+                return count;
+            }
+        };
+    }
+
+    private static Histogram histogram(long count, long sum, Snapshot snapshot) {
+        return new Histogram() {
+            @Override
+            public void update(int value) {
+            }
+
+            @Override
+            public void update(long value) {
+            }
+
+            @Override
+            public long getCount() {
+                return count;
+            }
+
+            @Override
+            public long getSum() {
+                return sum;
+            }
+
+            @Override
+            public Snapshot getSnapshot() {
+                return snapshot;
+            }
+        };
+    }
+
+    private static Snapshot snapshot(double max, Snapshot.PercentileValue[] percentiles, Snapshot.HistogramBucket[] buckets) {
+        return new Snapshot() {
+            @Override
+            public long size() {
+                return 0;
+            }
+
+            @Override
+            public double getMax() {
+                return max;
+            }
+
+            @Override
+            public double getMean() {
+                return 0;
+            }
+
+            @Override
+            public PercentileValue[] percentileValues() {
+                return percentiles;
+            }
+
+            @Override
+            public HistogramBucket[] bucketValues() {
+                return buckets;
+            }
+
+            @Override
+            public void dump(OutputStream output) {
+            }
+        };
+    }
+
+    @Test
+    @Order(1)
+    public void test01_Names_sanitized() throws IOException {
+        Map<MetricID, Metric> metrics = new TreeMap<>();
+        metrics.put(new MetricID("acmemedical.requests-total"), counter(3));
+        Gauge<Double> gauge = () -> 0.5;
+        metrics.put(new MetricID("jdbc.pool:active"), gauge);
+        assertEquals("# TYPE acmemedical_requests_total counter\n"
+            + "acmemedical_requests_total 3\n"
+            + "# TYPE jdbc_pool_active gauge\n"
+            + "jdbc_pool_active 0.5\n", write(metrics));
+        assertEquals("a_b_c_1", PrometheusTextFormat.sanitize("a.b-c:1"));
+    }
+
+    @Test
+    @Order(2)
+    public void test02_TagValues_escaped() throws IOException {
+        Map<MetricID, Metric> metrics = new TreeMap<>();
+        metrics.put(new MetricID("requests", new Tag("path", "a\"b\\c\nd"), new Tag("method", "GET")), counter(1));
+        // tags in name order, quote, backslash and newline escaped
+        assertEquals("# TYPE requests counter\n"
+            + "requests{method=\"GET\",path=\"a\\\"b\\\\c\\nd\"} 1\n", write(metrics));
+    }
+
+    @Test
+    @Order(3)
+    public void test03_HistogramWithoutBuckets_summary() throws IOException {
+        Map<MetricID, Metric> metrics = new TreeMap<>();
+        Snapshot snapshot = snapshot(9, new Snapshot.PercentileValue[] { new Snapshot.PercentileValue(0.5, 2),
+            new Snapshot.PercentileValue(0.99, 8) }, new Snapshot.HistogramBucket[0]);
+        metrics.put(new MetricID("statements", new Tag("resource", "patient")), histogram(4, 15, snapshot));
+        assertEquals("# TYPE statements summary\n"
+            + "statements{resource=\"patient\",quantile=\"0.5\"} 2\n"
+            + "statements{resource=\"patient\",quantile=\"0.99\"} 8\n"
+            + "statements_count{resource=\"patient\"} 4\n"
+            + "statements_sum{resource=\"patient\"} 15\n"
+            + "# TYPE statements_max gauge\n"
+            + "statements_max{resource=\"patient\"} 9\n", write(metrics));
+    }
+
+    @Test
+    @Order(4)
+    public void test04_HistogramWithBuckets_cumulativeBucketsAndInf() throws IOException {
+        Map<MetricID, Metric> metrics = new TreeMap<>();
+        Snapshot snapshot = snapshot(12, new Snapshot.PercentileValue[] { new Snapshot.PercentileValue(0.5, 2) },
+            new Snapshot.HistogramBucket[] { new Snapshot.HistogramBucket(1, 1), new Snapshot.HistogramBucket(2.5, 3),
+                new Snapshot.HistogramBucket(10, 4) });
+        metrics.put(new MetricID("statements"), histogram(5, 27, snapshot));
+        // buckets replace the quantiles, +Inf holds every observation
+        assertEquals("# TYPE statements histogram\n"
+            + "statements_bucket{le=\"1\"} 1\n"
+            + "statements_bucket{le=\"2.5\"} 3\n"
+            + "statements_bucket{le=\"10\"} 4\n"
+            + "statements_bucket{le=\"+Inf\"} 5\n"
+            + "statements_count 5\n"
+            + "statements_sum 27\n"
+            + "# TYPE statements_max gauge\n"
+            + "statements_max 12\n", write(metrics));
+    }
+}
@@ -192,7 +192,7 @@ public class ResourceTest {
             .post(Entity.entity(newPhysician, MediaType.APPLICATION_JSON));
         
         assertThat(adminResponse.getStatus(), anyOf(is(409), is(200)));
-        //buildUserForNewPhysician return 409
+        //onboardPhysician returns 409 if the username already exists
     }
     
     @Test
@@ -0,0 +1,228 @@
+/********************************************************************************************************
+ * File:  SecurityTest.java
+ * Course: CST8277
+ * Professor: Teddy Yap
+ * @author Yizhen Xu
+ * @author Ryan Xu
+ * @author Ruchen Ding
+ * Last Modified Date: 2026-10-18
+ * Created Date: 2026-10-18
+ * Description: Tests of the credential cache, its entity listener and bearer tokens (no database needed).
+ */
+package acmemedical.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import jakarta.security.enterprise.CallerPrincipal;
+import jakarta.security.enterprise.identitystore.CredentialValidationResult;
+
+import org.glassfish.soteria.WrappingCallerPrincipal;
+
+import acmemedical.entity.Physician;
+import acmemedical.entity.SecurityRole;
+import acmemedical.entity.SecurityUser;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class SecurityTest {
+
+    private static CredentialCache newCache(int maxSize, long ttlSeconds) {
+        CredentialCache cache = new CredentialCache();
+        cache.maxSize = maxSize;
+        cache.ttlSeconds = ttlSeconds;
+        cache.init();
+        return cache;
+    }
+
+    private static CredentialCacheListener listenerFor(CredentialCache cache) {
+        return new CredentialCacheListener() {
+            @Override
+            protected CredentialCache lookupCache() {
+                return cache;
+            }
+        };
+    }
+
+    private static BearerTokenService newTokenService(String signingKey, long ttlSeconds) {
+        BearerTokenService tokens = new BearerTokenService();
+        tokens.configuredSigningKey = Optional.ofNullable(signingKey);
+        tokens.ttlSeconds = ttlSeconds;
+        tokens.init();
+        return tokens;
+    }
+
+    // base64 of 32 times the same byte
+    private static String signingKey(char fill) {
+        return Base64.getEncoder().encodeToString(String.valueOf(fill).repeat(32).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static SecurityUser user(String username) {
+        SecurityUser user = new SecurityUser();
+        user.setUsername(username);
+        return user;
+    }
+
+    @Test
+    @Order(1)
+    public void test01_CredentialCache_hitOnlyForSamePassword() {
+        CredentialCache cache = newCache(16, 60);
+        CredentialValidationResult valid = new CredentialValidationResult("alice");
+        cache.put("alice", "secret", valid, cache.generation());
+        assertSame(valid, cache.get("alice", "secret"));
+        assertNull(cache.get("alice", "wrong"));
+        // username/password boundary is part of the key
+        assertNull(cache.get("alices", "ecret"));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    @Order(2)
+    public void test02_CredentialCache_keepsOnlyValidResults() {
+        CredentialCache cache = newCache(16, 60);
+        cache.put("alice", "wrong", CredentialValidationResult.INVALID_RESULT, cache.generation());
+        cache.put("alice", "wrong", null, cache.generation());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @Order(3)
+    public void test03_CredentialCache_entriesExpireAfterTtl() {
+        CredentialCache cache = newCache(16, 0);
+        cache.put("alice", "secret", new CredentialValidationResult("alice"), cache.generation());
+        assertNull(cache.get("alice", "secret"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    @Order(4)
+    public void test04_CredentialCache_evictsLeastRecentlyUsed() {
+        CredentialCache cache = newCache(2, 60);
+        cache.put("alice", "a", new CredentialValidationResult("alice"), cache.generation());
+        cache.put("bob", "b", new CredentialValidationResult("bob"), cache.generation());
+        // alice becomes the most recently used, so carol pushes bob out
+        assertNotNull(cache.get("alice", "a"));
+        cache.put("carol", "c", new CredentialValidationResult("carol"), cache.generation());
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("alice", "a"));
+        assertNull(cache.get("bob", "b"));
+        assertNotNull(cache.get("carol", "c"));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    @Order(5)
+    public void test05_Listener_userChangeInvalidatesOnlyThatUser() {
+        CredentialCache cache = newCache(16, 60);
+        cache.put("alice", "a", new CredentialValidationResult("alice"), cache.generation());
+        cache.put("alice", "old", new CredentialValidationResult("alice"), cache.generation());
+        cache.put("bob", "b", new CredentialValidationResult("bob"), cache.generation());
+        listenerFor(cache).securityEntityChanged(user("alice"));
+        assertNull(cache.get("alice", "a"));
+        assertNull(cache.get("alice", "old"));
+        assertNotNull(cache.get("bob", "b"));
+    }
+
+    @Test
+    @Order(6)
+    public void test06_Listener_roleChangeInvalidatesEveryone() {
+        CredentialCache cache = newCache(16, 60);
+        cache.put("alice", "a", new CredentialValidationResult("alice"), cache.generation());
+        cache.put("bob", "b", new CredentialValidationResult("bob"), cache.generation());
+        listenerFor(cache).securityEntityChanged(new SecurityRole());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @Order(7)
+    public void test07_Listener_withoutCdiDoesNothing() {
+        // plain JPA, as in ServiceTest: no container to look the cache up in
+        assertDoesNotThrow(() -> new CredentialCacheListener().securityEntityChanged(user("alice")));
+    }
+
+    @Test
+    @Order(8)
+    public void test08_BearerToken_roundTrip() {
+        BearerTokenService tokens = newTokenService(signingKey('k'), 60);
+        SecurityUser user = user("user_Jane.Doe");
+        user.setId(11);
+        Physician physician = new Physician();
+        physician.setId(5);
+        user.setPhysician(physician);
+
+        CredentialValidationResult result = tokens.verify(tokens.issue(user, Set.of("USER_ROLE")));
+        assertEquals(CredentialValidationResult.Status.VALID, result.getStatus());
+        assertEquals(Set.of("USER_ROLE"), result.getCallerGroups());
+        CallerPrincipal principal = result.getCallerPrincipal();
+        SecurityUser caller = (SecurityUser) ((WrappingCallerPrincipal) principal).getWrapped();
+        assertEquals("user_Jane.Doe", caller.getUsername());
+        assertEquals(11, caller.getId());
+        assertEquals(5, caller.getPhysician().getId());
+    }
+
+    @Test
+    @Order(9)
+    public void test09_BearerToken_rejectsTamperedOrForeignSignature() {
+        BearerTokenService tokens = newTokenService(signingKey('k'), 60);
+        String token = tokens.issue(user("user_Jane.Doe"), Set.of("USER_ROLE"));
+        int dot = token.indexOf('.');
+
+        // claims changed to ADMIN_ROLE, signature kept
+        Base64.Encoder b64 = Base64.getUrlEncoder().withoutPadding();
+        String claims = new String(Base64.getUrlDecoder().decode(token.substring(0, dot)), StandardCharsets.UTF_8);
+        String forged = b64.encodeToString(claims.replace("USER_ROLE", "ADMIN_ROLE").getBytes(StandardCharsets.UTF_8))
+            + token.substring(dot);
+        assertEquals(CredentialValidationResult.Status.INVALID, tokens.verify(forged).getStatus());
+
+        // signed with another key
+        BearerTokenService otherNode = newTokenService(signingKey('x'), 60);
+        assertEquals(CredentialValidationResult.Status.INVALID, otherNode.verify(token).getStatus());
+
+        for (String malformed : new String[] { "", ".", "abc", "abc.", ".abc", "not base64!.sig" }) {
+            assertEquals(CredentialValidationResult.Status.INVALID, tokens.verify(malformed).getStatus(), malformed);
+        }
+    }
+
+    @Test
+    @Order(10)
+    public void test10_BearerToken_rejectsExpired() {
+        // expires at the second it is issued
+        BearerTokenService tokens = newTokenService(signingKey('k'), 0);
+        String token = tokens.issue(user("user_Jane.Doe"), Set.of("USER_ROLE"));
+        assertEquals(CredentialValidationResult.Status.INVALID, tokens.verify(token).getStatus());
+    }
+
+    @Test
+    @Order(11)
+    public void test11_BearerToken_shortSigningKeyRefused() {
+        String shortKey = Base64.getEncoder().encodeToString(new byte[16]);
+        assertThrows(IllegalStateException.class, () -> newTokenService(shortKey, 60));
+    }
+
+    @Test
+    @Order(12)
+    public void test12_CredentialCache_resultOfOlderGenerationNotCached() {
+        CredentialCache cache = newCache(16, 60);
+        // a validation reads the user with its old roles...
+        long generation = cache.generation();
+        // ...while they are revoked
+        listenerFor(cache).securityEntityChanged(user("alice"));
+        cache.put("alice", "a", new CredentialValidationResult("alice"), generation);
+        assertNull(cache.get("alice", "a"));
+        assertEquals(0, cache.size());
+
+        // the next validation reads the new roles
+        cache.put("alice", "a", new CredentialValidationResult("alice"), cache.generation());
+        assertNotNull(cache.get("alice", "a"));
+    }
+}